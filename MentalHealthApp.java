@@ -1,24 +1,86 @@
 // Main Application Entry Point
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
 
 public class MentalHealthApp {
     private DataManager dataManager;
+    private static final int WRITE_QUEUE_CAPACITY = 1024;
+    private static final long RULES_POLL_MILLIS = 5000;
+    
+    private WellnessApi api;
+    private WellnessHttpServer httpServer;
     private OnboardingService onboardingService;
     private MoodCheckInService moodCheckInService;
     private JournalingService journalingService;
-    private SuggestionEngine suggestionEngine;
-    private DashboardService dashboardService;
     private Scanner scanner;
     
     public MentalHealthApp() {
-        this.dataManager = new DataManager();
-        this.onboardingService = new OnboardingService();
+        this(openDataManager());
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown));
+    }
+    
+    public MentalHealthApp(DataManager dataManager) {
+        this.dataManager = dataManager;
+        this.api = new WellnessApi(dataManager, WRITE_QUEUE_CAPACITY);
+        String rulesFile = System.getProperty("mindfulmoments.suggestionRules");
+        if (rulesFile != null) {
+            api.getSuggestionEngine().watchRules(Paths.get(rulesFile), RULES_POLL_MILLIS);
+        }
+        this.onboardingService = new OnboardingService(dataManager.getDirectory());
         this.moodCheckInService = new MoodCheckInService();
         this.journalingService = new JournalingService();
-        this.suggestionEngine = new SuggestionEngine();
-        this.dashboardService = new DashboardService(dataManager);
         this.scanner = new Scanner(System.in);
     }
     
@@ -35,10 +97,56 @@ public class MentalHealthApp {
         mainMenu(currentUser);
     }
     
+    private static DataManager openDataManager() {
+        Path dataDirectory = Paths.get(System.getProperty("mindfulmoments.dataDir", "mindfulmoments-data"));
+        try {
+            int hotDays = Integer.getInteger("mindfulmoments.hotDays", 30);
+            int residentUsers = Integer.getInteger("mindfulmoments.residentUsers", DataManager.DEFAULT_RESIDENT_USERS);
+            return new DataManager(PersistenceEngine.open(dataDirectory),
+                MoodSegmentStore.open(dataDirectory.resolve("cold"), hotDays, 64), residentUsers);
+        } catch (IOException e) {
+            System.out.println("Could not open saved data (" + e.getMessage() + "). Running without saving.");
+            return new DataManager();
+        }
+    }
+    
+    // Finds a returning user by name; null means onboard someone new
     private User getCurrentUser() {
-        // In a real app, this would check for existing user data
-        // For simplicity, we'll create a new user each time
-        return null;
+        UserDirectory directory = dataManager.getDirectory();
+        if (directory.size() == 0) {
+            return null;
+        }
+        while (true) {
+            System.out.print("Welcome back! Enter your name to continue (or press Enter to create a new profile): ");
+            String name = scanner.nextLine().trim();
+            if (name.isEmpty()) {
+                return null;
+            }
+            List<User> matches = directory.findByNamePrefix(name, 10);
+            if (matches.size() == 1) {
+                return greet(matches.get(0));
+            }
+            if (matches.isEmpty()) {
+                System.out.println("No profile found for \"" + name + "\".");
+                continue;
+            }
+            System.out.println("Several profiles match:");
+            for (int i = 0; i < matches.size(); i++) {
+                User user = matches.get(i);
+                System.out.printf("%d. %s (joined %s)%n", i + 1, user.getName(), user.getJoinDate().toLocalDate());
+            }
+            System.out.print("Choose a profile (1-" + matches.size() + "): ");
+            int choice = scanner.nextInt() - 1;
+            scanner.nextLine(); // consume newline
+            if (choice >= 0 && choice < matches.size()) {
+                return greet(matches.get(choice));
+            }
+        }
+    }
+    
+    private User greet(User user) {
+        System.out.println("Good to see you again, " + user.getName() + "!");
+        return user;
     }
     
     private void mainMenu(User user) {
@@ -48,7 +156,8 @@ public class MentalHealthApp {
             System.out.println("2. View Dashboard");
             System.out.println("3. Journal Entry");
             System.out.println("4. Get Suggestions");
-            System.out.println("5. Exit");
+            System.out.println("5. Search Journal");
+            System.out.println("6. Exit");
             System.out.print("Choose an option: ");
             
             int choice = scanner.nextInt();
@@ -59,7 +168,7 @@ public class MentalHealthApp {
                     performMoodCheckIn(user);
                     break;
                 case 2:
-                    dashboardService.displayDashboard(user);
+                    api.renderDashboard(user, System.out);
                     break;
                 case 3:
                     performJournaling(user);
@@ -68,7 +177,11 @@ public class MentalHealthApp {
                     displaySuggestions(user);
                     break;
                 case 5:
+                    searchJournal(user);
+                    break;
+                case 6:
                     System.out.println("Take care! Remember to check in tomorrow.");
+                    shutdown();
                     return;
                 default:
                     System.out.println("Invalid option. Please try again.");
@@ -78,29 +191,200 @@ public class MentalHealthApp {
     
     private void performMoodCheckIn(User user) {
         MoodLog moodLog = moodCheckInService.conductMoodCheckIn(scanner);
-        dataManager.addMoodLog(user.getUserId(), moodLog);
         
-        // Show suggestions after check-in
-        List<String> suggestions = suggestionEngine.generateSuggestions(user, dataManager);
+        // Saving happens on the write pipeline; show suggestions once they are ready
+        CompletableFuture<List<String>> suggestions = api.recordMoodLogAsync(user, moodLog);
         System.out.println("\n=== Personalized Suggestions ===");
-        suggestions.forEach(System.out::println);
+        suggestions.join().forEach(System.out::println);
     }
     
     private void performJournaling(User user) {
         JournalEntry entry = journalingService.createJournalEntry(scanner);
-        dataManager.addJournalEntry(user.getUserId(), entry);
+        api.recordJournalEntry(user, entry);
         System.out.println("Journal entry saved successfully!");
     }
     
+    private void searchJournal(User user) {
+        System.out.println("Search your journal (words, \"exact phrase\", tag:name):");
+        String query = scanner.nextLine().trim();
+        List<JournalSearchResult> results = api.searchJournal(user, query);
+        
+        System.out.println("\n=== Journal Search Results ===");
+        if (results.isEmpty()) {
+            System.out.println("No matching entries found.");
+            return;
+        }
+        DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("MMM dd, yyyy");
+        for (JournalSearchResult result : results) {
+            JournalEntry entry = result.getEntry();
+            System.out.println("• " + entry.getTimestamp().format(dateFormat) + " - " + entry.getTitle());
+        }
+    }
+    
     private void displaySuggestions(User user) {
-        List<String> suggestions = suggestionEngine.generateSuggestions(user, dataManager);
+        List<String> suggestions = api.getSuggestions(user);
         System.out.println("\n=== Your Personalized Suggestions ===");
         suggestions.forEach(System.out::println);
     }
     
     public static void main(String[] args) {
+        if (args.length == 2 && args[0].equals("--import")) {
+            new MentalHealthApp().importHistory(Paths.get(args[1]));
+            return;
+        }
+        if (args.length == 2 && args[0].equals("--export")) {
+            new MentalHealthApp().exportData(Paths.get(args[1]));
+            return;
+        }
+        if (args.length == 1 && args[0].equals("--print-rules")) {
+            System.out.println(SuggestionRules.DEFAULT_SOURCE);
+            return;
+        }
+        if (args.length == 1 && args[0].equals("--analytics")) {
+            new MentalHealthApp().printAnalytics();
+            return;
+        }
+        if (args.length >= 1 && args[0].equals("--load-test")) {
+            int users = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+            int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+            boolean async = args.length <= 3 || !args[3].equals("sync");
+            runLoadTest(users, seconds, async);
+            return;
+        }
+        if (args.length >= 1 && args[0].equals("--serve")) {
+            configureHttpServer();
+            new MentalHealthApp().serve(args.length > 1 ? Integer.parseInt(args[1]) : 8080);
+            return;
+        }
+        if (args.length >= 1 && args[0].equals("--http-bench")) {
+            int connections = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+            int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+            int pipelineDepth = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+            configureHttpServer();
+            runHttpBenchmark(connections, seconds, pipelineDepth, args.length > 4 ? args[4] : null);
+            return;
+        }
         new MentalHealthApp().start();
     }
+    
+    // The JDK server reads these once, when the first server in the process
+    // starts, so they are set before any is created; -D flags on the command
+    // line take precedence. Thousands of idle keep-alive connections stay open
+    // (the default closes all but 200) and Nagle is off so small responses are
+    // not held back waiting for an ACK.
+    private static void configureHttpServer() {
+        if (System.getProperty("sun.net.httpserver.maxIdleConnections") == null) {
+            System.setProperty("sun.net.httpserver.maxIdleConnections", "20000");
+        }
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+    
+    // Synthetic users run against an in-memory store so nothing is written to disk
+    private static void runLoadTest(int users, int seconds, boolean async) {
+        WellnessApi api = new WellnessApi(new DataManager(), async ? 4096 : 0);
+        try {
+            new LoadGenerator(api, users, seconds * 1000L).run(System.out);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            api.close();
+        }
+        if (api.getWritePipeline() != null) {
+            System.out.println(api.getWritePipeline());
+        }
+        if (Metrics.ENABLED) {
+            System.out.print(Metrics.toText());
+        }
+    }
+    
+    // Runs until the process is stopped; the shutdown hook stops the server first
+    private void serve(int port) {
+        try {
+            httpServer = new WellnessHttpServer(api, port);
+        } catch (IOException e) {
+            System.out.println("Could not start the server on port " + port + ": " + e.getMessage());
+            shutdown();
+            return;
+        }
+        httpServer.start();
+        System.out.println("MindfulMoments API listening on http://localhost:" + httpServer.getPort() + "/users");
+    }
+    
+    // Without a host:port target, benchmarks an in-process server on an in-memory store
+    private static void runHttpBenchmark(int connections, int seconds, int pipelineDepth, String target) {
+        WellnessApi api = null;
+        WellnessHttpServer server = null;
+        try {
+            String host = "localhost";
+            int port;
+            if (target == null) {
+                api = new WellnessApi(new DataManager(), WRITE_QUEUE_CAPACITY);
+                server = new WellnessHttpServer(api, 0);
+                server.start();
+                port = server.getPort();
+            } else {
+                int colon = target.lastIndexOf(':');
+                host = target.substring(0, colon);
+                port = Integer.parseInt(target.substring(colon + 1));
+            }
+            new HttpLoadClient(host, port, connections, seconds * 1000L, pipelineDepth).run(System.out);
+        } catch (IOException e) {
+            System.out.println("HTTP benchmark failed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (server != null) {
+                server.stop(0);
+            }
+            if (api != null) {
+                api.close();
+            }
+        }
+        if (Metrics.ENABLED) {
+            System.out.print(Metrics.toText());
+        }
+    }
+    
+    // Drains pending writes before the data files are closed; safe to call twice
+    private void shutdown() {
+        if (httpServer != null) {
+            httpServer.stop(1);
+        }
+        api.close();
+        dataManager.close();
+    }
+    
+    private void printAnalytics() {
+        long started = System.nanoTime();
+        PopulationReport report = new PopulationAnalytics(dataManager).analyze();
+        report.printTo(System.out);
+        System.out.printf("%nAnalyzed in %d ms%n", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        shutdown();
+    }
+    
+    private void exportData(Path file) {
+        try {
+            ExportReport report = new DataExporter(dataManager).export(file);
+            System.out.println("Exported " + report);
+        } catch (IOException e) {
+            System.out.println("Export failed: " + e.getMessage());
+        } finally {
+            shutdown();
+        }
+    }
+    
+    private void importHistory(Path file) {
+        try {
+            IngestReport report = new BulkIngestor(dataManager).ingestCsv(file);
+            System.out.println(report);
+        } catch (IOException e) {
+            System.out.println("Import failed: " + e.getMessage());
+        } finally {
+            shutdown();
+        }
+    }
 }
 
 // Core Data Models
@@ -110,9 +394,14 @@ class User {
     private LocalDateTime joinDate;
     
     public User(String userId, String name) {
+        this(userId, name, LocalDateTime.now());
+    }
+    
+    // Used when restoring a stored user
+    User(String userId, String name, LocalDateTime joinDate) {
         this.userId = userId;
         this.name = name;
-        this.joinDate = LocalDateTime.now();
+        this.joinDate = joinDate;
     }
     
     // Getters and setters
@@ -151,93 +440,6832 @@ enum MoodType {
 class MoodLog {
     private LocalDateTime timestamp;
     private MoodType mood;
-    private List<String> emotionTags;
+    private int[] emotionTagIds; // TagDictionary.GLOBAL IDs
     private String notes;
     private int intensityLevel; // 1-10 scale
     
     public MoodLog(MoodType mood, List<String> emotionTags, String notes, int intensityLevel) {
-        this.timestamp = LocalDateTime.now();
+        this(LocalDateTime.now(), mood, emotionTags, notes, intensityLevel);
+    }
+    
+    // Used by flyweight views that override every getter
+    MoodLog() {
+    }
+    
+    // Used when restoring a stored check-in
+    MoodLog(LocalDateTime timestamp, MoodType mood, List<String> emotionTags, String notes, int intensityLevel) {
+        this(timestamp, mood, TagDictionary.GLOBAL.idsOf(emotionTags), notes, intensityLevel);
+    }
+    
+    MoodLog(LocalDateTime timestamp, MoodType mood, int[] emotionTagIds, String notes, int intensityLevel) {
+        this.timestamp = timestamp;
         this.mood = mood;
-        this.emotionTags = new ArrayList<>(emotionTags);
+        this.emotionTagIds = emotionTagIds;
         this.notes = notes;
         this.intensityLevel = intensityLevel;
     }
     
-    // Getters
-    public LocalDateTime getTimestamp() { return timestamp; }
-    public MoodType getMood() { return mood; }
-    public List<String> getEmotionTags() { return new ArrayList<>(emotionTags); }
-    public String getNotes() { return notes; }
-    public int getIntensityLevel() { return intensityLevel; }
+    // Getters
+    public LocalDateTime getTimestamp() { return timestamp; }
+    public MoodType getMood() { return mood; }
+    public String getNotes() { return notes; }
+    public int getIntensityLevel() { return intensityLevel; }
+    
+    public List<String> getEmotionTags() {
+        List<String> result = new ArrayList<>(getEmotionTagCount());
+        for (int i = 0; i < getEmotionTagCount(); i++) {
+            result.add(getEmotionTagAt(i));
+        }
+        return result;
+    }
+    
+    // Copy-free tag access for aggregation
+    int getEmotionTagCount() { return emotionTagIds.length; }
+    int getEmotionTagId(int index) { return emotionTagIds[index]; }
+    String getEmotionTagAt(int index) { return TagDictionary.GLOBAL.nameOf(getEmotionTagId(index)); }
+}
+
+class JournalEntry {
+    private LocalDateTime timestamp;
+    private String content;
+    private int[] tagIds; // TagDictionary.GLOBAL IDs
+    private String title;
+    
+    public JournalEntry(String title, String content, List<String> tags) {
+        this(LocalDateTime.now(), title, content, tags);
+    }
+    
+    // Used when restoring a stored entry
+    JournalEntry(LocalDateTime timestamp, String title, String content, List<String> tags) {
+        this(timestamp, title, content, TagDictionary.GLOBAL.idsOf(tags));
+    }
+    
+    JournalEntry(LocalDateTime timestamp, String title, String content, int[] tagIds) {
+        this.timestamp = timestamp;
+        this.title = title;
+        this.content = content;
+        this.tagIds = tagIds;
+    }
+    
+    // Getters
+    public LocalDateTime getTimestamp() { return timestamp; }
+    public String getContent() { return content; }
+    public String getTitle() { return title; }
+    
+    public List<String> getTags() {
+        List<String> result = new ArrayList<>(tagIds.length);
+        for (int tagId : tagIds) {
+            result.add(TagDictionary.GLOBAL.nameOf(tagId));
+        }
+        return result;
+    }
+    
+    int getTagCount() { return tagIds.length; }
+    int getTagId(int index) { return tagIds[index]; }
+}
+
+// Time-Indexed Storage
+// Append-ordered log kept sorted by timestamp. Range queries binary-search the
+// backing array and return read-only views instead of copies.
+// Appends must be serialized by the caller; readers need no locking because
+// every append publishes a new (array, size) snapshot through a volatile field.
+class TimeIndexedLog<T> {
+    private static final int INITIAL_CAPACITY = 16;
+    
+    private final Function<T, LocalDateTime> timestampOf;
+    private volatile Snapshot snapshot;
+    
+    public TimeIndexedLog(Function<T, LocalDateTime> timestampOf) {
+        this.timestampOf = timestampOf;
+        this.snapshot = new Snapshot(new Object[INITIAL_CAPACITY], 0);
+    }
+    
+    public void append(T record) {
+        Snapshot current = snapshot;
+        Object[] records = current.records;
+        int size = current.size;
+        LocalDateTime timestamp = timestampOf.apply(record);
+        
+        if (size == 0 || !timestamp.isBefore(timestampAt(records, size - 1))) {
+            if (size == records.length) {
+                records = Arrays.copyOf(records, records.length * 2);
+            }
+            records[size] = record;
+            snapshot = new Snapshot(records, size + 1);
+            return;
+        }
+        
+        // Late arrival: insert into a fresh array so views handed out earlier
+        // keep seeing the records they were created over
+        int index = upperBound(records, size, timestamp);
+        Object[] copy = new Object[Math.max(records.length, size + 1)];
+        System.arraycopy(records, 0, copy, 0, index);
+        copy[index] = record;
+        System.arraycopy(records, index, copy, index + 1, size - index);
+        snapshot = new Snapshot(copy, size + 1);
+    }
+    
+    // Adds a batch already sorted by timestamp with a single publish, merging
+    // it with the existing records when the two overlap in time
+    public void appendAll(List<T> sortedBatch) {
+        if (sortedBatch.isEmpty()) {
+            return;
+        }
+        Snapshot current = snapshot;
+        Object[] records = current.records;
+        int size = current.size;
+        int total = size + sortedBatch.size();
+        
+        if (size == 0 || !timestampOf.apply(sortedBatch.get(0)).isBefore(timestampAt(records, size - 1))) {
+            if (total > records.length) {
+                records = Arrays.copyOf(records, Math.max(total, records.length * 2));
+            }
+            for (int i = 0; i < sortedBatch.size(); i++) {
+                records[size + i] = sortedBatch.get(i);
+            }
+            snapshot = new Snapshot(records, total);
+            return;
+        }
+        
+        Object[] merged = new Object[Math.max(total, records.length)];
+        int existing = 0, incoming = 0;
+        for (int i = 0; i < total; i++) {
+            if (incoming == sortedBatch.size() || (existing < size
+                    && !timestampOf.apply(sortedBatch.get(incoming)).isBefore(timestampAt(records, existing)))) {
+                merged[i] = records[existing++];
+            } else {
+                merged[i] = sortedBatch.get(incoming++);
+            }
+        }
+        snapshot = new Snapshot(merged, total);
+    }
+    
+    public int size() { return snapshot.size; }
+    
+    public List<T> all() {
+        Snapshot current = snapshot;
+        return new RecordView<>(current.records, 0, current.size, false);
+    }
+    
+    // Records strictly after the cutoff, newest first
+    public List<T> newestFirstSince(LocalDateTime cutoff) {
+        Snapshot current = snapshot;
+        int start = upperBound(current.records, current.size, cutoff);
+        return new RecordView<>(current.records, start, current.size, true);
+    }
+    
+    // Records in [from, to), oldest first
+    public List<T> between(LocalDateTime from, LocalDateTime to) {
+        Snapshot current = snapshot;
+        int start = lowerBound(current.records, current.size, from);
+        int end = Math.max(start, lowerBound(current.records, current.size, to));
+        return new RecordView<>(current.records, start, end, false);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private LocalDateTime timestampAt(Object[] records, int index) {
+        return timestampOf.apply((T) records[index]);
+    }
+    
+    // First index whose timestamp is not before the given one
+    private int lowerBound(Object[] records, int size, LocalDateTime timestamp) {
+        int low = 0, high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestampAt(records, mid).isBefore(timestamp)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    // First index whose timestamp is after the given one
+    private int upperBound(Object[] records, int size, LocalDateTime timestamp) {
+        int low = 0, high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestampAt(records, mid).isAfter(timestamp)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+    
+    private static class Snapshot {
+        final Object[] records;
+        final int size;
+        
+        Snapshot(Object[] records, int size) {
+            this.records = records;
+            this.size = size;
+        }
+    }
+    
+    private static class RecordView<T> extends AbstractList<T> implements RandomAccess {
+        private final Object[] records;
+        private final int from;
+        private final int to;
+        private final boolean newestFirst;
+        
+        RecordView(Object[] records, int from, int to, boolean newestFirst) {
+            this.records = records;
+            this.from = from;
+            this.to = to;
+            this.newestFirst = newestFirst;
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (to - from));
+            }
+            return (T) records[newestFirst ? to - 1 - index : from + index];
+        }
+        
+        @Override
+        public int size() { return to - from; }
+    }
+}
+
+// Tag Dictionary
+// Maps normalized tag strings to dense int IDs shared by every user, so stores
+// can keep tags as ints and each distinct tag string lives on the heap once.
+class TagDictionary {
+    static final TagDictionary GLOBAL = new TagDictionary();
+    
+    private final ConcurrentHashMap<String, Integer> ids;
+    private volatile String[] names;
+    private volatile int size;
+    
+    public TagDictionary() {
+        this.ids = new ConcurrentHashMap<>();
+        this.names = new String[64];
+    }
+    
+    public int idOf(String tag) {
+        Integer id = ids.get(tag);
+        return id != null ? id : register(tag);
+    }
+    
+    public String nameOf(int id) {
+        return names[id];
+    }
+    
+    // ID of an already registered tag, or -1; lookups never grow the dictionary
+    public int find(String tag) {
+        Integer id = ids.get(tag);
+        return id != null ? id : -1;
+    }
+    
+    public int[] idsOf(List<String> tags) {
+        int[] result = new int[tags.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = idOf(tags.get(i));
+        }
+        return result;
+    }
+    
+    // Splits user input such as "Tired, hopeful" into normalized tag IDs
+    public int[] parse(String input, String separator) {
+        String trimmedInput = input == null ? "" : input.trim();
+        if (trimmedInput.isEmpty()) {
+            return new int[0];
+        }
+        String[] tags = trimmedInput.split(separator);
+        int[] result = new int[tags.length];
+        for (int i = 0; i < tags.length; i++) {
+            result[i] = idOf(tags[i].trim().toLowerCase());
+        }
+        return result;
+    }
+    
+    public int size() { return size; }
+    
+    private synchronized int register(String tag) {
+        Integer id = ids.get(tag);
+        if (id != null) {
+            return id;
+        }
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+        }
+        // Name is written before the ID becomes visible to other threads
+        names[size] = tag;
+        ids.put(tag, size);
+        return size++;
+    }
+}
+
+// Columnar Mood Storage
+// Keeps a user's check-ins as parallel primitive columns sorted by time instead
+// of one MoodLog object per check-in: epoch seconds, mood ordinal, intensity,
+// tag IDs in a shared int pool and notes off to the side. Readers get MoodLog
+// flyweights over a published snapshot; appends and spills must be serialized
+// by the caller. Timestamps are kept at one-second resolution.
+//
+// With a MoodSegmentStore attached, rows older than its hot window move to
+// compressed on-disk segments once enough of them have aged out. The segment
+// list is published together with the in-memory rows, and reads reaching past
+// the hot rows merge in the segments they overlap.
+class ColumnarMoodStore {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int SPILL_ROWS = 1024;
+    private static final int SEGMENT_ROWS = 4096;
+    private static final MoodType[] MOODS = MoodType.values();
+    
+    private final TagDictionary tags;
+    private final MoodSegmentStore segments; // null keeps every row in memory
+    private final Path segmentFile;
+    private volatile Columns columns;
+    
+    public ColumnarMoodStore() {
+        this(null, null);
+    }
+    
+    public ColumnarMoodStore(MoodSegmentStore segments, String userId) {
+        this.tags = TagDictionary.GLOBAL; // MoodLog tag IDs come from the global dictionary
+        this.segments = segments;
+        this.segmentFile = segments == null ? null : segments.newFile(userId);
+        this.columns = new Columns(INITIAL_CAPACITY, INITIAL_CAPACITY);
+    }
+    
+    public void append(MoodLog moodLog) {
+        Columns current = columns;
+        long epochSecond = moodLog.getTimestamp().toEpochSecond(ZoneOffset.UTC);
+        int tagCount = moodLog.getEmotionTagCount();
+        
+        if (current.size == 0 || epochSecond >= current.epochSeconds[current.size - 1]) {
+            Columns target = current.withRoomFor(1, tagCount);
+            target.write(target.size, epochSecond, moodLog);
+            columns = target.resized(target.size + 1, target.tagPoolSize + tagCount);
+            return;
+        }
+        
+        // Late arrival: rebuild into fresh arrays so earlier views stay stable
+        int row = upperBound(current, epochSecond);
+        columns = current.inserting(row, epochSecond, moodLog);
+    }
+    
+    // Adds a batch already sorted by timestamp with one resize and one publish,
+    // merging it with the existing rows when the two overlap in time
+    public void appendAll(List<MoodLog> sortedBatch) {
+        if (sortedBatch.isEmpty()) {
+            return;
+        }
+        Columns current = columns;
+        int batchTags = 0;
+        for (int i = 0; i < sortedBatch.size(); i++) {
+            batchTags += sortedBatch.get(i).getEmotionTagCount();
+        }
+        
+        long firstSecond = sortedBatch.get(0).getTimestamp().toEpochSecond(ZoneOffset.UTC);
+        if (current.size == 0 || firstSecond >= current.epochSeconds[current.size - 1]) {
+            Columns target = current.withRoomFor(sortedBatch.size(), batchTags);
+            for (int i = 0; i < sortedBatch.size(); i++) {
+                MoodLog moodLog = sortedBatch.get(i);
+                target.write(target.size + i, moodLog.getTimestamp().toEpochSecond(ZoneOffset.UTC), moodLog);
+            }
+            columns = target.resized(target.size + sortedBatch.size(), target.tagPoolSize + batchTags);
+            return;
+        }
+        
+        int total = current.size + sortedBatch.size();
+        Columns merged = new Columns(Math.max(total, current.epochSeconds.length),
+            Math.max(current.tagPoolSize + batchTags, current.tagPool.length));
+        int existing = 0, incoming = 0;
+        long incomingSecond = firstSecond;
+        for (int row = 0; row < total; row++) {
+            if (incoming == sortedBatch.size()
+                    || (existing < current.size && current.epochSeconds[existing] <= incomingSecond)) {
+                merged.copyRow(current, existing++, row);
+            } else {
+                merged.write(row, incomingSecond, sortedBatch.get(incoming++));
+                if (incoming < sortedBatch.size()) {
+                    incomingSecond = sortedBatch.get(incoming).getTimestamp().toEpochSecond(ZoneOffset.UTC);
+                }
+            }
+        }
+        columns = merged.resized(total, current.tagPoolSize + batchTags).withCold(current.cold);
+    }
+    
+    public int size() {
+        Columns current = columns;
+        return current.size + current.coldRows();
+    }
+    
+    public int hotSize() {
+        return columns.size;
+    }
+    
+    // Heap held by the in-memory columns, not counting note text
+    public long estimatedHotBytes() {
+        Columns current = columns;
+        return current.epochSeconds.length * 8L + current.moods.length + current.intensities.length
+            + current.tagEnds.length * 4L + current.tagPool.length * 4L + current.notes.length * 4L;
+    }
+    
+    // Moves rows older than the hot window to disk once at least SPILL_ROWS have
+    // aged out. Rows that land before existing segments (late imports) are merged
+    // into those segments, which are rewritten. On I/O failure the rows stay hot.
+    public void spillIfNeeded(long nowEpochSecond) {
+        Columns current = columns;
+        if (segments == null || current.size < SPILL_ROWS) {
+            return;
+        }
+        int spilled = lowerBound(current, nowEpochSecond - segments.getHotWindowSeconds());
+        if (spilled < SPILL_ROWS) {
+            return;
+        }
+        
+        try {
+            List<MoodSegmentStore.SegmentRef> kept = new ArrayList<>(current.cold);
+            List<Columns> parts = new ArrayList<>();
+            while (!kept.isEmpty() && kept.get(kept.size() - 1).lastSecond >= current.epochSeconds[0]) {
+                parts.add(0, segments.load(segmentFile, kept.remove(kept.size() - 1)));
+            }
+            Columns outgoing = Columns.merge(Columns.concat(parts), current.head(spilled));
+            
+            List<MoodSegmentStore.SegmentRef> cold = new ArrayList<>(kept);
+            for (int from = 0; from < outgoing.size; from += SEGMENT_ROWS) {
+                int to = Math.min(outgoing.size, from + SEGMENT_ROWS);
+                cold.add(segments.write(segmentFile, encode(outgoing, from, to),
+                    outgoing.epochSeconds[from], outgoing.epochSeconds[to - 1], to - from));
+            }
+            columns = current.tail(spilled).withCold(Collections.unmodifiableList(cold));
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Failed to spill " + segmentFile.getFileName() + ": " + e.getMessage());
+        }
+    }
+    
+    // Receives rows straight from the columns; the row's tag IDs are tagPool[tagStart .. tagEnd)
+    interface RowVisitor {
+        void visit(long epochSecond, int moodOrdinal, int intensity, int[] tagPool, int tagStart, int tagEnd);
+    }
+    
+    // Walks a snapshot of every row without building MoodLog views or merging
+    // the cold tier: each cold segment is decoded and visited on its own, then
+    // the hot rows, in the same order as scanBlocks
+    public void scan(RowVisitor visitor) {
+        Columns current = columns;
+        if (segments != null) {
+            for (MoodSegmentStore.SegmentRef segment : current.cold) {
+                visitRows(segments.load(segmentFile, segment), visitor);
+            }
+            segments.recordRead(current.cold.isEmpty());
+        }
+        visitRows(current, visitor);
+    }
+    
+    private static void visitRows(Columns rows, RowVisitor visitor) {
+        for (int row = 0; row < rows.size; row++) {
+            visitor.visit(rows.epochSeconds[row], rows.moods[row], rows.intensities[row],
+                rows.tagPool, rows.tagStart(row), rows.tagEnds[row]);
+        }
+    }
+    
+    // Receives a run of stored rows; see Columns for the layout
+    interface BlockVisitor {
+        void visit(Columns rows, int from, int to) throws IOException;
+    }
+    
+    // Streams a snapshot of every row a stored block at a time: each cold
+    // segment is decoded on its own rather than merged, then the hot rows.
+    // Rows are sorted within a block, but a late check-in among the hot rows
+    // can be older than rows in a cold segment.
+    public void scanBlocks(BlockVisitor visitor) throws IOException {
+        Columns current = columns;
+        if (segments != null) {
+            for (MoodSegmentStore.SegmentRef segment : current.cold) {
+                Columns rows = segments.load(segmentFile, segment);
+                visitor.visit(rows, 0, rows.size);
+            }
+        }
+        visitor.visit(current, 0, current.size);
+    }
+    
+    public List<MoodLog> all() {
+        Columns current = withColdRows(columns, Long.MIN_VALUE, Long.MAX_VALUE);
+        return new MoodLogList(current, tags, 0, current.size, false);
+    }
+    
+    // Check-ins strictly after the cutoff, newest first
+    public List<MoodLog> newestFirstSince(LocalDateTime cutoff) {
+        long cutoffSecond = cutoff.toEpochSecond(ZoneOffset.UTC);
+        Columns current = withColdRows(columns, cutoffSecond + 1, Long.MAX_VALUE);
+        int start = upperBound(current, cutoffSecond);
+        return new MoodLogList(current, tags, start, current.size, true);
+    }
+    
+    // Check-ins in [from, to), oldest first
+    public List<MoodLog> between(LocalDateTime from, LocalDateTime to) {
+        long fromSecond = ceilingEpochSecond(from);
+        long toSecond = ceilingEpochSecond(to);
+        Columns current = withColdRows(columns, fromSecond, toSecond);
+        int start = lowerBound(current, fromSecond);
+        int end = Math.max(start, lowerBound(current, toSecond));
+        return new MoodLogList(current, tags, start, end, false);
+    }
+    
+    // The hot rows, merged with every segment overlapping [fromSecond, toSecond)
+    // when the range reaches into the cold tier
+    private Columns withColdRows(Columns current, long fromSecond, long toSecond) {
+        if (segments == null) {
+            return current;
+        }
+        List<Columns> parts = new ArrayList<>();
+        for (MoodSegmentStore.SegmentRef segment : current.cold) {
+            if (segment.lastSecond >= fromSecond && segment.firstSecond < toSecond) {
+                parts.add(segments.load(segmentFile, segment));
+            }
+        }
+        segments.recordRead(parts.isEmpty());
+        return parts.isEmpty() ? current : Columns.merge(Columns.concat(parts), current);
+    }
+    
+    // Segment payload: varint tag name table, then per row the varint seconds
+    // delta, mood, intensity, varint tag count and table indexes, and the note
+    // as varint length + 1 (0 for none). The whole payload is deflated.
+    static byte[] encode(Columns columns, int from, int to) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            HashMap<Integer, Integer> tableIndexes = new HashMap<>();
+            List<String> table = new ArrayList<>();
+            for (int i = columns.tagStart(from); i < columns.tagEnds[to - 1]; i++) {
+                if (tableIndexes.putIfAbsent(columns.tagPool[i], table.size()) == null) {
+                    table.add(TagDictionary.GLOBAL.nameOf(columns.tagPool[i]));
+                }
+            }
+            writeVarLong(out, table.size());
+            for (String tag : table) {
+                writeBytes(out, tag.getBytes(StandardCharsets.UTF_8), 0);
+            }
+            long previousSecond = columns.epochSeconds[from];
+            for (int row = from; row < to; row++) {
+                writeVarLong(out, columns.epochSeconds[row] - previousSecond);
+                previousSecond = columns.epochSeconds[row];
+                out.writeByte(columns.moods[row]);
+                out.writeByte(columns.intensities[row]);
+                writeVarLong(out, columns.tagEnds[row] - columns.tagStart(row));
+                for (int i = columns.tagStart(row); i < columns.tagEnds[row]; i++) {
+                    writeVarLong(out, tableIndexes.get(columns.tagPool[i]));
+                }
+                String note = columns.notes[row];
+                if (note == null) {
+                    writeVarLong(out, 0);
+                } else {
+                    writeBytes(out, note.getBytes(StandardCharsets.UTF_8), 1);
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+    
+    static Columns decode(byte[] compressed, long firstSecond, int rows) throws IOException {
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(compressed)))) {
+            int[] table = new int[(int) readVarLong(in)];
+            for (int i = 0; i < table.length; i++) {
+                table[i] = TagDictionary.GLOBAL.idOf(new String(readBytes(in, 0), StandardCharsets.UTF_8));
+            }
+            Columns columns = new Columns(Math.max(rows, 1), INITIAL_CAPACITY);
+            int tagPoolSize = 0;
+            long second = firstSecond;
+            for (int row = 0; row < rows; row++) {
+                second += readVarLong(in);
+                columns.epochSeconds[row] = second;
+                columns.moods[row] = in.readByte();
+                columns.intensities[row] = in.readByte();
+                int tagCount = (int) readVarLong(in);
+                if (tagPoolSize + tagCount > columns.tagPool.length) {
+                    columns = columns.resized(row, tagPoolSize).withRoomFor(0, tagCount);
+                }
+                for (int i = 0; i < tagCount; i++) {
+                    columns.tagPool[tagPoolSize++] = table[(int) readVarLong(in)];
+                }
+                columns.tagEnds[row] = tagPoolSize;
+                byte[] note = readBytes(in, 1);
+                columns.notes[row] = note == null ? null : new String(note, StandardCharsets.UTF_8);
+            }
+            return columns.resized(rows, tagPoolSize);
+        }
+    }
+    
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+    
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+    
+    // Length is stored plus bias, so a bias of 1 leaves 0 free to mean null
+    private static void writeBytes(DataOutputStream out, byte[] bytes, int bias) throws IOException {
+        writeVarLong(out, bytes.length + bias);
+        out.write(bytes);
+    }
+    
+    private static byte[] readBytes(DataInputStream in, int bias) throws IOException {
+        long length = readVarLong(in) - bias;
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[(int) length];
+        in.readFully(bytes);
+        return bytes;
+    }
+    
+    private static long ceilingEpochSecond(LocalDateTime timestamp) {
+        long epochSecond = timestamp.toEpochSecond(ZoneOffset.UTC);
+        return timestamp.getNano() > 0 ? epochSecond + 1 : epochSecond;
+    }
+    
+    // First row whose timestamp is not before the given second
+    private static int lowerBound(Columns columns, long epochSecond) {
+        int low = 0, high = columns.size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (columns.epochSeconds[mid] < epochSecond) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    // First row whose timestamp is after the given second
+    private static int upperBound(Columns columns, long epochSecond) {
+        int low = 0, high = columns.size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (columns.epochSeconds[mid] > epochSecond) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+    
+    // Column arrays plus the row count published with them. Rows below size are
+    // never modified in place, so a captured instance is a consistent snapshot.
+    static final class Columns {
+        final long[] epochSeconds;
+        final byte[] moods;
+        final byte[] intensities;
+        final int[] tagEnds; // tags of row i are tagPool[tagEnds[i - 1] .. tagEnds[i])
+        final int[] tagPool;
+        final String[] notes; // null when the check-in had no notes
+        final int size;
+        final int tagPoolSize;
+        final List<MoodSegmentStore.SegmentRef> cold; // spilled rows, oldest segment first
+        
+        Columns(int capacity, int tagCapacity) {
+            this(new long[capacity], new byte[capacity], new byte[capacity], new int[capacity],
+                new int[tagCapacity], new String[capacity], 0, 0, Collections.emptyList());
+        }
+        
+        private Columns(long[] epochSeconds, byte[] moods, byte[] intensities, int[] tagEnds, int[] tagPool,
+                        String[] notes, int size, int tagPoolSize, List<MoodSegmentStore.SegmentRef> cold) {
+            this.epochSeconds = epochSeconds;
+            this.moods = moods;
+            this.intensities = intensities;
+            this.tagEnds = tagEnds;
+            this.tagPool = tagPool;
+            this.notes = notes;
+            this.size = size;
+            this.tagPoolSize = tagPoolSize;
+            this.cold = cold;
+        }
+        
+        Columns resized(int newSize, int newTagPoolSize) {
+            return new Columns(epochSeconds, moods, intensities, tagEnds, tagPool, notes, newSize, newTagPoolSize, cold);
+        }
+        
+        Columns withCold(List<MoodSegmentStore.SegmentRef> newCold) {
+            return new Columns(epochSeconds, moods, intensities, tagEnds, tagPool, notes, size, tagPoolSize, newCold);
+        }
+        
+        int coldRows() {
+            int rows = 0;
+            for (MoodSegmentStore.SegmentRef segment : cold) {
+                rows += segment.rows;
+            }
+            return rows;
+        }
+        
+        Columns withRoomFor(int rows, int tagIds) {
+            int capacity = epochSeconds.length;
+            int tagCapacity = tagPool.length;
+            if (size + rows <= capacity && tagPoolSize + tagIds <= tagCapacity) {
+                return this;
+            }
+            while (capacity < size + rows) capacity *= 2;
+            while (tagCapacity < tagPoolSize + tagIds) tagCapacity *= 2;
+            return new Columns(Arrays.copyOf(epochSeconds, capacity), Arrays.copyOf(moods, capacity),
+                Arrays.copyOf(intensities, capacity), Arrays.copyOf(tagEnds, capacity),
+                Arrays.copyOf(tagPool, tagCapacity), Arrays.copyOf(notes, capacity), size, tagPoolSize, cold);
+        }
+        
+        int tagStart(int row) { return row == 0 ? 0 : tagEnds[row - 1]; }
+        
+        void write(int row, long epochSecond, MoodLog moodLog) {
+            epochSeconds[row] = epochSecond;
+            moods[row] = (byte) moodLog.getMood().ordinal();
+            intensities[row] = (byte) moodLog.getIntensityLevel();
+            int tagPosition = tagStart(row);
+            for (int i = 0; i < moodLog.getEmotionTagCount(); i++) {
+                tagPool[tagPosition++] = moodLog.getEmotionTagId(i);
+            }
+            tagEnds[row] = tagPosition;
+            String note = moodLog.getNotes();
+            notes[row] = note == null || note.isEmpty() ? null : note;
+        }
+        
+        void copyRow(Columns from, int fromRow, int row) {
+            epochSeconds[row] = from.epochSeconds[fromRow];
+            moods[row] = from.moods[fromRow];
+            intensities[row] = from.intensities[fromRow];
+            notes[row] = from.notes[fromRow];
+            int start = from.tagStart(fromRow);
+            int count = from.tagEnds[fromRow] - start;
+            int tagPosition = tagStart(row);
+            System.arraycopy(from.tagPool, start, tagPool, tagPosition, count);
+            tagEnds[row] = tagPosition + count;
+        }
+        
+        Columns inserting(int row, long epochSecond, MoodLog moodLog) {
+            int tagCount = moodLog.getEmotionTagCount();
+            int capacity = Math.max(epochSeconds.length, size + 1);
+            int tagCapacity = Math.max(tagPool.length, tagPoolSize + tagCount);
+            Columns copy = new Columns(capacity, tagCapacity);
+            int tagSplit = tagStart(row);
+            
+            copyRows(this, 0, copy, 0, row);
+            System.arraycopy(tagPool, 0, copy.tagPool, 0, tagSplit);
+            copy.write(row, epochSecond, moodLog);
+            copyRows(this, row, copy, row + 1, size - row);
+            System.arraycopy(tagPool, tagSplit, copy.tagPool, tagSplit + tagCount, tagPoolSize - tagSplit);
+            for (int i = row + 1; i <= size; i++) {
+                copy.tagEnds[i] += tagCount;
+            }
+            return copy.resized(size + 1, tagPoolSize + tagCount).withCold(cold);
+        }
+        
+        // First rows of this snapshot as their own hot-only columns
+        Columns head(int rows) {
+            Columns copy = new Columns(Math.max(rows, 1), Math.max(tagStart(rows), 1));
+            copyRows(this, 0, copy, 0, rows);
+            System.arraycopy(tagPool, 0, copy.tagPool, 0, tagStart(rows));
+            return copy.resized(rows, tagStart(rows));
+        }
+        
+        // Rows from the given one on, keeping spare capacity for appends
+        Columns tail(int from) {
+            int rows = size - from;
+            int tagShift = tagStart(from);
+            Columns copy = new Columns(Math.max(INITIAL_CAPACITY, rows * 2), Math.max(INITIAL_CAPACITY, (tagPoolSize - tagShift) * 2));
+            copyRows(this, from, copy, 0, rows);
+            System.arraycopy(tagPool, tagShift, copy.tagPool, 0, tagPoolSize - tagShift);
+            for (int i = 0; i < rows; i++) {
+                copy.tagEnds[i] -= tagShift;
+            }
+            return copy.resized(rows, tagPoolSize - tagShift);
+        }
+        
+        static Columns concat(List<Columns> parts) {
+            if (parts.size() == 1) {
+                return parts.get(0);
+            }
+            int rows = 0, tagIds = 0;
+            for (Columns part : parts) {
+                rows += part.size;
+                tagIds += part.tagPoolSize;
+            }
+            Columns result = new Columns(Math.max(rows, 1), Math.max(tagIds, 1));
+            int row = 0;
+            for (Columns part : parts) {
+                for (int i = 0; i < part.size; i++) {
+                    result.copyRow(part, i, row++);
+                }
+            }
+            return result.resized(rows, tagIds);
+        }
+        
+        // Two-way merge by timestamp; the result has no cold segments
+        static Columns merge(Columns a, Columns b) {
+            if (a.size == 0 && b.cold.isEmpty()) {
+                return b;
+            }
+            int rows = a.size + b.size;
+            int tagIds = a.tagPoolSize + b.tagPoolSize;
+            Columns result = new Columns(Math.max(rows, 1), Math.max(tagIds, 1));
+            int i = 0, j = 0;
+            for (int row = 0; row < rows; row++) {
+                if (j == b.size || (i < a.size && a.epochSeconds[i] <= b.epochSeconds[j])) {
+                    result.copyRow(a, i++, row);
+                } else {
+                    result.copyRow(b, j++, row);
+                }
+            }
+            return result.resized(rows, tagIds);
+        }
+        
+        private static void copyRows(Columns from, int fromRow, Columns to, int toRow, int rows) {
+            System.arraycopy(from.epochSeconds, fromRow, to.epochSeconds, toRow, rows);
+            System.arraycopy(from.moods, fromRow, to.moods, toRow, rows);
+            System.arraycopy(from.intensities, fromRow, to.intensities, toRow, rows);
+            System.arraycopy(from.tagEnds, fromRow, to.tagEnds, toRow, rows);
+            System.arraycopy(from.notes, fromRow, to.notes, toRow, rows);
+        }
+    }
+    
+    private static final class MoodLogList extends AbstractList<MoodLog> implements RandomAccess {
+        private final Columns columns;
+        private final TagDictionary tags;
+        private final int from;
+        private final int to;
+        private final boolean newestFirst;
+        
+        MoodLogList(Columns columns, TagDictionary tags, int from, int to, boolean newestFirst) {
+            this.columns = columns;
+            this.tags = tags;
+            this.from = from;
+            this.to = to;
+            this.newestFirst = newestFirst;
+        }
+        
+        @Override
+        public MoodLog get(int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (to - from));
+            }
+            return new RowView(columns, tags, newestFirst ? to - 1 - index : from + index);
+        }
+        
+        @Override
+        public int size() { return to - from; }
+    }
+    
+    // Flyweight MoodLog reading a single row of the columns
+    private static final class RowView extends MoodLog {
+        private final Columns columns;
+        private final TagDictionary tags;
+        private final int row;
+        
+        RowView(Columns columns, TagDictionary tags, int row) {
+            this.columns = columns;
+            this.tags = tags;
+            this.row = row;
+        }
+        
+        @Override
+        public LocalDateTime getTimestamp() {
+            return LocalDateTime.ofEpochSecond(columns.epochSeconds[row], 0, ZoneOffset.UTC);
+        }
+        
+        @Override
+        public MoodType getMood() { return MOODS[columns.moods[row]]; }
+        
+        @Override
+        public String getNotes() {
+            String note = columns.notes[row];
+            return note == null ? "" : note;
+        }
+        
+        @Override
+        public int getIntensityLevel() { return columns.intensities[row]; }
+        
+        @Override
+        int getEmotionTagCount() { return columns.tagEnds[row] - columns.tagStart(row); }
+        
+        @Override
+        int getEmotionTagId(int index) { return columns.tagPool[columns.tagStart(row) + index]; }
+        
+        @Override
+        String getEmotionTagAt(int index) { return tags.nameOf(getEmotionTagId(index)); }
+    }
+}
+
+// Cold Mood Segments
+// Disk tier behind ColumnarMoodStore. A user's spilled rows are appended to one
+// file as independently deflated segments; a read maps the segment's byte range
+// and decodes it into columns, and an LRU cache keeps recently decoded segments.
+// Segment files only mirror what the persistence log already holds, so they are
+// cleared on open and refilled as the log replays. Rewritten segments leave their
+// old bytes behind until then. Each load of a user's history spills into a file
+// of its own, deleted once no store refers to it any more.
+class MoodSegmentStore {
+    private final Path directory;
+    private final long hotWindowSeconds;
+    private final SegmentCache cache; // guarded by itself
+    private final AtomicLong hotReads = new AtomicLong();
+    private final AtomicLong coldReads = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicLong segmentsWritten = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong generation = new AtomicLong();
+    private final ReferenceQueue<Path> unreferenced = new ReferenceQueue<>();
+    private final Set<SegmentFile> files = ConcurrentHashMap.newKeySet();
+    
+    private MoodSegmentStore(Path directory, int hotDays, int cacheCapacity) {
+        this.directory = directory;
+        this.hotWindowSeconds = TimeUnit.DAYS.toSeconds(hotDays);
+        this.cache = new SegmentCache(cacheCapacity);
+    }
+    
+    public static MoodSegmentStore open(Path directory, int hotDays, int cacheCapacity) throws IOException {
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(directory, "*.seg")) {
+            for (Path file : stale) {
+                Files.delete(file);
+            }
+        }
+        return new MoodSegmentStore(directory, hotDays, cacheCapacity);
+    }
+    
+    public long getHotWindowSeconds() { return hotWindowSeconds; }
+    
+    // A new file for one copy of the user's history. An evicted copy can still
+    // be read after the history is loaded again, so its file stays until the
+    // returned path is unreachable and only then is deleted.
+    Path newFile(String userId) {
+        deleteUnreferenced();
+        Path file = directory.resolve(PersistenceEngine.fileNameFor(userId) + "." + generation.incrementAndGet() + ".seg");
+        files.add(new SegmentFile(file, unreferenced));
+        return file;
+    }
+    
+    private void deleteUnreferenced() {
+        Reference<? extends Path> cleared;
+        while ((cleared = unreferenced.poll()) != null) {
+            SegmentFile file = (SegmentFile) cleared;
+            files.remove(file);
+            try {
+                Files.deleteIfExists(directory.resolve(file.name));
+            } catch (IOException e) {
+                System.err.println("Failed to delete " + file.name + ": " + e.getMessage());
+            }
+        }
+    }
+    
+    SegmentRef write(Path file, byte[] compressed, long firstSecond, long lastSecond, int rows) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long offset = channel.size();
+            channel.position(offset);
+            PersistenceEngine.writeFully(channel, ByteBuffer.wrap(compressed));
+            segmentsWritten.incrementAndGet();
+            bytesWritten.addAndGet(compressed.length);
+            return new SegmentRef(offset, compressed.length, firstSecond, lastSecond, rows);
+        }
+    }
+    
+    ColumnarMoodStore.Columns load(Path file, SegmentRef segment) {
+        synchronized (cache) {
+            ColumnarMoodStore.Columns cached = cache.get(segment);
+            if (cached != null) {
+                cacheHits.incrementAndGet();
+                return cached;
+            }
+        }
+        cacheMisses.incrementAndGet();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, segment.offset, segment.length);
+            byte[] compressed = new byte[segment.length];
+            mapped.get(compressed);
+            ColumnarMoodStore.Columns decoded = ColumnarMoodStore.decode(compressed, segment.firstSecond, segment.rows);
+            synchronized (cache) {
+                cache.put(segment, decoded);
+            }
+            return decoded;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    // Whether a read was answered by the in-memory rows alone
+    void recordRead(boolean hotOnly) {
+        (hotOnly ? hotReads : coldReads).incrementAndGet();
+    }
+    
+    public TierStats getStats() {
+        return new TierStats(hotReads.get(), coldReads.get(), cacheHits.get(), cacheMisses.get(),
+            segmentsWritten.get(), bytesWritten.get());
+    }
+    
+    // Location and range of one spilled segment
+    static final class SegmentRef {
+        final long offset;
+        final int length;
+        final long firstSecond;
+        final long lastSecond;
+        final int rows;
+        
+        SegmentRef(long offset, int length, long firstSecond, long lastSecond, int rows) {
+            this.offset = offset;
+            this.length = length;
+            this.firstSecond = firstSecond;
+            this.lastSecond = lastSecond;
+            this.rows = rows;
+        }
+    }
+    
+    // Tracks a segment file by name, so the path its store holds can be collected
+    private static final class SegmentFile extends PhantomReference<Path> {
+        final String name;
+        
+        SegmentFile(Path file, ReferenceQueue<Path> queue) {
+            super(file, queue);
+            this.name = file.getFileName().toString();
+        }
+    }
+    
+    // Access-ordered map that drops its least recently used segment when full
+    private static class SegmentCache extends LinkedHashMap<SegmentRef, ColumnarMoodStore.Columns> {
+        private static final long serialVersionUID = 1L;
+        private final int capacity;
+        
+        SegmentCache(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+        
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<SegmentRef, ColumnarMoodStore.Columns> eldest) {
+            return size() > capacity;
+        }
+    }
+}
+
+// Read and spill counters for the memory and disk tiers
+class TierStats {
+    private final long hotReads;
+    private final long coldReads;
+    private final long cacheHits;
+    private final long cacheMisses;
+    private final long segmentsWritten;
+    private final long bytesWritten;
+    
+    public TierStats(long hotReads, long coldReads, long cacheHits, long cacheMisses, long segmentsWritten, long bytesWritten) {
+        this.hotReads = hotReads;
+        this.coldReads = coldReads;
+        this.cacheHits = cacheHits;
+        this.cacheMisses = cacheMisses;
+        this.segmentsWritten = segmentsWritten;
+        this.bytesWritten = bytesWritten;
+    }
+    
+    public long getHotReads() { return hotReads; }
+    public long getColdReads() { return coldReads; }
+    public long getCacheHits() { return cacheHits; }
+    public long getCacheMisses() { return cacheMisses; }
+    public long getSegmentsWritten() { return segmentsWritten; }
+    public long getBytesWritten() { return bytesWritten; }
+    
+    // Share of reads answered from memory without touching a segment
+    public double getHotHitRate() { return rate(hotReads, coldReads); }
+    
+    // Share of segment loads answered by the decoded-segment cache
+    public double getCacheHitRate() { return rate(cacheHits, cacheMisses); }
+    
+    private static double rate(long hits, long misses) {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("hot tier %.1f%% of %d reads, segment cache %.1f%% of %d loads, %d segments (%d KB) written",
+            getHotHitRate() * 100, hotReads + coldReads, getCacheHitRate() * 100, cacheHits + cacheMisses,
+            segmentsWritten, bytesWritten / 1024);
+    }
+}
+
+// Mood Aggregates
+// Running per-user totals updated on every write so the dashboard never walks
+// the mood history. Callers serialize access through the DataManager user lock.
+class MoodAggregates {
+    static final int TOP_TAG_COUNT = 3;
+    
+    private int count;
+    private long moodValueSum;
+    private final int[] moodCounts;
+    private int[] tagCounts; // indexed by TagDictionary.GLOBAL ID
+    private final int[] topTags;
+    private final int[] topTagCounts;
+    private int topTagSize;
+    
+    public MoodAggregates() {
+        this.moodCounts = new int[MoodType.values().length];
+        this.tagCounts = new int[16];
+        this.topTags = new int[TOP_TAG_COUNT];
+        this.topTagCounts = new int[TOP_TAG_COUNT];
+    }
+    
+    public void add(MoodLog log) {
+        count++;
+        moodValueSum += log.getMood().getValue();
+        moodCounts[log.getMood().ordinal()]++;
+        
+        for (int i = 0; i < log.getEmotionTagCount(); i++) {
+            int tag = log.getEmotionTagId(i);
+            if (tag >= tagCounts.length) {
+                tagCounts = Arrays.copyOf(tagCounts, Math.max(tagCounts.length * 2, tag + 1));
+            }
+            updateTopTags(tag, ++tagCounts[tag]);
+        }
+    }
+    
+    public MoodSummary snapshot() {
+        String[] topTagNames = new String[topTagSize];
+        for (int i = 0; i < topTagSize; i++) {
+            topTagNames[i] = TagDictionary.GLOBAL.nameOf(topTags[i]);
+        }
+        return new MoodSummary(count, moodValueSum, mostCommonMood(), topTagNames, Arrays.copyOf(topTagCounts, topTagSize));
+    }
+    
+    private MoodType mostCommonMood() {
+        MoodType[] moods = MoodType.values();
+        MoodType mostCommon = null;
+        int best = 0;
+        for (int i = 0; i < moodCounts.length; i++) {
+            if (moodCounts[i] > best) {
+                best = moodCounts[i];
+                mostCommon = moods[i];
+            }
+        }
+        return mostCommon;
+    }
+    
+    // Counts only ever grow by one, so a tag outside the top list can at most
+    // tie the current minimum before it overtakes it
+    private void updateTopTags(int tag, int tagCount) {
+        int position = -1;
+        for (int i = 0; i < topTagSize; i++) {
+            if (topTags[i] == tag) {
+                position = i;
+                break;
+            }
+        }
+        
+        if (position < 0) {
+            if (topTagSize < TOP_TAG_COUNT) {
+                position = topTagSize++;
+            } else if (tagCount > topTagCounts[TOP_TAG_COUNT - 1]) {
+                position = TOP_TAG_COUNT - 1;
+            } else {
+                return;
+            }
+            topTags[position] = tag;
+        }
+        topTagCounts[position] = tagCount;
+        
+        while (position > 0 && topTagCounts[position] > topTagCounts[position - 1]) {
+            int swappedTag = topTags[position - 1];
+            topTags[position - 1] = topTags[position];
+            topTags[position] = swappedTag;
+            int swappedCount = topTagCounts[position - 1];
+            topTagCounts[position - 1] = topTagCounts[position];
+            topTagCounts[position] = swappedCount;
+            position--;
+        }
+    }
+}
+
+// Immutable point-in-time copy of a user's MoodAggregates
+class MoodSummary {
+    private final int checkInCount;
+    private final long moodValueSum;
+    private final MoodType mostCommonMood;
+    private final String[] topTags;
+    private final int[] topTagCounts;
+    
+    public MoodSummary(int checkInCount, long moodValueSum, MoodType mostCommonMood,
+                       String[] topTags, int[] topTagCounts) {
+        this.checkInCount = checkInCount;
+        this.moodValueSum = moodValueSum;
+        this.mostCommonMood = mostCommonMood;
+        this.topTags = topTags;
+        this.topTagCounts = topTagCounts;
+    }
+    
+    public int getCheckInCount() { return checkInCount; }
+    public double getAverageMood() { return checkInCount == 0 ? 0 : (double) moodValueSum / checkInCount; }
+    public MoodType getMostCommonMood() { return mostCommonMood; }
+    public int getTopTagCount() { return topTags.length; }
+    public String getTopTag(int rank) { return topTags[rank]; }
+    public int getTopTagFrequency(int rank) { return topTagCounts[rank]; }
+}
+
+// Activity Calendar
+// One bit per calendar day with activity, packed 64 days to a long, so streaks,
+// monthly counts and gaps are answered with word operations instead of sorting
+// the history. Callers serialize access through the DataManager user lock.
+class ActivityCalendar {
+    private long baseDay; // epoch day of bit 0 of words[0], always a multiple of 64
+    private long[] words = new long[0];
+    
+    public void mark(LocalDate date) {
+        long day = date.toEpochDay();
+        if (words.length == 0) {
+            baseDay = Math.floorDiv(day, 64) * 64;
+            words = new long[2];
+        } else if (day < baseDay) {
+            // Earlier than anything seen so far: grow towards the past
+            long newBase = Math.floorDiv(day, 64) * 64;
+            int shift = (int) ((baseDay - newBase) / 64);
+            long[] grown = new long[words.length + shift];
+            System.arraycopy(words, 0, grown, shift, words.length);
+            words = grown;
+            baseDay = newBase;
+        }
+        int word = (int) ((day - baseDay) >>> 6);
+        if (word >= words.length) {
+            words = Arrays.copyOf(words, Math.max(words.length * 2, word + 1));
+        }
+        words[word] |= 1L << (day - baseDay);
+    }
+    
+    public boolean isActive(LocalDate date) {
+        long offset = date.toEpochDay() - baseDay;
+        return offset >= 0 && (offset >>> 6) < words.length && (words[(int) (offset >>> 6)] & (1L << offset)) != 0;
+    }
+    
+    // Consecutive active days ending today, or ending yesterday while today is still open
+    public int currentStreak(LocalDate today) {
+        LocalDate end = isActive(today) ? today : today.minusDays(1);
+        long offset = end.toEpochDay() - baseDay;
+        if (offset < 0 || (offset >>> 6) >= words.length) {
+            return 0;
+        }
+        int word = (int) (offset >>> 6);
+        int bit = (int) (offset & 63);
+        int streak = 0;
+        while (word >= 0) {
+            // Move the end day to the top bit and count the run of ones below it
+            int run = Long.numberOfLeadingZeros(~(words[word] << (63 - bit)));
+            streak += Math.min(run, bit + 1);
+            if (run <= bit) {
+                break;
+            }
+            word--;
+            bit = 63;
+        }
+        return streak;
+    }
+    
+    public int longestStreak() {
+        int longest = 0;
+        int run = 0; // ones carried over from the top of the previous word
+        for (long word : words) {
+            if (word == -1L) {
+                run += 64;
+                continue;
+            }
+            longest = Math.max(longest, run + Long.numberOfTrailingZeros(~word));
+            longest = Math.max(longest, longestRunIn(word));
+            run = Long.numberOfLeadingZeros(~word);
+        }
+        return Math.max(longest, run);
+    }
+    
+    // Active days in [from, to]
+    public int countActiveDays(LocalDate from, LocalDate to) {
+        long first = Math.max(from.toEpochDay() - baseDay, 0);
+        long last = Math.min(to.toEpochDay() - baseDay, (long) words.length * 64 - 1);
+        int count = 0;
+        for (long offset = first; offset <= last; ) {
+            int word = (int) (offset >>> 6);
+            int lowBit = (int) (offset & 63);
+            int highBit = (int) Math.min(63, lowBit + (last - offset));
+            long mask = (-1L >>> (63 - highBit)) & (-1L << lowBit);
+            count += Long.bitCount(words[word] & mask);
+            offset += highBit - lowBit + 1;
+        }
+        return count;
+    }
+    
+    public int activeDaysIn(YearMonth month) {
+        return countActiveDays(month.atDay(1), month.atEndOfMonth());
+    }
+    
+    // Runs of at least minDays inactive days between the first and last active day
+    public List<ActivityGap> gaps(int minDays) {
+        List<ActivityGap> gaps = new ArrayList<>();
+        long active = nextSetBit(0);
+        while (active >= 0) {
+            long gapStart = nextClearBit(active);
+            long nextActive = nextSetBit(gapStart);
+            if (nextActive < 0) {
+                break;
+            }
+            if (nextActive - gapStart >= minDays) {
+                gaps.add(new ActivityGap(LocalDate.ofEpochDay(baseDay + gapStart), (int) (nextActive - gapStart)));
+            }
+            active = nextActive;
+        }
+        return gaps;
+    }
+    
+    private long nextSetBit(long from) {
+        int word = (int) (from >>> 6);
+        if (word >= words.length) {
+            return -1;
+        }
+        long bits = words[word] & (-1L << from);
+        while (bits == 0) {
+            if (++word == words.length) {
+                return -1;
+            }
+            bits = words[word];
+        }
+        return ((long) word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+    
+    // Past the last word every day counts as inactive
+    private long nextClearBit(long from) {
+        int word = (int) (from >>> 6);
+        if (word >= words.length) {
+            return from;
+        }
+        long bits = ~words[word] & (-1L << from);
+        while (bits == 0) {
+            if (++word == words.length) {
+                return (long) word << 6;
+            }
+            bits = ~words[word];
+        }
+        return ((long) word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+    
+    // Each step shortens every run of ones by one bit
+    private static int longestRunIn(long word) {
+        int length = 0;
+        while (word != 0) {
+            word &= word >>> 1;
+            length++;
+        }
+        return length;
+    }
+}
+
+class ActivityGap {
+    private final LocalDate start;
+    private final int days;
+    
+    public ActivityGap(LocalDate start, int days) {
+        this.start = start;
+        this.days = days;
+    }
+    
+    public LocalDate getStart() { return start; }
+    public int getDays() { return days; }
+}
+
+enum ActivityKind {
+    MOOD_CHECK_IN, JOURNAL_ENTRY
+}
+
+// Current and longest streaks for both kinds of activity, as of one day
+class StreakSummary {
+    private final int currentMoodStreak;
+    private final int longestMoodStreak;
+    private final int currentJournalStreak;
+    private final int longestJournalStreak;
+    
+    public StreakSummary(int currentMoodStreak, int longestMoodStreak, int currentJournalStreak, int longestJournalStreak) {
+        this.currentMoodStreak = currentMoodStreak;
+        this.longestMoodStreak = longestMoodStreak;
+        this.currentJournalStreak = currentJournalStreak;
+        this.longestJournalStreak = longestJournalStreak;
+    }
+    
+    public int getCurrentMoodStreak() { return currentMoodStreak; }
+    public int getLongestMoodStreak() { return longestMoodStreak; }
+    public int getCurrentJournalStreak() { return currentJournalStreak; }
+    public int getLongestJournalStreak() { return longestJournalStreak; }
+}
+
+// Mood Trends
+// Rolling per-user trend statistics updated on every check-in, so the dashboard
+// and suggestions read the same signals in O(1). Check-ins feed a fast and a
+// slow exponential moving average (per check-in, in arrival order) and a ring
+// of time buckets. Each rolling window keeps exact integer sums over its
+// buckets for mean, variance and least-squares slope, and subtracts buckets as
+// they slide out. The trend is classified on the trend window alone, so old
+// history cannot outweigh the last few days. Callers serialize access through
+// the DataManager user lock.
+class TrendTracker {
+    private static final long EMPTY = Long.MIN_VALUE;
+    
+    private final TrendSettings settings;
+    private final long bucketSeconds;
+    private final long[] bucketIds; // bucket held by each ring slot
+    private final int[] counts;
+    private final int[] moodSums;
+    private final int[] moodSquares;
+    private final long[][] windows; // per window: count, sum y, sum y^2, sum t, sum t^2, sum t*y
+    private long head = EMPTY; // newest bucket the windows cover
+    private long checkIns;
+    private double fastEma;
+    private double slowEma;
+    
+    public TrendTracker(TrendSettings settings) {
+        this.settings = settings;
+        this.bucketSeconds = settings.bucketHours * 3600L;
+        int ring = Integer.highestOneBit(settings.maxWindowBuckets()) * 2;
+        this.bucketIds = new long[ring];
+        this.counts = new int[ring];
+        this.moodSums = new int[ring];
+        this.moodSquares = new int[ring];
+        this.windows = new long[settings.windowDays.length][6];
+        Arrays.fill(bucketIds, EMPTY);
+    }
+    
+    public void add(long epochSecond, int moodValue) {
+        if (checkIns++ == 0) {
+            fastEma = moodValue;
+            slowEma = moodValue;
+        } else {
+            fastEma += settings.fastAlpha * (moodValue - fastEma);
+            slowEma += settings.slowAlpha * (moodValue - slowEma);
+        }
+        
+        long bucket = Math.floorDiv(epochSecond, bucketSeconds);
+        advanceTo(bucket);
+        if (bucket <= head - bucketIds.length) {
+            return; // older than every window
+        }
+        int slot = (int) Math.floorMod(bucket, (long) bucketIds.length);
+        if (bucketIds[slot] != bucket) {
+            bucketIds[slot] = bucket;
+            counts[slot] = 0;
+            moodSums[slot] = 0;
+            moodSquares[slot] = 0;
+        }
+        counts[slot]++;
+        moodSums[slot] += moodValue;
+        moodSquares[slot] += moodValue * moodValue;
+        for (int w = 0; w < windows.length; w++) {
+            if (bucket > head - settings.windowBuckets(w)) {
+                accumulate(windows[w], bucket, 1, moodValue, moodValue * moodValue, 1);
+            }
+        }
+    }
+    
+    public TrendSnapshot snapshot(long nowEpochSecond) {
+        advanceTo(Math.floorDiv(nowEpochSecond, bucketSeconds));
+        WindowStats[] stats = new WindowStats[windows.length];
+        for (int w = 0; w < windows.length; w++) {
+            stats[w] = windowStats(w);
+        }
+        
+        // A straight line with this slope puts the window's newer half this far
+        // above its older half, the comparison the dashboard used to make
+        WindowStats window = stats[settings.trendWindowIndex()];
+        double change = window.getSlopePerDay() * settings.trendWindowDays / 2;
+        MoodTrend trend;
+        if (window.getCount() < settings.minCheckIns) {
+            trend = MoodTrend.INSUFFICIENT_DATA;
+        } else if (change > settings.threshold) {
+            trend = MoodTrend.IMPROVING;
+        } else if (change < -settings.threshold) {
+            trend = MoodTrend.DECLINING;
+        } else {
+            trend = MoodTrend.STABLE;
+        }
+        return new TrendSnapshot(trend, checkIns, fastEma, slowEma, stats);
+    }
+    
+    // Slides every window forward, subtracting the buckets that fall out of it
+    private void advanceTo(long bucket) {
+        if (head == EMPTY || bucket - head >= bucketIds.length) {
+            if (head != EMPTY) {
+                Arrays.fill(bucketIds, EMPTY);
+                for (long[] window : windows) {
+                    Arrays.fill(window, 0);
+                }
+            }
+            head = bucket;
+            return;
+        }
+        for (long next = head + 1; next <= bucket; next++) {
+            for (int w = 0; w < windows.length; w++) {
+                long leaving = next - settings.windowBuckets(w);
+                int slot = (int) Math.floorMod(leaving, (long) bucketIds.length);
+                if (bucketIds[slot] == leaving) {
+                    accumulate(windows[w], leaving, counts[slot], moodSums[slot], moodSquares[slot], -1);
+                }
+            }
+        }
+        head = Math.max(head, bucket);
+    }
+    
+    private static void accumulate(long[] window, long t, long count, long sum, long squares, int sign) {
+        window[0] += sign * count;
+        window[1] += sign * sum;
+        window[2] += sign * squares;
+        window[3] += sign * count * t;
+        window[4] += sign * count * t * t;
+        window[5] += sign * sum * t;
+    }
+    
+    private WindowStats windowStats(int w) {
+        long[] window = windows[w];
+        long n = window[0];
+        if (n == 0) {
+            return new WindowStats(settings.windowDays[w], 0, 0, 0, 0);
+        }
+        double mean = (double) window[1] / n;
+        double variance = n > 1 ? Math.max(0, (window[2] - window[1] * mean) / (n - 1)) : 0;
+        double spread = (double) n * window[4] - (double) window[3] * window[3];
+        double slopePerBucket = spread > 0 ? ((double) n * window[5] - (double) window[3] * window[1]) / spread : 0;
+        return new WindowStats(settings.windowDays[w], n, mean, variance, slopePerBucket * 24 / settings.bucketHours);
+    }
+}
+
+// Window lengths, bucket size and thresholds shared by every TrendTracker
+class TrendSettings {
+    static final TrendSettings DEFAULT = new TrendSettings(6, new int[] {3, 7}, 7, 0.5, 0.2, 0.3, 3);
+    
+    final int bucketHours;
+    final int[] windowDays;
+    final int trendWindowDays;
+    final double fastAlpha;
+    final double slowAlpha;
+    final double threshold;
+    final int minCheckIns;
+    
+    // The trend is IMPROVING or DECLINING when the least-squares fit over the
+    // trendWindowDays window rises or falls by more than threshold across half
+    // the window, given at least minCheckIns check-ins in it. The EMAs are
+    // reported alongside and do not affect the trend.
+    public TrendSettings(int bucketHours, int[] windowDays, int trendWindowDays, double fastAlpha,
+                         double slowAlpha, double threshold, int minCheckIns) {
+        if (bucketHours <= 0 || 24 % bucketHours != 0) {
+            throw new IllegalArgumentException("Bucket hours must divide a day: " + bucketHours);
+        }
+        if (Arrays.stream(windowDays).noneMatch(days -> days == trendWindowDays)) {
+            throw new IllegalArgumentException("Trend window is not one of the windows: " + trendWindowDays);
+        }
+        this.bucketHours = bucketHours;
+        this.windowDays = windowDays.clone();
+        this.trendWindowDays = trendWindowDays;
+        this.fastAlpha = fastAlpha;
+        this.slowAlpha = slowAlpha;
+        this.threshold = threshold;
+        this.minCheckIns = minCheckIns;
+    }
+    
+    int windowBuckets(int window) {
+        return windowDays[window] * 24 / bucketHours;
+    }
+    
+    int maxWindowBuckets() {
+        int max = 1;
+        for (int w = 0; w < windowDays.length; w++) {
+            max = Math.max(max, windowBuckets(w));
+        }
+        return max;
+    }
+    
+    int trendWindowIndex() {
+        for (int w = 0; w < windowDays.length; w++) {
+            if (windowDays[w] == trendWindowDays) {
+                return w;
+            }
+        }
+        throw new IllegalStateException();
+    }
+}
+
+enum MoodTrend {
+    INSUFFICIENT_DATA, IMPROVING, DECLINING, STABLE
+}
+
+// Immutable point-in-time copy of a user's TrendTracker
+class TrendSnapshot {
+    private final MoodTrend trend;
+    private final long checkInCount;
+    private final double fastAverage;
+    private final double slowAverage;
+    private final WindowStats[] windows;
+    
+    public TrendSnapshot(MoodTrend trend, long checkInCount, double fastAverage, double slowAverage, WindowStats[] windows) {
+        this.trend = trend;
+        this.checkInCount = checkInCount;
+        this.fastAverage = fastAverage;
+        this.slowAverage = slowAverage;
+        this.windows = windows;
+    }
+    
+    public MoodTrend getTrend() { return trend; }
+    public long getCheckInCount() { return checkInCount; }
+    public double getFastAverage() { return fastAverage; }
+    public double getSlowAverage() { return slowAverage; }
+    
+    public WindowStats getWindow(int days) {
+        for (WindowStats window : windows) {
+            if (window.getDays() == days) {
+                return window;
+            }
+        }
+        throw new IllegalArgumentException("No " + days + "-day trend window");
+    }
+}
+
+// Mood statistics over the last few days, at bucket resolution
+class WindowStats {
+    private final int days;
+    private final long count;
+    private final double mean;
+    private final double variance;
+    private final double slopePerDay;
+    
+    public WindowStats(int days, long count, double mean, double variance, double slopePerDay) {
+        this.days = days;
+        this.count = count;
+        this.mean = mean;
+        this.variance = variance;
+        this.slopePerDay = slopePerDay;
+    }
+    
+    public int getDays() { return days; }
+    public long getCount() { return count; }
+    public double getMean() { return mean; }
+    public double getVariance() { return variance; }
+    public double getSlopePerDay() { return slopePerDay; }
+}
+
+// Mood Rollups
+// Check-ins pre-aggregated per hour, day, week and month, updated on every
+// write so long-range charts read one row per bucket instead of walking the
+// history. Each level keeps its non-empty buckets sorted in parallel arrays;
+// writes almost always land in the newest bucket, so the common case is an
+// update or an append. Callers serialize access through the DataManager user lock.
+class MoodRollups {
+    static final int DEFAULT_CHART_POINTS = 60;
+    
+    private final Level[] levels;
+    
+    public MoodRollups() {
+        RollupResolution[] resolutions = RollupResolution.values();
+        this.levels = new Level[resolutions.length];
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = new Level(resolutions[i]);
+        }
+    }
+    
+    public void add(MoodLog log) {
+        int mood = log.getMood().getValue();
+        int moodOrdinal = log.getMood().ordinal();
+        int intensity = log.getIntensityLevel();
+        for (Level level : levels) {
+            level.add(level.resolution.bucketOf(log.getTimestamp()), mood, moodOrdinal, intensity);
+        }
+    }
+    
+    // Start of the hour of the first check-in, or null when there is none
+    public LocalDateTime getFirstCheckIn() {
+        Level hours = levels[RollupResolution.HOUR.ordinal()];
+        return hours.size == 0 ? null : RollupResolution.HOUR.startOf(hours.buckets[0]);
+    }
+    
+    // Reads the finest level that covers [from, to] in at most maxPoints buckets,
+    // falling back to months; from == null means since the first check-in
+    public MoodSeries series(LocalDateTime from, LocalDateTime to, int maxPoints) {
+        if (from == null) {
+            from = getFirstCheckIn();
+            if (from == null) {
+                return series(RollupResolution.DAY, to, to);
+            }
+        }
+        return series(RollupResolution.fitting(from, to, maxPoints), from, to);
+    }
+    
+    // Buckets overlapping [from, to] at the given resolution, oldest first
+    public MoodSeries series(RollupResolution resolution, LocalDateTime from, LocalDateTime to) {
+        Level level = levels[resolution.ordinal()];
+        int first = level.indexOf(resolution.bucketOf(from));
+        int end = level.indexOf(resolution.bucketOf(to) + 1);
+        List<MoodRollup> points = new ArrayList<>(end - first);
+        for (int i = first; i < end; i++) {
+            points.add(level.row(i));
+        }
+        return new MoodSeries(resolution, points);
+    }
+    
+    private static final class Level {
+        private static final int MOODS = MoodType.values().length;
+        
+        final RollupResolution resolution;
+        long[] buckets = new long[8];
+        int[] counts = new int[8];
+        int[] moodSums = new int[8];
+        int[] intensitySums = new int[8];
+        byte[] moodMin = new byte[8];
+        byte[] moodMax = new byte[8];
+        byte[] intensityMin = new byte[8];
+        byte[] intensityMax = new byte[8];
+        int[] moodCounts = new int[8 * MOODS]; // MOODS per row, by MoodType ordinal
+        int size;
+        
+        Level(RollupResolution resolution) {
+            this.resolution = resolution;
+        }
+        
+        void add(long bucket, int mood, int moodOrdinal, int intensity) {
+            int row = size - 1;
+            if (size == 0 || buckets[row] != bucket) {
+                row = size == 0 || bucket > buckets[size - 1] ? size : indexOf(bucket);
+                if (row == size || buckets[row] != bucket) {
+                    insert(row, bucket);
+                }
+            }
+            if (counts[row]++ == 0) {
+                moodMin[row] = moodMax[row] = (byte) mood;
+                intensityMin[row] = intensityMax[row] = (byte) intensity;
+            } else {
+                moodMin[row] = (byte) Math.min(moodMin[row], mood);
+                moodMax[row] = (byte) Math.max(moodMax[row], mood);
+                intensityMin[row] = (byte) Math.min(intensityMin[row], intensity);
+                intensityMax[row] = (byte) Math.max(intensityMax[row], intensity);
+            }
+            moodSums[row] += mood;
+            intensitySums[row] += intensity;
+            moodCounts[row * MOODS + moodOrdinal]++;
+        }
+        
+        // First row whose bucket is not before the given one
+        int indexOf(long bucket) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (buckets[mid] < bucket) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+        
+        MoodRollup row(int i) {
+            return new MoodRollup(resolution.startOf(buckets[i]), counts[i], moodSums[i], moodMin[i], moodMax[i],
+                intensitySums[i], intensityMin[i], intensityMax[i],
+                Arrays.copyOfRange(moodCounts, i * MOODS, (i + 1) * MOODS));
+        }
+        
+        // Opens an empty row at position, shifting later buckets up; only
+        // back-dated check-ins land anywhere but the end
+        private void insert(int position, long bucket) {
+            if (size == buckets.length) {
+                int capacity = size * 2;
+                buckets = Arrays.copyOf(buckets, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+                moodSums = Arrays.copyOf(moodSums, capacity);
+                intensitySums = Arrays.copyOf(intensitySums, capacity);
+                moodMin = Arrays.copyOf(moodMin, capacity);
+                moodMax = Arrays.copyOf(moodMax, capacity);
+                intensityMin = Arrays.copyOf(intensityMin, capacity);
+                intensityMax = Arrays.copyOf(intensityMax, capacity);
+                moodCounts = Arrays.copyOf(moodCounts, capacity * MOODS);
+            }
+            int moved = size - position;
+            if (moved > 0) {
+                System.arraycopy(buckets, position, buckets, position + 1, moved);
+                System.arraycopy(counts, position, counts, position + 1, moved);
+                System.arraycopy(moodSums, position, moodSums, position + 1, moved);
+                System.arraycopy(intensitySums, position, intensitySums, position + 1, moved);
+                System.arraycopy(moodMin, position, moodMin, position + 1, moved);
+                System.arraycopy(moodMax, position, moodMax, position + 1, moved);
+                System.arraycopy(intensityMin, position, intensityMin, position + 1, moved);
+                System.arraycopy(intensityMax, position, intensityMax, position + 1, moved);
+                System.arraycopy(moodCounts, position * MOODS, moodCounts, (position + 1) * MOODS, moved * MOODS);
+            }
+            buckets[position] = bucket;
+            counts[position] = 0;
+            moodSums[position] = 0;
+            intensitySums[position] = 0;
+            Arrays.fill(moodCounts, position * MOODS, (position + 1) * MOODS, 0);
+            size++;
+        }
+    }
+}
+
+// Calendar buckets in local time. Bucket numbers are consecutive, so the
+// number of buckets in a range is a subtraction.
+enum RollupResolution {
+    HOUR, DAY, WEEK, MONTH;
+    
+    long bucketOf(LocalDateTime time) {
+        long day = time.toLocalDate().toEpochDay();
+        switch (this) {
+            case HOUR:
+                return day * 24 + time.getHour();
+            case DAY:
+                return day;
+            case WEEK:
+                return Math.floorDiv(day + 3, 7); // weeks start on Monday; epoch day 0 was a Thursday
+            default:
+                return time.getYear() * 12L + time.getMonthValue() - 1;
+        }
+    }
+    
+    LocalDateTime startOf(long bucket) {
+        switch (this) {
+            case HOUR:
+                return LocalDate.ofEpochDay(Math.floorDiv(bucket, 24)).atTime((int) Math.floorMod(bucket, 24), 0);
+            case DAY:
+                return LocalDate.ofEpochDay(bucket).atStartOfDay();
+            case WEEK:
+                return LocalDate.ofEpochDay(bucket * 7 - 3).atStartOfDay();
+            default:
+                return LocalDate.of((int) Math.floorDiv(bucket, 12), (int) Math.floorMod(bucket, 12) + 1, 1).atStartOfDay();
+        }
+    }
+    
+    // The finest resolution that spans [from, to] in at most maxPoints buckets
+    static RollupResolution fitting(LocalDateTime from, LocalDateTime to, int maxPoints) {
+        for (RollupResolution resolution : values()) {
+            if (resolution.bucketOf(to) - resolution.bucketOf(from) + 1 <= maxPoints) {
+                return resolution;
+            }
+        }
+        return MONTH;
+    }
+}
+
+// Preset ranges for long-range charts
+enum ChartRange {
+    WEEK, MONTH, YEAR, ALL_TIME;
+    
+    // Start of the range ending now; null for ALL_TIME
+    LocalDateTime since(LocalDateTime now) {
+        switch (this) {
+            case WEEK:
+                return now.minusWeeks(1);
+            case MONTH:
+                return now.minusMonths(1);
+            case YEAR:
+                return now.minusYears(1);
+            default:
+                return null;
+        }
+    }
+}
+
+// One bucket of a MoodRollups level
+class MoodRollup {
+    private final LocalDateTime start;
+    private final int count;
+    private final int moodSum;
+    private final int minMood;
+    private final int maxMood;
+    private final int intensitySum;
+    private final int minIntensity;
+    private final int maxIntensity;
+    private final int[] moodCounts;
+    
+    public MoodRollup(LocalDateTime start, int count, int moodSum, int minMood, int maxMood,
+                      int intensitySum, int minIntensity, int maxIntensity, int[] moodCounts) {
+        this.start = start;
+        this.count = count;
+        this.moodSum = moodSum;
+        this.minMood = minMood;
+        this.maxMood = maxMood;
+        this.intensitySum = intensitySum;
+        this.minIntensity = minIntensity;
+        this.maxIntensity = maxIntensity;
+        this.moodCounts = moodCounts;
+    }
+    
+    public LocalDateTime getStart() { return start; }
+    public int getCount() { return count; }
+    public int getMoodSum() { return moodSum; }
+    public int getMinMood() { return minMood; }
+    public int getMaxMood() { return maxMood; }
+    public double getAverageMood() { return (double) moodSum / count; }
+    public int getIntensitySum() { return intensitySum; }
+    public int getMinIntensity() { return minIntensity; }
+    public int getMaxIntensity() { return maxIntensity; }
+    public double getAverageIntensity() { return (double) intensitySum / count; }
+    public int getMoodCount(MoodType mood) { return moodCounts[mood.ordinal()]; }
+}
+
+// Non-empty buckets over a range at one resolution, oldest first
+class MoodSeries {
+    private final RollupResolution resolution;
+    private final List<MoodRollup> points;
+    
+    public MoodSeries(RollupResolution resolution, List<MoodRollup> points) {
+        this.resolution = resolution;
+        this.points = Collections.unmodifiableList(points);
+    }
+    
+    public RollupResolution getResolution() { return resolution; }
+    public List<MoodRollup> getPoints() { return points; }
+    
+    public long getCheckInCount() {
+        long count = 0;
+        for (MoodRollup point : points) {
+            count += point.getCount();
+        }
+        return count;
+    }
+    
+    public double getAverageMood() {
+        long count = 0;
+        long sum = 0;
+        for (MoodRollup point : points) {
+            count += point.getCount();
+            sum += point.getMoodSum();
+        }
+        return count == 0 ? 0 : (double) sum / count;
+    }
+    
+    // Least-squares slope of mood over time with each bucket weighted by its
+    // check-ins, in mood points per day; 0 with fewer than two buckets
+    public double getSlopePerDay() {
+        if (points.size() < 2) {
+            return 0;
+        }
+        LocalDateTime origin = points.get(0).getStart();
+        double n = 0, sumT = 0, sumY = 0, sumTT = 0, sumTY = 0;
+        for (MoodRollup point : points) {
+            double days = Duration.between(origin, point.getStart()).getSeconds() / 86400.0;
+            n += point.getCount();
+            sumT += point.getCount() * days;
+            sumY += point.getMoodSum();
+            sumTT += point.getCount() * days * days;
+            sumTY += point.getMoodSum() * days;
+        }
+        double spread = n * sumTT - sumT * sumT;
+        return spread > 0 ? (n * sumTY - sumT * sumY) / spread : 0;
+    }
+}
+
+// Journal Search
+// Incremental inverted index over one user's journal entries. Entry IDs are
+// assigned in insertion order, so every posting list stays sorted and can be
+// intersected with a linear merge. Positions are kept for phrase queries and
+// matches are ranked with BM25. Callers serialize access through the
+// DataManager user lock.
+class JournalSearchIndex {
+    private static final double BM25_K1 = 1.2;
+    private static final double BM25_B = 0.75;
+    
+    private final ArrayList<JournalEntry> entries;
+    private final HashMap<String, Postings> terms;
+    private IntList[] tags; // entry IDs per TagDictionary.GLOBAL ID
+    private final IntList entryLengths;
+    private long totalLength;
+    
+    public JournalSearchIndex() {
+        this.entries = new ArrayList<>();
+        this.terms = new HashMap<>();
+        this.tags = new IntList[16];
+        this.entryLengths = new IntList();
+    }
+    
+    public void add(JournalEntry entry) {
+        int entryId = entries.size();
+        entries.add(entry);
+        
+        // Title and content share one position space, with a gap so a phrase
+        // cannot span the end of the title and the start of the content
+        List<String> titleTokens = tokenize(entry.getTitle());
+        List<String> contentTokens = tokenize(entry.getContent());
+        HashMap<String, IntList> positions = new HashMap<>();
+        for (int i = 0; i < titleTokens.size(); i++) {
+            positions.computeIfAbsent(titleTokens.get(i), t -> new IntList()).add(i);
+        }
+        int offset = titleTokens.size() + 1;
+        for (int i = 0; i < contentTokens.size(); i++) {
+            positions.computeIfAbsent(contentTokens.get(i), t -> new IntList()).add(offset + i);
+        }
+        for (Map.Entry<String, IntList> term : positions.entrySet()) {
+            terms.computeIfAbsent(term.getKey(), t -> new Postings()).add(entryId, term.getValue());
+        }
+        
+        for (int i = 0; i < entry.getTagCount(); i++) {
+            int tag = entry.getTagId(i);
+            if (tag >= tags.length) {
+                tags = Arrays.copyOf(tags, Math.max(tags.length * 2, tag + 1));
+            }
+            if (tags[tag] == null) {
+                tags[tag] = new IntList();
+            }
+            IntList tagged = tags[tag];
+            if (tagged.size() == 0 || tagged.get(tagged.size() - 1) != entryId) {
+                tagged.add(entryId);
+            }
+        }
+        
+        int length = titleTokens.size() + contentTokens.size();
+        entryLengths.add(length);
+        totalLength += length;
+    }
+    
+    public List<JournalSearchResult> search(JournalQuery query) {
+        List<String> queryTerms = new ArrayList<>(query.getTerms());
+        for (List<String> phrase : query.getPhrases()) {
+            queryTerms.addAll(phrase);
+        }
+        
+        // Candidates must contain every term and carry every tag
+        List<IntList> required = new ArrayList<>();
+        for (String term : queryTerms) {
+            Postings postings = terms.get(term);
+            if (postings == null) {
+                return Collections.emptyList();
+            }
+            required.add(postings.entryIds);
+        }
+        for (String tag : query.getTags()) {
+            int tagId = TagDictionary.GLOBAL.find(tag);
+            IntList tagged = tagId >= 0 && tagId < tags.length ? tags[tagId] : null;
+            if (tagged == null) {
+                return Collections.emptyList();
+            }
+            required.add(tagged);
+        }
+        IntList candidates = required.isEmpty() ? null : intersect(required);
+        
+        PriorityQueue<JournalSearchResult> best = new PriorityQueue<>(
+            Comparator.comparingDouble(JournalSearchResult::getScore)
+                .thenComparing(result -> result.getEntry().getTimestamp()));
+        int candidateCount = candidates == null ? entries.size() : candidates.size();
+        for (int i = 0; i < candidateCount; i++) {
+            int entryId = candidates == null ? i : candidates.get(i);
+            JournalEntry entry = entries.get(entryId);
+            if (!query.coversTime(entry.getTimestamp()) || !matchesPhrases(entryId, query.getPhrases())) {
+                continue;
+            }
+            best.add(new JournalSearchResult(entry, score(entryId, queryTerms)));
+            if (best.size() > query.getLimit()) {
+                best.poll();
+            }
+        }
+        
+        List<JournalSearchResult> results = new ArrayList<>(best);
+        results.sort(best.comparator().reversed());
+        return results;
+    }
+    
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+    
+    // BM25 over the query terms; with no terms, newer entries rank first via the tie-break
+    private double score(int entryId, List<String> queryTerms) {
+        double score = 0;
+        double averageLength = entries.isEmpty() ? 1 : Math.max(1.0, (double) totalLength / entries.size());
+        double lengthNorm = 1 - BM25_B + BM25_B * entryLengths.get(entryId) / averageLength;
+        for (String term : queryTerms) {
+            Postings postings = terms.get(term);
+            int index = postings.entryIds.binarySearch(entryId);
+            int frequency = postings.frequency(index);
+            double idf = Math.log(1 + (entries.size() - postings.entryIds.size() + 0.5) / (postings.entryIds.size() + 0.5));
+            score += idf * frequency * (BM25_K1 + 1) / (frequency + BM25_K1 * lengthNorm);
+        }
+        return score;
+    }
+    
+    private boolean matchesPhrases(int entryId, List<List<String>> phrases) {
+        for (List<String> phrase : phrases) {
+            if (!matchesPhrase(entryId, phrase)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private boolean matchesPhrase(int entryId, List<String> phrase) {
+        if (phrase.size() < 2) {
+            return true; // single words are already required as terms
+        }
+        Postings first = terms.get(phrase.get(0));
+        int firstIndex = first.entryIds.binarySearch(entryId);
+        for (int p = first.positionStart(firstIndex); p < first.positionEnd(firstIndex); p++) {
+            int position = first.positions.get(p);
+            boolean matched = true;
+            for (int i = 1; i < phrase.size() && matched; i++) {
+                Postings next = terms.get(phrase.get(i));
+                matched = next.hasPosition(next.entryIds.binarySearch(entryId), position + i);
+            }
+            if (matched) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static IntList intersect(List<IntList> lists) {
+        lists.sort(Comparator.comparingInt(IntList::size));
+        IntList result = lists.get(0);
+        for (int i = 1; i < lists.size() && result.size() > 0; i++) {
+            IntList other = lists.get(i);
+            IntList merged = new IntList();
+            int a = 0, b = 0;
+            while (a < result.size() && b < other.size()) {
+                int left = result.get(a), right = other.get(b);
+                if (left == right) {
+                    merged.add(left);
+                    a++;
+                    b++;
+                } else if (left < right) {
+                    a++;
+                } else {
+                    b++;
+                }
+            }
+            result = merged;
+        }
+        return result;
+    }
+    
+    // Entries containing one term, with the term's positions in each entry
+    private static class Postings {
+        final IntList entryIds = new IntList();
+        final IntList positionEnds = new IntList();
+        final IntList positions = new IntList();
+        
+        void add(int entryId, IntList entryPositions) {
+            entryIds.add(entryId);
+            for (int i = 0; i < entryPositions.size(); i++) {
+                positions.add(entryPositions.get(i));
+            }
+            positionEnds.add(positions.size());
+        }
+        
+        int positionStart(int index) { return index == 0 ? 0 : positionEnds.get(index - 1); }
+        int positionEnd(int index) { return positionEnds.get(index); }
+        int frequency(int index) { return positionEnd(index) - positionStart(index); }
+        
+        boolean hasPosition(int index, int position) {
+            int low = positionStart(index), high = positionEnd(index) - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int value = positions.get(mid);
+                if (value == position) {
+                    return true;
+                } else if (value < position) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return false;
+        }
+    }
+}
+
+// Growable int array without boxing
+class IntList {
+    private int[] values = new int[4];
+    private int size;
+    
+    public void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+    
+    public int get(int index) { return values[index]; }
+    public int size() { return size; }
+    
+    public void clear() {
+        size = 0;
+    }
+    
+    // Index of the value in this ascending list
+    public int binarySearch(int value) {
+        return Arrays.binarySearch(values, 0, size, value);
+    }
+}
+
+// Journal search criteria: every term, phrase and tag must match and the entry
+// must fall inside the optional [from, to) time range
+class JournalQuery {
+    private static final int DEFAULT_LIMIT = 10;
+    
+    private final List<String> terms;
+    private final List<List<String>> phrases;
+    private final List<String> tags;
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+    private final int limit;
+    
+    public JournalQuery(List<String> terms, List<List<String>> phrases, List<String> tags,
+                        LocalDateTime from, LocalDateTime to, int limit) {
+        this.terms = terms;
+        this.phrases = phrases;
+        this.tags = tags;
+        this.from = from;
+        this.to = to;
+        this.limit = limit;
+    }
+    
+    // Parses search box input: plain words, "quoted phrases" and tag:name filters
+    public static JournalQuery parse(String input) {
+        List<String> terms = new ArrayList<>();
+        List<List<String>> phrases = new ArrayList<>();
+        List<String> tags = new ArrayList<>();
+        String[] quoted = input.split("\"", -1);
+        for (int i = 0; i < quoted.length; i++) {
+            if (i % 2 == 1) {
+                List<String> phrase = JournalSearchIndex.tokenize(quoted[i]);
+                if (!phrase.isEmpty()) {
+                    phrases.add(phrase);
+                }
+                continue;
+            }
+            for (String word : quoted[i].trim().split("\\s+")) {
+                if (word.startsWith("tag:") && word.length() > 4) {
+                    tags.add(word.substring(4).toLowerCase());
+                } else {
+                    terms.addAll(JournalSearchIndex.tokenize(word));
+                }
+            }
+        }
+        return new JournalQuery(terms, phrases, tags, null, null, DEFAULT_LIMIT);
+    }
+    
+    public JournalQuery between(LocalDateTime from, LocalDateTime to) {
+        return new JournalQuery(terms, phrases, tags, from, to, limit);
+    }
+    
+    public JournalQuery limit(int limit) {
+        return new JournalQuery(terms, phrases, tags, from, to, limit);
+    }
+    
+    public List<String> getTerms() { return terms; }
+    public List<List<String>> getPhrases() { return phrases; }
+    public List<String> getTags() { return tags; }
+    public int getLimit() { return limit; }
+    
+    boolean coversTime(LocalDateTime timestamp) {
+        return (from == null || !timestamp.isBefore(from)) && (to == null || timestamp.isBefore(to));
+    }
+}
+
+class JournalSearchResult {
+    private final JournalEntry entry;
+    private final double score;
+    
+    public JournalSearchResult(JournalEntry entry, double score) {
+        this.entry = entry;
+        this.score = score;
+    }
+    
+    public JournalEntry getEntry() { return entry; }
+    public double getScore() { return score; }
+}
+
+// Persistence Engine
+// Compact append-only binary log per user. Writers only encode into an in-memory
+// batch; a background committer writes and forces every pending batch together
+// (group commit). Large logs are appended to a snapshot file, and both files are
+// replayed through memory-mapped reads on startup.
+class PersistenceEngine implements AutoCloseable {
+    private static final int MAGIC = 0x4D4D4C47; // "MMLG"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 16; // magic, version, generation
+    private static final int SNAPSHOT_MAGIC = 0x4D4D534E; // "MMSN"
+    private static final int SNAPSHOT_HEADER_BYTES = 24; // magic, version, generation, record bytes
+    private static final byte RECORD_USER = 1;
+    private static final byte RECORD_MOOD = 2;
+    private static final byte RECORD_JOURNAL = 3;
+    static final int DEFAULT_MAX_OPEN_CHANNELS = 256;
+    
+    // Callbacks used while loading existing data back into memory
+    interface ReplayHandler {
+        void onUser(User user);
+        void onMoodLog(String userId, MoodLog moodLog);
+        void onJournalEntry(String userId, JournalEntry entry);
+    }
+    
+    private final Path directory;
+    private final long commitIntervalMillis;
+    private final long snapshotThresholdBytes;
+    private final ConcurrentHashMap<String, UserLog> logs;
+    private final ConcurrentLinkedQueue<UserLog> dirtyLogs;
+    // Logs with an open channel, least recently used first; the committer closes
+    // the oldest beyond maxOpenChannels so file handles stay bounded
+    private final LinkedHashMap<UserLog, Boolean> openChannels;
+    private final int maxOpenChannels;
+    private final AtomicLong appendSequence;
+    private final Object commitSignal;
+    private final Thread committer;
+    private volatile long committedSequence;
+    private volatile long commitRounds;
+    private volatile boolean commitFailing; // the last round left records unwritten
+    private volatile boolean running;
+    
+    public PersistenceEngine(Path directory, long commitIntervalMillis, long snapshotThresholdBytes) throws IOException {
+        this(directory, commitIntervalMillis, snapshotThresholdBytes, DEFAULT_MAX_OPEN_CHANNELS);
+    }
+    
+    public PersistenceEngine(Path directory, long commitIntervalMillis, long snapshotThresholdBytes,
+                             int maxOpenChannels) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.commitIntervalMillis = commitIntervalMillis;
+        this.snapshotThresholdBytes = snapshotThresholdBytes;
+        this.logs = new ConcurrentHashMap<>();
+        this.dirtyLogs = new ConcurrentLinkedQueue<>();
+        this.openChannels = new LinkedHashMap<>(16, 0.75f, true);
+        this.maxOpenChannels = maxOpenChannels;
+        this.appendSequence = new AtomicLong();
+        this.commitSignal = new Object();
+        this.running = true;
+        this.committer = new Thread(this::runCommitter, "persistence-committer");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+    
+    public static PersistenceEngine open(Path directory) throws IOException {
+        return new PersistenceEngine(directory, 10, 8L * 1024 * 1024);
+    }
+    
+    // Reads just the user record of every stored user; each user's history is
+    // loaded later, when first needed, by replayUser
+    public void replayUsers(Consumer<User> handler) throws IOException {
+        Set<String> baseNames = new LinkedHashSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.{log,snap}")) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                baseNames.add(fileName.substring(0, fileName.lastIndexOf('.')));
+            }
+        }
+        for (String baseName : baseNames) {
+            User user = new UserLog(baseName).readUser();
+            if (user != null) {
+                handler.accept(user);
+            }
+        }
+    }
+    
+    // Loads one user's snapshot and log. Anything still waiting for the committer
+    // is written first, so the replay sees every write accepted so far.
+    public void replayUser(String userId, ReplayHandler handler) throws IOException {
+        UserLog log = logs.computeIfAbsent(userId, id -> new UserLog(fileNameFor(id)));
+        synchronized (log) {
+            if (!log.commit()) {
+                dirtyLogs.add(log);
+                throw new IOException("Could not write pending records of " + userId);
+            }
+            log.closeChannel();
+            log.replay(handler);
+        }
+    }
+    
+    // Closes the user's log file, e.g. when their history leaves memory. Pending
+    // records are unaffected; the next commit reopens the file.
+    public void release(String userId) {
+        UserLog log = logs.get(userId);
+        if (log != null) {
+            log.closeChannel();
+        }
+    }
+    
+    public void appendUser(User user) {
+        UserLog log = logs.computeIfAbsent(user.getUserId(), id -> new UserLog(fileNameFor(id)));
+        log.append(RECORD_USER, out -> {
+            writeString(out, user.getUserId());
+            writeString(out, user.getName());
+            writeTimestamp(out, user.getJoinDate());
+        });
+    }
+    
+    public void appendMoodLog(String userId, MoodLog moodLog) {
+        requireLog(userId).append(RECORD_MOOD, out -> writeMoodLog(out, moodLog));
+    }
+    
+    public void appendJournalEntry(String userId, JournalEntry entry) {
+        requireLog(userId).append(RECORD_JOURNAL, out -> writeJournalEntry(out, entry));
+    }
+    
+    // Batch variants take the user's log lock once for the whole batch
+    public void appendMoodLogs(String userId, List<MoodLog> moodLogs) {
+        UserLog log = requireLog(userId);
+        synchronized (log) {
+            for (MoodLog moodLog : moodLogs) {
+                log.append(RECORD_MOOD, out -> writeMoodLog(out, moodLog));
+            }
+        }
+    }
+    
+    public void appendJournalEntries(String userId, List<JournalEntry> entries) {
+        UserLog log = requireLog(userId);
+        synchronized (log) {
+            for (JournalEntry entry : entries) {
+                log.append(RECORD_JOURNAL, out -> writeJournalEntry(out, entry));
+            }
+        }
+    }
+    
+    private static void writeMoodLog(DataOutputStream out, MoodLog moodLog) throws IOException {
+        writeTimestamp(out, moodLog.getTimestamp());
+        out.writeByte(moodLog.getMood().ordinal());
+        out.writeByte(moodLog.getIntensityLevel());
+        out.writeShort(moodLog.getEmotionTagCount());
+        for (int i = 0; i < moodLog.getEmotionTagCount(); i++) {
+            writeString(out, moodLog.getEmotionTagAt(i));
+        }
+        writeString(out, moodLog.getNotes());
+    }
+    
+    private static void writeJournalEntry(DataOutputStream out, JournalEntry entry) throws IOException {
+        writeTimestamp(out, entry.getTimestamp());
+        writeString(out, entry.getTitle());
+        writeString(out, entry.getContent());
+        out.writeShort(entry.getTagCount());
+        for (int i = 0; i < entry.getTagCount(); i++) {
+            writeString(out, TagDictionary.GLOBAL.nameOf(entry.getTagId(i)));
+        }
+    }
+    
+    // Blocks until everything appended before the call is on disk. Throws
+    // UncheckedIOException if a commit round that started after the call could
+    // not write everything, or if the engine was closed first.
+    public void sync() {
+        long target = appendSequence.get();
+        synchronized (commitSignal) {
+            long firstFullRound = commitRounds + 2; // the round in progress may have started before the call
+            commitSignal.notifyAll();
+            while (committedSequence < target) {
+                if (!committer.isAlive()) {
+                    throw new UncheckedIOException(new IOException("Persistence engine is closed"));
+                }
+                if (commitFailing && commitRounds >= firstFullRound) {
+                    throw new UncheckedIOException(new IOException("Records could not be written; see the error log"));
+                }
+                try {
+                    commitSignal.wait(commitIntervalMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+    
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        synchronized (commitSignal) {
+            commitSignal.notifyAll();
+        }
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (UserLog log : logs.values()) {
+            log.closeChannel();
+        }
+    }
+    
+    private UserLog requireLog(String userId) {
+        UserLog log = logs.get(userId);
+        if (log == null) {
+            throw new IllegalArgumentException("Unknown user: " + userId);
+        }
+        return log;
+    }
+    
+    // Every append is queued before it is counted, so the logs drained after
+    // reading the sequence hold every record it covers
+    private void runCommitter() {
+        List<UserLog> failed = new ArrayList<>();
+        while (true) {
+            boolean stopping = !running;
+            long sequence = appendSequence.get();
+            
+            UserLog log;
+            while ((log = dirtyLogs.poll()) != null) {
+                if (!log.commit()) {
+                    failed.add(log);
+                }
+                closeIdleChannels();
+            }
+            // Failed logs go back only now, so a lasting error cannot keep the
+            // drain above going; they are retried next interval
+            boolean failing = !failed.isEmpty();
+            dirtyLogs.addAll(failed);
+            failed.clear();
+            
+            synchronized (commitSignal) {
+                if (!failing) {
+                    committedSequence = sequence;
+                }
+                commitFailing = failing;
+                commitRounds++;
+                commitSignal.notifyAll();
+                if (stopping) {
+                    return;
+                }
+                try {
+                    commitSignal.wait(commitIntervalMillis);
+                } catch (InterruptedException e) {
+                    running = false;
+                }
+            }
+        }
+    }
+    
+    // Runs after every commit, so a long drain cannot pile up open files.
+    // Picks the victims under the map lock but closes them after releasing it;
+    // a log registers itself while holding its own lock, so taking the two the
+    // other way round could deadlock
+    private void closeIdleChannels() {
+        List<UserLog> idle = new ArrayList<>();
+        synchronized (openChannels) {
+            Iterator<UserLog> oldestFirst = openChannels.keySet().iterator();
+            for (int excess = openChannels.size() - maxOpenChannels; excess > 0; excess--) {
+                idle.add(oldestFirst.next());
+            }
+        }
+        for (UserLog log : idle) {
+            log.closeChannel();
+        }
+    }
+    
+    private Path logPathFor(Path snapshot) {
+        String fileName = snapshot.getFileName().toString();
+        return snapshot.resolveSibling(fileName.substring(0, fileName.length() - ".snap".length()) + ".log");
+    }
+    
+    // User IDs become file names, so escape anything outside a safe character set
+    static String fileNameFor(String userId) {
+        StringBuilder name = new StringBuilder();
+        for (byte b : userId.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '-') {
+                name.append(c);
+            } else {
+                name.append('%').append(String.format("%02X", b & 0xFF));
+            }
+        }
+        return name.toString();
+    }
+    
+    private static void writeTimestamp(DataOutputStream out, LocalDateTime timestamp) throws IOException {
+        out.writeLong(timestamp.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(timestamp.getNano());
+    }
+    
+    private static LocalDateTime readTimestamp(ByteBuffer in) {
+        long epochSecond = in.getLong();
+        return LocalDateTime.ofEpochSecond(epochSecond, in.getInt(), ZoneOffset.UTC);
+    }
+    
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private static int[] readTagIds(ByteBuffer in) {
+        int[] ids = new int[in.getShort() & 0xFFFF];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = TagDictionary.GLOBAL.idOf(readString(in));
+        }
+        return ids;
+    }
+    
+    private static ByteBuffer header(long generation) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(generation);
+        header.flip();
+        return header;
+    }
+    
+    private static ByteBuffer snapshotHeader(long generation, long recordBytes) {
+        ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER_BYTES);
+        header.putInt(SNAPSHOT_MAGIC).putInt(FORMAT_VERSION).putLong(generation).putLong(recordBytes);
+        header.flip();
+        return header;
+    }
+    
+    private static long readHeader(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+            return -1;
+        }
+        return buffer.getLong();
+    }
+    
+    // The generation a snapshot has absorbed, or -1 if its header is missing or
+    // damaged. Limits the buffer to the record bytes the header vouches for;
+    // anything after them was left by a compaction that did not finish.
+    private static long readSnapshotHeader(ByteBuffer buffer) {
+        if (buffer.remaining() < SNAPSHOT_HEADER_BYTES || buffer.getInt() != SNAPSHOT_MAGIC
+                || buffer.getInt() != FORMAT_VERSION) {
+            return -1;
+        }
+        long generation = buffer.getLong();
+        long recordBytes = buffer.getLong();
+        if (recordBytes < 0 || recordBytes > buffer.remaining()) {
+            return -1;
+        }
+        buffer.limit(buffer.position() + (int) recordBytes);
+        return generation;
+    }
+    
+    static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+    
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+    
+    // One user's log and snapshot files plus the batch waiting for the next commit
+    private class UserLog {
+        private final Path logPath;
+        private final Path snapshotPath;
+        private final ByteArrayOutputStream pending;
+        private final DataOutputStream pendingOut;
+        private final ByteArrayOutputStream scratch;
+        private final DataOutputStream scratchOut;
+        private FileChannel channel;
+        private long generation;
+        private long logBytes;
+        private long snapshotBytes = -1; // valid record bytes in the snapshot, -1 until read
+        private boolean queued;
+        private boolean failing; // reported once until a commit succeeds again
+        
+        UserLog(String baseName) {
+            this.logPath = directory.resolve(baseName + ".log");
+            this.snapshotPath = directory.resolve(baseName + ".snap");
+            this.pending = new ByteArrayOutputStream();
+            this.pendingOut = new DataOutputStream(pending);
+            this.scratch = new ByteArrayOutputStream();
+            this.scratchOut = new DataOutputStream(scratch);
+        }
+        
+        synchronized void append(byte type, RecordWriter writer) {
+            scratch.reset();
+            try {
+                writer.write(scratchOut);
+                pendingOut.writeByte(type);
+                pendingOut.writeInt(scratch.size());
+                scratch.writeTo(pendingOut);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            
+            if (!queued) {
+                queued = true;
+                dirtyLogs.add(this);
+            }
+            appendSequence.incrementAndGet();
+        }
+        
+        // Writes the pending batch. On failure the batch stays pending, any
+        // partial write is cut off again, and false tells the caller to queue
+        // the log for a retry; appends meanwhile do not queue it themselves.
+        synchronized boolean commit() {
+            queued = false;
+            if (pending.size() == 0) {
+                return true;
+            }
+            try {
+                FileChannel out = channel();
+                writeFully(out, ByteBuffer.wrap(pending.toByteArray()));
+                out.force(false);
+                logBytes += pending.size();
+                pending.reset();
+                if (logBytes > snapshotThresholdBytes) {
+                    compact();
+                }
+                if (failing) {
+                    failing = false;
+                    System.err.println("Persisting " + logPath.getFileName() + " works again");
+                }
+                return true;
+            } catch (IOException e) {
+                if (!failing) {
+                    failing = true;
+                    System.err.println("Failed to persist " + logPath.getFileName() + ", will retry: " + e.getMessage());
+                }
+                discardPartialWrite();
+                queued = true;
+                return false;
+            }
+        }
+        
+        // A torn record mid-log would hide every later record from replay
+        private void discardPartialWrite() {
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.truncate(HEADER_BYTES + logBytes);
+                channel.position(HEADER_BYTES + logBytes);
+            } catch (IOException e) {
+                closeChannel(); // reopening truncates to the committed length
+            }
+        }
+        
+        // Appends the current log's records to the snapshot and starts a new log
+        // generation, so each record is copied once however large the snapshot
+        // grows and a compaction costs at most the threshold. The header is
+        // rewritten only after the records are on disk and names the generation
+        // absorbed and the valid length: a crash before it leaves the old header,
+        // which hides the partial copy, and a crash after it but before the log
+        // is reset never replays the same records twice.
+        private void compact() throws IOException {
+            long recordBytes = snapshotBytes();
+            try (FileChannel out = FileChannel.open(snapshotPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long end = SNAPSHOT_HEADER_BYTES + recordBytes;
+                out.position(end);
+                transferFully(channel, HEADER_BYTES, logBytes, out);
+                if (out.size() > end + logBytes) {
+                    out.truncate(end + logBytes);
+                }
+                out.force(false);
+                ByteBuffer header = snapshotHeader(generation, recordBytes + logBytes);
+                while (header.hasRemaining()) {
+                    out.write(header, header.position());
+                }
+                out.force(true);
+            }
+            snapshotBytes = recordBytes + logBytes;
+            
+            generation++;
+            channel.truncate(0);
+            channel.position(0);
+            writeFully(channel, header(generation));
+            channel.force(true);
+            logBytes = 0;
+        }
+        
+        private long snapshotBytes() throws IOException {
+            if (snapshotBytes < 0) {
+                snapshotBytes = 0;
+                if (Files.exists(snapshotPath)) {
+                    try (FileChannel in = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+                        ByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+                        if (readSnapshotHeader(buffer) >= 0) {
+                            snapshotBytes = buffer.remaining();
+                        }
+                    }
+                }
+            }
+            return snapshotBytes;
+        }
+        
+        private void transferFully(FileChannel in, long position, long count, FileChannel out) throws IOException {
+            long transferred = 0;
+            while (transferred < count) {
+                transferred += in.transferTo(position + transferred, count - transferred, out);
+            }
+        }
+        
+        // Also marks the log as recently used among the open channels
+        private FileChannel channel() throws IOException {
+            if (channel == null) {
+                channel = FileChannel.open(logPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+                synchronized (openChannels) {
+                    openChannels.put(this, Boolean.TRUE);
+                }
+                if (channel.size() < HEADER_BYTES) {
+                    channel.truncate(0);
+                    writeFully(channel, header(generation));
+                } else if (channel.size() > HEADER_BYTES + logBytes) {
+                    channel.truncate(HEADER_BYTES + logBytes);
+                }
+                channel.position(HEADER_BYTES + logBytes);
+            }
+            synchronized (openChannels) {
+                openChannels.put(this, Boolean.TRUE);
+            }
+            return channel;
+        }
+        
+        synchronized void closeChannel() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    System.err.println("Failed to close " + logPath.getFileName() + ": " + e.getMessage());
+                }
+                channel = null;
+            }
+            synchronized (openChannels) {
+                openChannels.remove(this);
+            }
+        }
+        
+        // Loads the snapshot and the log, truncating a torn record left by a crash.
+        // Returns the owning user's ID, or null if the files hold no user record.
+        synchronized String replay(ReplayHandler handler) throws IOException {
+            String userId = null;
+            long snapshotGeneration = -1;
+            snapshotBytes = 0;
+            if (Files.exists(snapshotPath)) {
+                try (FileChannel in = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+                    ByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+                    snapshotGeneration = readSnapshotHeader(buffer);
+                    if (snapshotGeneration >= 0) {
+                        snapshotBytes = buffer.remaining();
+                        userId = replayRecords(buffer, handler, userId);
+                    }
+                }
+            }
+            generation = snapshotGeneration + 1;
+            
+            if (Files.exists(logPath)) {
+                long validBytes = 0;
+                try (FileChannel in = FileChannel.open(logPath, StandardOpenOption.READ)) {
+                    ByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+                    long logGeneration = readHeader(buffer);
+                    if (logGeneration > snapshotGeneration) {
+                        generation = logGeneration;
+                        userId = replayRecords(buffer, handler, userId);
+                        validBytes = buffer.position() - HEADER_BYTES;
+                    }
+                }
+                logBytes = validBytes;
+                // Drop anything past the last complete record, or a log already absorbed by the snapshot
+                channel().truncate(HEADER_BYTES + logBytes);
+                if (validBytes == 0) {
+                    channel.position(0);
+                    writeFully(channel, header(generation));
+                }
+                channel.position(HEADER_BYTES + logBytes);
+            }
+            return userId;
+        }
+        
+        // The user record that starts the snapshot, or the log when there is no snapshot
+        User readUser() throws IOException {
+            for (Path path : new Path[] { snapshotPath, logPath }) {
+                if (!Files.exists(path)) {
+                    continue;
+                }
+                try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+                    ByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+                    long generation = path == snapshotPath ? readSnapshotHeader(buffer) : readHeader(buffer);
+                    if (generation < 0 || buffer.remaining() < 5 || buffer.get() != RECORD_USER) {
+                        continue;
+                    }
+                    int length = buffer.getInt();
+                    if (length < 0 || length > buffer.remaining()) {
+                        continue;
+                    }
+                    String id = readString(buffer);
+                    String name = readString(buffer);
+                    return new User(id, name, readTimestamp(buffer));
+                }
+            }
+            return null;
+        }
+        
+        private String replayRecords(ByteBuffer buffer, ReplayHandler handler, String userId) {
+            while (buffer.remaining() >= 5) {
+                int start = buffer.position();
+                byte type = buffer.get();
+                int length = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    buffer.position(start);
+                    break;
+                }
+                int end = buffer.position() + length;
+                
+                if (type == RECORD_USER) {
+                    String id = readString(buffer);
+                    String name = readString(buffer);
+                    userId = id;
+                    handler.onUser(new User(id, name, readTimestamp(buffer)));
+                } else if (type == RECORD_MOOD && userId != null) {
+                    LocalDateTime timestamp = readTimestamp(buffer);
+                    MoodType mood = MoodType.values()[buffer.get()];
+                    int intensity = buffer.get();
+                    int[] tags = readTagIds(buffer);
+                    handler.onMoodLog(userId, new MoodLog(timestamp, mood, tags, readString(buffer), intensity));
+                } else if (type == RECORD_JOURNAL && userId != null) {
+                    LocalDateTime timestamp = readTimestamp(buffer);
+                    String title = readString(buffer);
+                    String content = readString(buffer);
+                    handler.onJournalEntry(userId, new JournalEntry(timestamp, title, content, readTagIds(buffer)));
+                }
+                buffer.position(end);
+            }
+            return userId;
+        }
+    }
+}
+
+// User Directory
+// Every known user by ID, plus a sorted index on lower-cased name so a name
+// prefix is one range scan. Holds no history, so it stays small enough to keep
+// all users in memory while their data is loaded on demand.
+class UserDirectory {
+    private static final char NAME_SEPARATOR = '\u0000'; // sorts before any character of a name
+    
+    private final ConcurrentHashMap<String, User> byId = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<String, User> byName = new ConcurrentSkipListMap<>();
+    private final AtomicLong idSequence = new AtomicLong();
+    
+    // False when the ID is already taken
+    public boolean register(User user) {
+        if (byId.putIfAbsent(user.getUserId(), user) != null) {
+            return false;
+        }
+        byName.put(nameKey(user.getName()) + NAME_SEPARATOR + user.getUserId(), user);
+        return true;
+    }
+    
+    public User get(String userId) {
+        return byId.get(userId);
+    }
+    
+    public boolean contains(String userId) {
+        return byId.containsKey(userId);
+    }
+    
+    public int size() {
+        return byId.size();
+    }
+    
+    public List<User> getUsers() {
+        return new ArrayList<>(byId.values());
+    }
+    
+    public List<String> getUserIds() {
+        return new ArrayList<>(byId.keySet());
+    }
+    
+    // Users whose name starts with prefix, ignoring case, in name order
+    public List<User> findByNamePrefix(String prefix, int limit) {
+        String key = nameKey(prefix);
+        List<User> matches = new ArrayList<>();
+        for (User user : byName.subMap(key, true, key + Character.MAX_VALUE, true).values()) {
+            if (matches.size() == limit) {
+                break;
+            }
+            matches.add(user);
+        }
+        return matches;
+    }
+    
+    // Time-based like before, but skips any ID already registered, so restarts
+    // and same-millisecond onboarding can never hand out an existing ID
+    public String newUserId() {
+        while (true) {
+            String userId = "user_" + System.currentTimeMillis() + "_" + idSequence.incrementAndGet();
+            if (!byId.containsKey(userId)) {
+                return userId;
+            }
+        }
+    }
+    
+    private static String nameKey(String name) {
+        return (name == null ? "" : name.trim()).toLowerCase(Locale.ROOT);
+    }
+}
+
+// Data Storage and Management
+class DataManager implements AutoCloseable {
+    static final int DEFAULT_RESIDENT_USERS = 10_000;
+    
+    // Every known user, whether or not their history is in memory
+    private final UserDirectory directory;
+    // Users whose history is in memory; writes lock only that user's record, so
+    // check-ins from different users never contend and reads take no locks at all
+    private ConcurrentHashMap<String, UserData> users;
+    // Histories being loaded, so concurrent first touches of a user share one
+    // load without holding a map lock during its I/O
+    private final ConcurrentHashMap<String, CompletableFuture<UserData>> loading;
+    // Resident users in eviction order, swept like a clock: a user read since
+    // the hand last passed gets another lap, the rest are dropped
+    private final ConcurrentLinkedQueue<UserData> residentOrder;
+    private PersistenceEngine persistence; // null when running in memory only
+    private MoodSegmentStore segments; // null keeps the whole mood history in memory
+    private int residentCapacity = Integer.MAX_VALUE;
+    
+    public DataManager() {
+        this.directory = new UserDirectory();
+        this.users = new ConcurrentHashMap<>();
+        this.loading = new ConcurrentHashMap<>();
+        this.residentOrder = new ConcurrentLinkedQueue<>();
+        Metrics.watch(this);
+    }
+    
+    public DataManager(PersistenceEngine persistence) throws IOException {
+        this(persistence, null);
+    }
+    
+    public DataManager(PersistenceEngine persistence, MoodSegmentStore segments) throws IOException {
+        this(persistence, segments, DEFAULT_RESIDENT_USERS);
+    }
+    
+    // Only the directory of users is read up front. A user's history is loaded
+    // from the engine when first touched and kept while they stay among the
+    // residentCapacity most recently active users; every new write is persisted.
+    // With segments, mood history older than their hot window is moved to disk.
+    public DataManager(PersistenceEngine persistence, MoodSegmentStore segments, int residentCapacity) throws IOException {
+        this();
+        this.segments = segments;
+        this.residentCapacity = residentCapacity;
+        persistence.replayUsers(directory::register);
+        this.persistence = persistence;
+    }
+    
+    public UserDirectory getDirectory() {
+        return directory;
+    }
+    
+    public void createUser(User user) {
+        if (!directory.register(user)) {
+            throw new IllegalArgumentException("User ID already in use: " + user.getUserId());
+        }
+        UserData data = new UserData(user, segments);
+        if (users.putIfAbsent(user.getUserId(), data) == null) {
+            residentOrder.add(data);
+        }
+        if (persistence != null) {
+            persistence.appendUser(user);
+        }
+        evictIfNeeded();
+    }
+    
+    public void addMoodLog(String userId, MoodLog moodLog) {
+        Metrics.begin(Metrics.Operation.MOOD_WRITE);
+        try {
+            write(userId, data -> {
+                storeMoodLog(data, moodLog);
+                if (persistence != null) {
+                    persistence.appendMoodLog(userId, moodLog);
+                }
+            });
+        } finally {
+            Metrics.end(Metrics.Operation.MOOD_WRITE);
+        }
+    }
+    
+    public void addJournalEntry(String userId, JournalEntry entry) {
+        Metrics.begin(Metrics.Operation.JOURNAL_WRITE);
+        try {
+            write(userId, data -> {
+                storeJournalEntry(data, entry);
+                if (persistence != null) {
+                    persistence.appendJournalEntry(userId, entry);
+                }
+            });
+        } finally {
+            Metrics.end(Metrics.Operation.JOURNAL_WRITE);
+        }
+    }
+    
+    public boolean hasUser(String userId) {
+        return directory.contains(userId);
+    }
+    
+    // Bulk variants for imports: the batch must be sorted by timestamp. Storage
+    // is resized and published once and the data version bumps once per batch.
+    public void addMoodLogs(String userId, List<MoodLog> sortedMoodLogs) {
+        Metrics.begin(Metrics.Operation.MOOD_WRITE);
+        try {
+            write(userId, data -> {
+                data.moodLogs.appendAll(sortedMoodLogs);
+                for (MoodLog moodLog : sortedMoodLogs) {
+                    data.moodAggregates.add(moodLog);
+                    data.moodRollups.add(moodLog);
+                    data.moodDays.mark(moodLog.getTimestamp().toLocalDate());
+                    data.trends.add(moodLog.getTimestamp().toEpochSecond(ZoneOffset.UTC), moodLog.getMood().getValue());
+                }
+                spillColdMoodLogs(data);
+                data.version++;
+                if (persistence != null) {
+                    persistence.appendMoodLogs(userId, sortedMoodLogs);
+                }
+            });
+        } finally {
+            Metrics.end(Metrics.Operation.MOOD_WRITE);
+        }
+    }
+    
+    public void addJournalEntries(String userId, List<JournalEntry> sortedEntries) {
+        Metrics.begin(Metrics.Operation.JOURNAL_WRITE);
+        try {
+            write(userId, data -> {
+                data.journalEntries.appendAll(sortedEntries);
+                for (JournalEntry entry : sortedEntries) {
+                    data.journalIndex.add(entry);
+                    data.journalDays.mark(entry.getTimestamp().toLocalDate());
+                }
+                data.version++;
+                if (persistence != null) {
+                    persistence.appendJournalEntries(userId, sortedEntries);
+                }
+            });
+        } finally {
+            Metrics.end(Metrics.Operation.JOURNAL_WRITE);
+        }
+    }
+    
+    public List<User> getUsers() {
+        return directory.getUsers();
+    }
+    
+    public List<String> getUserIds() {
+        return directory.getUserIds();
+    }
+    
+    // Users whose history is currently in memory
+    public List<String> getResidentUserIds() {
+        return new ArrayList<>(users.keySet());
+    }
+    
+    // Lock-free pass over a snapshot of the user's check-ins, a stored block at a time
+    public void scanMoodLogs(String userId, ColumnarMoodStore.RowVisitor visitor) {
+        UserData data = resident(userId);
+        if (data != null) {
+            data.moodLogs.scan(visitor);
+        }
+    }
+    
+    // Streams the user's history from disk, in the order it was written, when it
+    // is not in memory, without loading it or evicting anyone. Returns false, and
+    // calls nothing, when the history is resident or there is no persistence; the
+    // caller then reads it from memory.
+    public boolean replayStoredHistory(String userId, PersistenceEngine.ReplayHandler handler) throws IOException {
+        if (persistence == null || users.containsKey(userId) || !directory.contains(userId)) {
+            return false;
+        }
+        persistence.replayUser(userId, handler);
+        return true;
+    }
+    
+    // Block-at-a-time pass over the user's check-ins for exports, without
+    // building MoodLog views or merging cold segments
+    public void scanMoodBlocks(String userId, ColumnarMoodStore.BlockVisitor visitor) throws IOException {
+        UserData data = resident(userId);
+        if (data != null) {
+            data.moodLogs.scanBlocks(visitor);
+        }
+    }
+    
+    public List<MoodLog> getMoodLogs(String userId) {
+        UserData data = resident(userId);
+        return data == null ? new ArrayList<>() : new ArrayList<>(data.moodLogs.all());
+    }
+    
+    public List<JournalEntry> getJournalEntries(String userId) {
+        UserData data = resident(userId);
+        return data == null ? new ArrayList<>() : new ArrayList<>(data.journalEntries.all());
+    }
+    
+    // Read-only view over a snapshot of the journal, oldest first, without copying
+    public List<JournalEntry> getJournalEntriesView(String userId) {
+        UserData data = resident(userId);
+        return data == null ? Collections.emptyList() : data.journalEntries.all();
+    }
+    
+    public int getMoodLogCount(String userId) {
+        UserData data = resident(userId);
+        return data == null ? 0 : data.moodLogs.size();
+    }
+    
+    public int getJournalEntryCount(String userId) {
+        UserData data = resident(userId);
+        return data == null ? 0 : data.journalEntries.size();
+    }
+    
+    // Journal entries dated within the last given number of days
+    public int getRecentJournalEntryCount(String userId, int days) {
+        UserData data = resident(userId);
+        return data == null ? 0 : data.journalEntries.newestFirstSince(LocalDateTime.now().minusDays(days)).size();
+    }
+    
+    public MoodSummary getMoodSummary(String userId) {
+        UserData data = resident(userId);
+        if (data == null) {
+            return new MoodAggregates().snapshot();
+        }
+        synchronized (data) {
+            return data.moodAggregates.snapshot();
+        }
+    }
+    
+    // Rolling mood statistics as of now; the same signal drives the dashboard and suggestions
+    public TrendSnapshot getTrend(String userId) {
+        UserData data = resident(userId);
+        long now = LocalDateTime.now().toEpochSecond(ZoneOffset.UTC);
+        if (data == null) {
+            return new TrendTracker(TrendSettings.DEFAULT).snapshot(now);
+        }
+        synchronized (data) {
+            return data.trends.snapshot(now);
+        }
+    }
+    
+    // Chart series read from the rollups at the finest resolution giving at
+    // most maxPoints buckets, so cost follows the range, not the history size;
+    // from == null means since the first check-in
+    public MoodSeries getMoodSeries(String userId, LocalDateTime from, LocalDateTime to, int maxPoints) {
+        UserData data = resident(userId);
+        if (data == null) {
+            return new MoodRollups().series(from, to, maxPoints);
+        }
+        synchronized (data) {
+            return data.moodRollups.series(from, to, maxPoints);
+        }
+    }
+    
+    public MoodSeries getMoodSeries(String userId, RollupResolution resolution, LocalDateTime from, LocalDateTime to) {
+        UserData data = resident(userId);
+        if (data == null) {
+            return new MoodSeries(resolution, new ArrayList<>());
+        }
+        synchronized (data) {
+            return data.moodRollups.series(resolution, from, to);
+        }
+    }
+    
+    public StreakSummary getStreaks(String userId, LocalDate today) {
+        UserData data = resident(userId);
+        if (data == null) {
+            return new StreakSummary(0, 0, 0, 0);
+        }
+        synchronized (data) {
+            return new StreakSummary(data.moodDays.currentStreak(today), data.moodDays.longestStreak(),
+                data.journalDays.currentStreak(today), data.journalDays.longestStreak());
+        }
+    }
+    
+    public int getActiveDays(String userId, ActivityKind kind, YearMonth month) {
+        UserData data = resident(userId);
+        if (data == null) {
+            return 0;
+        }
+        synchronized (data) {
+            return data.calendar(kind).activeDaysIn(month);
+        }
+    }
+    
+    public List<ActivityGap> getActivityGaps(String userId, ActivityKind kind, int minDays) {
+        UserData data = resident(userId);
+        if (data == null) {
+            return Collections.emptyList();
+        }
+        synchronized (data) {
+            return data.calendar(kind).gaps(minDays);
+        }
+    }
+    
+    // Ranked matches from the user's journal index
+    public List<JournalSearchResult> searchJournal(String userId, JournalQuery query) {
+        UserData data = resident(userId);
+        if (data == null) {
+            return Collections.emptyList();
+        }
+        synchronized (data) {
+            return data.journalIndex.search(query);
+        }
+    }
+    
+    // Read-only view over the log store, newest first
+    public List<MoodLog> getRecentMoodLogs(String userId, int days) {
+        UserData data = resident(userId);
+        if (data == null) {
+            return Collections.emptyList();
+        }
+        return data.moodLogs.newestFirstSince(LocalDateTime.now().minusDays(days));
+    }
+    
+    @Override
+    public void close() {
+        if (persistence != null) {
+            persistence.close();
+        }
+    }
+    
+    public TierStats getTierStats() {
+        return segments == null ? new TierStats(0, 0, 0, 0, 0, 0) : segments.getStats();
+    }
+    
+    // Sizes only users already in memory; anyone else reports zeros
+    public UserDataSize getDataSize(String userId) {
+        UserData data = users.get(userId);
+        if (data == null) {
+            return new UserDataSize(userId, 0, 0, 0, 0);
+        }
+        ColumnarMoodStore moodLogs = data.moodLogs;
+        return new UserDataSize(userId, moodLogs.hotSize(), moodLogs.size() - moodLogs.hotSize(),
+            data.journalEntries.size(), moodLogs.estimatedHotBytes());
+    }
+    
+    // Bumped on every write so derived results can be cached per version
+    public long getDataVersion(String userId) {
+        UserData data = resident(userId);
+        return data == null ? -1 : data.version;
+    }
+    
+    private void storeMoodLog(UserData data, MoodLog moodLog) {
+        data.moodLogs.append(moodLog);
+        data.moodAggregates.add(moodLog);
+        data.moodRollups.add(moodLog);
+        data.moodDays.mark(moodLog.getTimestamp().toLocalDate());
+        data.trends.add(moodLog.getTimestamp().toEpochSecond(ZoneOffset.UTC), moodLog.getMood().getValue());
+        spillColdMoodLogs(data);
+        data.version++;
+    }
+    
+    private void spillColdMoodLogs(UserData data) {
+        if (segments != null) {
+            data.moodLogs.spillIfNeeded(LocalDateTime.now().toEpochSecond(ZoneOffset.UTC));
+        }
+    }
+    
+    private void storeJournalEntry(UserData data, JournalEntry entry) {
+        data.journalEntries.append(entry);
+        data.journalIndex.add(entry);
+        data.journalDays.mark(entry.getTimestamp().toLocalDate());
+        data.version++;
+    }
+    
+    private UserData requireUser(String userId) {
+        UserData data = resident(userId);
+        if (data == null) {
+            throw new IllegalArgumentException("Unknown user: " + userId);
+        }
+        return data;
+    }
+    
+    // The user's in-memory record, loading their history first if it was never
+    // loaded or has been evicted; null for unknown users
+    private UserData resident(String userId) {
+        UserData data = users.get(userId);
+        if (data == null) {
+            if (persistence == null || !directory.contains(userId)) {
+                return null;
+            }
+            data = loadOnce(userId);
+            evictIfNeeded();
+        }
+        if (!data.referenced) {
+            data.referenced = true;
+        }
+        return data;
+    }
+    
+    // Runs the load on the first thread to claim the user; the others wait for
+    // its result. The record is published before the claim is dropped, so a
+    // thread that claims afterwards finds it and does not load twice.
+    private UserData loadOnce(String userId) {
+        CompletableFuture<UserData> claim = new CompletableFuture<>();
+        CompletableFuture<UserData> running = loading.putIfAbsent(userId, claim);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+        try {
+            UserData data = users.get(userId);
+            if (data == null) {
+                data = load(userId);
+                UserData raced = users.putIfAbsent(userId, data);
+                if (raced != null) {
+                    data = raced;
+                } else {
+                    residentOrder.add(data);
+                }
+            }
+            claim.complete(data);
+            return data;
+        } catch (RuntimeException e) {
+            claim.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(userId, claim);
+        }
+    }
+    
+    private UserData load(String userId) {
+        UserData data = new UserData(directory.get(userId), segments);
+        try {
+            persistence.replayUser(userId, new PersistenceEngine.ReplayHandler() {
+                @Override
+                public void onUser(User user) {
+                }
+                
+                @Override
+                public void onMoodLog(String id, MoodLog moodLog) {
+                    storeMoodLog(data, moodLog);
+                }
+                
+                @Override
+                public void onJournalEntry(String id, JournalEntry entry) {
+                    storeJournalEntry(data, entry);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load history of " + userId, e);
+        }
+        data.referenced = true;
+        return data;
+    }
+    
+    private void evictIfNeeded() {
+        while (users.size() > residentCapacity) {
+            UserData candidate = residentOrder.poll();
+            if (candidate == null) {
+                return;
+            }
+            if (candidate.referenced) {
+                candidate.referenced = false;
+                residentOrder.add(candidate);
+                continue;
+            }
+            // Under the user lock so no write lands in a record that is being dropped
+            synchronized (candidate) {
+                candidate.evicted = true;
+                users.remove(candidate.user.getUserId(), candidate);
+            }
+            persistence.release(candidate.user.getUserId());
+        }
+    }
+    
+    // Applies a write under the user's lock, retrying on the reloaded record if
+    // the one we found was evicted in the meantime
+    private void write(String userId, Consumer<UserData> update) {
+        while (true) {
+            UserData data = requireUser(userId);
+            synchronized (data) {
+                if (!data.evicted) {
+                    update.accept(data);
+                    return;
+                }
+            }
+        }
+    }
+    
+    // Everything stored for a single user; the instance doubles as that user's write lock
+    private static class UserData {
+        final User user;
+        final ColumnarMoodStore moodLogs;
+        final TimeIndexedLog<JournalEntry> journalEntries;
+        final MoodAggregates moodAggregates;
+        final MoodRollups moodRollups;
+        final JournalSearchIndex journalIndex;
+        final ActivityCalendar moodDays;
+        final ActivityCalendar journalDays;
+        final TrendTracker trends;
+        volatile long version; // only written under the user lock
+        volatile boolean referenced; // read since the eviction clock last passed
+        boolean evicted; // guarded by the user lock
+        
+        UserData(User user, MoodSegmentStore segments) {
+            this.user = user;
+            this.moodLogs = new ColumnarMoodStore(segments, user.getUserId());
+            this.journalEntries = new TimeIndexedLog<>(JournalEntry::getTimestamp);
+            this.moodAggregates = new MoodAggregates();
+            this.moodRollups = new MoodRollups();
+            this.journalIndex = new JournalSearchIndex();
+            this.moodDays = new ActivityCalendar();
+            this.journalDays = new ActivityCalendar();
+            this.trends = new TrendTracker(TrendSettings.DEFAULT);
+        }
+        
+        ActivityCalendar calendar(ActivityKind kind) {
+            return kind == ActivityKind.MOOD_CHECK_IN ? moodDays : journalDays;
+        }
+    }
+}
+
+// How much one user has stored, for the metrics gauges
+class UserDataSize {
+    private final String userId;
+    private final int hotMoodLogs;
+    private final int coldMoodLogs;
+    private final int journalEntries;
+    private final long hotColumnBytes;
+    
+    public UserDataSize(String userId, int hotMoodLogs, int coldMoodLogs, int journalEntries, long hotColumnBytes) {
+        this.userId = userId;
+        this.hotMoodLogs = hotMoodLogs;
+        this.coldMoodLogs = coldMoodLogs;
+        this.journalEntries = journalEntries;
+        this.hotColumnBytes = hotColumnBytes;
+    }
+    
+    public String getUserId() { return userId; }
+    public int getHotMoodLogs() { return hotMoodLogs; }
+    public int getColdMoodLogs() { return coldMoodLogs; }
+    public int getMoodLogs() { return hotMoodLogs + coldMoodLogs; }
+    public int getJournalEntries() { return journalEntries; }
+    public long getHotColumnBytes() { return hotColumnBytes; }
+}
+
+// Population Analytics
+// Cross-user statistics for the clinical team. Users are split into ranges on a
+// fork-join pool; each leaf scans its users' mood columns into one primitive
+// accumulator and partial results are merged pairwise on the way back up.
+// Users whose history is not in memory are streamed from disk instead of being
+// loaded, so a pass over everyone does not evict the active users.
+class PopulationAnalytics {
+    private static final int USERS_PER_LEAF = 64;
+    
+    private final DataManager dataManager;
+    private final ForkJoinPool pool;
+    
+    public PopulationAnalytics(DataManager dataManager) {
+        this(dataManager, ForkJoinPool.commonPool());
+    }
+    
+    public PopulationAnalytics(DataManager dataManager, ForkJoinPool pool) {
+        this.dataManager = dataManager;
+        this.pool = pool;
+    }
+    
+    public PopulationReport analyze() {
+        List<String> userIds = dataManager.getUserIds();
+        PopulationStats stats = pool.invoke(new AnalyzeTask(userIds, 0, userIds.size()));
+        return new PopulationReport(stats);
+    }
+    
+    private class AnalyzeTask extends RecursiveTask<PopulationStats> {
+        private static final long serialVersionUID = 1L;
+        private final List<String> userIds;
+        private final int from;
+        private final int to;
+        
+        AnalyzeTask(List<String> userIds, int from, int to) {
+            this.userIds = userIds;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected PopulationStats compute() {
+            if (to - from <= USERS_PER_LEAF) {
+                PopulationStats stats = new PopulationStats();
+                for (int i = from; i < to; i++) {
+                    analyzeUser(userIds.get(i), stats);
+                }
+                return stats;
+            }
+            int middle = (from + to) >>> 1;
+            AnalyzeTask left = new AnalyzeTask(userIds, from, middle);
+            left.fork();
+            PopulationStats right = new AnalyzeTask(userIds, middle, to).compute();
+            return left.join().merge(right);
+        }
+    }
+    
+    private void analyzeUser(String userId, PopulationStats stats) {
+        long before = stats.checkIns;
+        StoredCheckIns stored = new StoredCheckIns(stats);
+        boolean fromDisk;
+        try {
+            fromDisk = dataManager.replayStoredHistory(userId, stored);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read history of " + userId, e);
+        }
+        if (!fromDisk) {
+            dataManager.scanMoodLogs(userId, stats);
+        }
+        stats.users++;
+        if (stats.checkIns > before) {
+            stats.activeUsers++;
+            MoodTrend trend = fromDisk ? stored.trend() : dataManager.getTrend(userId).getTrend();
+            if (trend == MoodTrend.DECLINING) {
+                stats.decliningUsers++;
+            }
+        }
+    }
+    
+    // Passes check-ins replayed from disk to the accumulator, and to a trend
+    // tracker in the order they were written, just as loading the user would
+    private static final class StoredCheckIns implements PersistenceEngine.ReplayHandler {
+        private final ColumnarMoodStore.RowVisitor visitor;
+        private TrendTracker trends; // created on the first check-in
+        private int[] tags = new int[8];
+        
+        StoredCheckIns(ColumnarMoodStore.RowVisitor visitor) {
+            this.visitor = visitor;
+        }
+        
+        @Override
+        public void onUser(User user) {
+        }
+        
+        @Override
+        public void onMoodLog(String userId, MoodLog moodLog) {
+            long epochSecond = moodLog.getTimestamp().toEpochSecond(ZoneOffset.UTC);
+            int tagCount = moodLog.getEmotionTagCount();
+            if (tagCount > tags.length) {
+                tags = new int[Math.max(tagCount, tags.length * 2)];
+            }
+            for (int i = 0; i < tagCount; i++) {
+                tags[i] = moodLog.getEmotionTagId(i);
+            }
+            visitor.visit(epochSecond, moodLog.getMood().ordinal(), moodLog.getIntensityLevel(), tags, 0, tagCount);
+            if (trends == null) {
+                trends = new TrendTracker(TrendSettings.DEFAULT);
+            }
+            trends.add(epochSecond, moodLog.getMood().getValue());
+        }
+        
+        @Override
+        public void onJournalEntry(String userId, JournalEntry entry) {
+        }
+        
+        MoodTrend trend() {
+            return trends.snapshot(LocalDateTime.now().toEpochSecond(ZoneOffset.UTC)).getTrend();
+        }
+    }
+}
+
+// Mergeable partial result; fed row by row from the columnar store
+class PopulationStats implements ColumnarMoodStore.RowVisitor {
+    private static final MoodType[] MOODS = MoodType.values();
+    
+    long users;
+    long activeUsers;
+    long decliningUsers;
+    long checkIns;
+    final long[] moodCounts = new long[MOODS.length];
+    final long[] dayOfWeekCounts = new long[7]; // Monday first
+    final long[] dayOfWeekMoodSums = new long[7];
+    final long[] hourCounts = new long[24];
+    final long[] hourMoodSums = new long[24];
+    long[] tagCounts = new long[64]; // indexed by TagDictionary ID
+    final LongCountMap tagPairCounts = new LongCountMap();
+    
+    @Override
+    public void visit(long epochSecond, int moodOrdinal, int intensity, int[] tagPool, int tagStart, int tagEnd) {
+        int moodValue = MOODS[moodOrdinal].getValue();
+        checkIns++;
+        moodCounts[moodOrdinal]++;
+        
+        // Stored seconds are local date-times counted as UTC; 1970-01-01 was a Thursday
+        long epochDay = Math.floorDiv(epochSecond, 86_400);
+        int dayOfWeek = (int) Math.floorMod(epochDay + 3, 7);
+        int hour = (int) (Math.floorMod(epochSecond, 86_400) / 3_600);
+        dayOfWeekCounts[dayOfWeek]++;
+        dayOfWeekMoodSums[dayOfWeek] += moodValue;
+        hourCounts[hour]++;
+        hourMoodSums[hour] += moodValue;
+        
+        for (int i = tagStart; i < tagEnd; i++) {
+            int tag = tagPool[i];
+            if (tag >= tagCounts.length) {
+                tagCounts = Arrays.copyOf(tagCounts, Math.max(tagCounts.length * 2, tag + 1));
+            }
+            tagCounts[tag]++;
+            for (int j = i + 1; j < tagEnd; j++) {
+                int other = tagPool[j];
+                if (other != tag) {
+                    tagPairCounts.increment(pairKey(tag, other), 1);
+                }
+            }
+        }
+    }
+    
+    PopulationStats merge(PopulationStats other) {
+        users += other.users;
+        activeUsers += other.activeUsers;
+        decliningUsers += other.decliningUsers;
+        checkIns += other.checkIns;
+        addAll(moodCounts, other.moodCounts);
+        addAll(dayOfWeekCounts, other.dayOfWeekCounts);
+        addAll(dayOfWeekMoodSums, other.dayOfWeekMoodSums);
+        addAll(hourCounts, other.hourCounts);
+        addAll(hourMoodSums, other.hourMoodSums);
+        if (other.tagCounts.length > tagCounts.length) {
+            tagCounts = Arrays.copyOf(tagCounts, other.tagCounts.length);
+        }
+        addAll(tagCounts, other.tagCounts);
+        tagPairCounts.addAll(other.tagPairCounts);
+        return this;
+    }
+    
+    static long pairKey(int tag, int other) {
+        return tag < other ? ((long) tag << 32) | other : ((long) other << 32) | tag;
+    }
+    
+    private static void addAll(long[] target, long[] source) {
+        for (int i = 0; i < source.length; i++) {
+            target[i] += source[i];
+        }
+    }
+}
+
+// Open-addressing map from non-negative long keys to positive counts
+class LongCountMap {
+    private long[] keys = new long[64];
+    private long[] counts = new long[64]; // 0 marks an empty slot
+    private int size;
+    
+    public void increment(long key, long delta) {
+        if ((size + 1) * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        int slot = slotOf(keys, counts, key);
+        if (counts[slot] == 0) {
+            keys[slot] = key;
+            size++;
+        }
+        counts[slot] += delta;
+    }
+    
+    public void addAll(LongCountMap other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.counts[i] != 0) {
+                increment(other.keys[i], other.counts[i]);
+            }
+        }
+    }
+    
+    public int size() { return size; }
+    
+    // Visits every entry in unspecified order
+    public void forEach(LongCountVisitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (counts[i] != 0) {
+                visitor.visit(keys[i], counts[i]);
+            }
+        }
+    }
+    
+    interface LongCountVisitor {
+        void visit(long key, long count);
+    }
+    
+    private static int slotOf(long[] keys, long[] counts, long key) {
+        int mask = keys.length - 1;
+        int slot = (int) (key ^ (key >>> 29) ^ (key >>> 32)) * 0x9E3779B9 & mask;
+        while (counts[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+    
+    private void rehash(int capacity) {
+        long[] newKeys = new long[capacity];
+        long[] newCounts = new long[capacity];
+        for (int i = 0; i < keys.length; i++) {
+            if (counts[i] != 0) {
+                int slot = slotOf(newKeys, newCounts, keys[i]);
+                newKeys[slot] = keys[i];
+                newCounts[slot] = counts[i];
+            }
+        }
+        keys = newKeys;
+        counts = newCounts;
+    }
+}
+
+// Finished population statistics
+class PopulationReport {
+    private static final int TOP_PAIR_COUNT = 10;
+    private static final String[] DAY_NAMES = {"Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun"};
+    
+    private final PopulationStats stats;
+    private final List<TagPair> topTagPairs;
+    
+    PopulationReport(PopulationStats stats) {
+        this.stats = stats;
+        this.topTagPairs = topPairs(stats.tagPairCounts, TOP_PAIR_COUNT);
+    }
+    
+    public long getUserCount() { return stats.users; }
+    public long getActiveUserCount() { return stats.activeUsers; }
+    public long getCheckInCount() { return stats.checkIns; }
+    public long getMoodCount(MoodType mood) { return stats.moodCounts[mood.ordinal()]; }
+    public List<TagPair> getTopTagPairs() { return topTagPairs; }
+    
+    public long getTagCount(String tag) {
+        int id = TagDictionary.GLOBAL.find(tag);
+        return id >= 0 && id < stats.tagCounts.length ? stats.tagCounts[id] : 0;
+    }
+    
+    // 1 = Monday ... 7 = Sunday, as in java.time.DayOfWeek
+    public long getCheckInsOnDay(int dayOfWeek) { return stats.dayOfWeekCounts[dayOfWeek - 1]; }
+    public double getAverageMoodOnDay(int dayOfWeek) {
+        return average(stats.dayOfWeekMoodSums[dayOfWeek - 1], stats.dayOfWeekCounts[dayOfWeek - 1]);
+    }
+    
+    public long getCheckInsAtHour(int hour) { return stats.hourCounts[hour]; }
+    public double getAverageMoodAtHour(int hour) { return average(stats.hourMoodSums[hour], stats.hourCounts[hour]); }
+    
+    // Share of users with check-ins whose mood declined over the last 7 days
+    public double getDecliningUserShare() { return average(stats.decliningUsers, stats.activeUsers); }
+    
+    public void printTo(PrintStream out) {
+        out.println("=== Population Analytics ===");
+        out.println("Users: " + stats.users + " (" + stats.activeUsers + " with check-ins)");
+        out.println("Check-ins: " + stats.checkIns);
+        out.printf("Users with declining mood: %.1f%%%n", getDecliningUserShare() * 100);
+        
+        out.println("\nMood distribution:");
+        for (MoodType mood : MoodType.values()) {
+            out.printf("   %-14s %10d %6.1f%%%n", mood.getDisplayName(), getMoodCount(mood),
+                average(getMoodCount(mood), stats.checkIns) * 100);
+        }
+        
+        out.println("\nBy day of week:");
+        for (int day = 1; day <= 7; day++) {
+            out.printf("   %-4s %10d   avg mood %.2f%n", DAY_NAMES[day - 1], getCheckInsOnDay(day), getAverageMoodOnDay(day));
+        }
+        
+        out.println("\nBy hour of day:");
+        for (int hour = 0; hour < 24; hour++) {
+            out.printf("   %02d:00 %10d   avg mood %.2f%n", hour, getCheckInsAtHour(hour), getAverageMoodAtHour(hour));
+        }
+        
+        out.println("\nMost frequent tag pairs:");
+        if (topTagPairs.isEmpty()) {
+            out.println("   No check-ins with more than one tag yet");
+        }
+        for (TagPair pair : topTagPairs) {
+            out.println("   " + pair.getFirstTag() + " + " + pair.getSecondTag() + " (" + pair.getCount() + " times)");
+        }
+    }
+    
+    private static double average(long sum, long count) {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+    
+    private static List<TagPair> topPairs(LongCountMap pairCounts, int limit) {
+        PriorityQueue<long[]> best = new PriorityQueue<>(Comparator.comparingLong((long[] entry) -> entry[1]));
+        pairCounts.forEach((key, count) -> {
+            if (best.size() < limit) {
+                best.add(new long[] {key, count});
+            } else if (count > best.peek()[1]) {
+                best.poll();
+                best.add(new long[] {key, count});
+            }
+        });
+        List<TagPair> pairs = new ArrayList<>(best.size());
+        for (long[] entry : best) {
+            pairs.add(new TagPair(TagDictionary.GLOBAL.nameOf((int) (entry[0] >>> 32)),
+                TagDictionary.GLOBAL.nameOf((int) entry[0]), entry[1]));
+        }
+        pairs.sort(Comparator.comparingLong(TagPair::getCount).reversed());
+        return pairs;
+    }
+}
+
+class TagPair {
+    private final String firstTag;
+    private final String secondTag;
+    private final long count;
+    
+    public TagPair(String firstTag, String secondTag, long count) {
+        this.firstTag = firstTag;
+        this.secondTag = secondTag;
+        this.count = count;
+    }
+    
+    public String getFirstTag() { return firstTag; }
+    public String getSecondTag() { return secondTag; }
+    public long getCount() { return count; }
+}
+
+// Bulk Ingestion
+// Imports historical check-ins and journal entries, e.g. from partner apps.
+// Records are grouped by user in chunks, sorted, and handed to DataManager as
+// one batch per user so storage, aggregates and the log are updated per batch.
+class BulkIngestor {
+    private static final int DEFAULT_CHUNK_SIZE = 100_000;
+    
+    private final DataManager dataManager;
+    private final int chunkSize;
+    
+    public BulkIngestor(DataManager dataManager) {
+        this(dataManager, DEFAULT_CHUNK_SIZE);
+    }
+    
+    public BulkIngestor(DataManager dataManager, int chunkSize) {
+        this.dataManager = dataManager;
+        this.chunkSize = chunkSize;
+    }
+    
+    // One imported record: a user, a mood log, a journal entry, or a row that
+    // could not be parsed (all three null)
+    static class Record {
+        final String userId;
+        final User user;
+        final MoodLog moodLog;
+        final JournalEntry journalEntry;
+        
+        private Record(String userId, User user, MoodLog moodLog, JournalEntry journalEntry) {
+            this.userId = userId;
+            this.user = user;
+            this.moodLog = moodLog;
+            this.journalEntry = journalEntry;
+        }
+        
+        static Record user(User user) { return new Record(user.getUserId(), user, null, null); }
+        static Record mood(String userId, MoodLog moodLog) { return new Record(userId, null, moodLog, null); }
+        static Record journal(String userId, JournalEntry entry) { return new Record(userId, null, null, entry); }
+        static Record invalid() { return new Record(null, null, null, null); }
+    }
+    
+    public IngestReport ingest(Iterator<Record> records) {
+        long start = System.nanoTime();
+        Map<String, List<MoodLog>> moodBatches = new HashMap<>();
+        Map<String, List<JournalEntry>> journalBatches = new HashMap<>();
+        Set<String> touchedUsers = new HashSet<>();
+        int moodCount = 0, journalCount = 0, userCount = 0, rejected = 0, buffered = 0;
+        
+        while (records.hasNext()) {
+            Record record = records.next();
+            if (record.user != null) {
+                if (!dataManager.hasUser(record.userId)) {
+                    dataManager.createUser(record.user);
+                    userCount++;
+                }
+                continue;
+            }
+            if (record.userId == null || !dataManager.hasUser(record.userId)
+                    || (record.moodLog == null && record.journalEntry == null)) {
+                rejected++;
+                continue;
+            }
+            
+            touchedUsers.add(record.userId);
+            if (record.moodLog != null) {
+                moodBatches.computeIfAbsent(record.userId, id -> new ArrayList<>()).add(record.moodLog);
+                moodCount++;
+            } else {
+                journalBatches.computeIfAbsent(record.userId, id -> new ArrayList<>()).add(record.journalEntry);
+                journalCount++;
+            }
+            if (++buffered >= chunkSize) {
+                flush(moodBatches, journalBatches);
+                buffered = 0;
+            }
+        }
+        flush(moodBatches, journalBatches);
+        
+        return new IngestReport(userCount, touchedUsers.size(), moodCount, journalCount, rejected, System.nanoTime() - start);
+    }
+    
+    // Reads records from CSV with one record per row (fields may be quoted):
+    //   user,<userId>,<name>
+    //   mood,<userId>,<ISO timestamp>,<MOOD_TYPE>,<intensity 1-10>,<tag;tag>,<notes>
+    //   journal,<userId>,<ISO timestamp>,<title>,<tag;tag>,<content>
+    public IngestReport ingestCsv(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return ingest(new CsvRecordIterator(reader));
+        }
+    }
+    
+    private void flush(Map<String, List<MoodLog>> moodBatches, Map<String, List<JournalEntry>> journalBatches) {
+        for (Map.Entry<String, List<MoodLog>> batch : moodBatches.entrySet()) {
+            List<MoodLog> moodLogs = batch.getValue();
+            moodLogs.sort(Comparator.comparing(MoodLog::getTimestamp));
+            dataManager.addMoodLogs(batch.getKey(), moodLogs);
+        }
+        for (Map.Entry<String, List<JournalEntry>> batch : journalBatches.entrySet()) {
+            List<JournalEntry> entries = batch.getValue();
+            entries.sort(Comparator.comparing(JournalEntry::getTimestamp));
+            dataManager.addJournalEntries(batch.getKey(), entries);
+        }
+        moodBatches.clear();
+        journalBatches.clear();
+    }
+    
+    // Fast path for the common yyyy-MM-ddTHH:mm[:ss[.fraction]] form; anything
+    // else goes through LocalDateTime.parse
+    static LocalDateTime parseTimestamp(String text) {
+        int length = text.length();
+        if (length < 16 || text.charAt(4) != '-' || text.charAt(7) != '-' || text.charAt(10) != 'T'
+                || text.charAt(13) != ':' || (length > 16 && (length < 19 || text.charAt(16) != ':'))
+                || (length > 19 && (length < 21 || length > 29 || text.charAt(19) != '.'))) {
+            return LocalDateTime.parse(text);
+        }
+        int second = length >= 19 ? digits(text, 17, 19) : 0;
+        int nano = 0;
+        if (length > 20) {
+            nano = digits(text, 20, length);
+            for (int i = length; i < 29; i++) {
+                nano *= 10;
+            }
+        }
+        if (second < 0 || nano < 0) {
+            return LocalDateTime.parse(text);
+        }
+        int year = digits(text, 0, 4), month = digits(text, 5, 7), day = digits(text, 8, 10);
+        int hour = digits(text, 11, 13), minute = digits(text, 14, 16);
+        if ((year | month | day | hour | minute) < 0) {
+            return LocalDateTime.parse(text);
+        }
+        return LocalDateTime.of(year, month, day, hour, minute, second, nano);
+    }
+    
+    // Parses an unsigned decimal run, or returns -1 if it contains a non-digit
+    private static int digits(String text, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+    
+    private static int[] parseTags(String field) {
+        String[] tags = field.split(";");
+        int[] ids = new int[tags.length];
+        int count = 0;
+        for (String tag : tags) {
+            String normalized = tag.trim().toLowerCase();
+            if (!normalized.isEmpty()) {
+                ids[count++] = TagDictionary.GLOBAL.idOf(normalized);
+            }
+        }
+        return count == ids.length ? ids : Arrays.copyOf(ids, count);
+    }
+    
+    private static class CsvRecordIterator implements Iterator<Record> {
+        private final Reader reader;
+        private final char[] buffer;
+        private final List<String> fields;
+        private final StringBuilder field;
+        private int position;
+        private int limit;
+        private Record next;
+        
+        CsvRecordIterator(Reader reader) {
+            this.reader = reader;
+            this.buffer = new char[64 * 1024];
+            this.fields = new ArrayList<>();
+            this.field = new StringBuilder();
+        }
+        
+        @Override
+        public boolean hasNext() {
+            try {
+                while (next == null && readRow()) {
+                    next = toRecord();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return next != null;
+        }
+        
+        @Override
+        public Record next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Record record = next;
+            next = null;
+            return record;
+        }
+        
+        private Record toRecord() {
+            if (fields.size() == 1 && fields.get(0).isEmpty()) {
+                return null; // blank line
+            }
+            try {
+                String type = fields.get(0).trim();
+                String userId = fields.get(1).trim();
+                switch (type) {
+                    case "user":
+                        return Record.user(new User(userId, fields.get(2)));
+                    case "mood":
+                        return Record.mood(userId, new MoodLog(parseTimestamp(fields.get(2).trim()),
+                            MoodType.valueOf(fields.get(3).trim()), parseTags(fields.get(5)), fields.get(6).trim(),
+                            Math.max(1, Math.min(10, Integer.parseInt(fields.get(4).trim())))));
+                    case "journal":
+                        return Record.journal(userId, new JournalEntry(parseTimestamp(fields.get(2).trim()),
+                            fields.get(3), fields.get(5), parseTags(fields.get(4))));
+                    default:
+                        return Record.invalid();
+                }
+            } catch (RuntimeException e) {
+                // Malformed rows are counted as rejected rather than aborting the import
+                return Record.invalid();
+            }
+        }
+        
+        // Reads one CSV row into fields; quoted fields may contain commas, quotes and newlines
+        private boolean readRow() throws IOException {
+            fields.clear();
+            field.setLength(0);
+            int c = read();
+            if (c < 0) {
+                return false;
+            }
+            boolean quoted = false;
+            while (c >= 0) {
+                if (quoted) {
+                    if (c == '"') {
+                        if (peek() == '"') {
+                            field.append('"');
+                            read();
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+                c = read();
+            }
+            fields.add(field.toString());
+            return true;
+        }
+        
+        private int read() throws IOException {
+            int c = peek();
+            if (c >= 0) {
+                position++;
+            }
+            return c;
+        }
+        
+        private int peek() throws IOException {
+            if (position == limit) {
+                limit = reader.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[position];
+        }
+    }
+}
+
+// Outcome of a bulk import
+class IngestReport {
+    private final int usersCreated;
+    private final int usersUpdated;
+    private final int moodLogs;
+    private final int journalEntries;
+    private final int rejected;
+    private final long elapsedNanos;
+    
+    public IngestReport(int usersCreated, int usersUpdated, int moodLogs, int journalEntries,
+                        int rejected, long elapsedNanos) {
+        this.usersCreated = usersCreated;
+        this.usersUpdated = usersUpdated;
+        this.moodLogs = moodLogs;
+        this.journalEntries = journalEntries;
+        this.rejected = rejected;
+        this.elapsedNanos = elapsedNanos;
+    }
+    
+    public int getUsersCreated() { return usersCreated; }
+    public int getUsersUpdated() { return usersUpdated; }
+    public int getMoodLogs() { return moodLogs; }
+    public int getJournalEntries() { return journalEntries; }
+    public int getRejected() { return rejected; }
+    public long getElapsedNanos() { return elapsedNanos; }
+    
+    public double getRecordsPerSecond() {
+        return elapsedNanos == 0 ? 0 : (moodLogs + journalEntries) * 1_000_000_000.0 / elapsedNanos;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("Imported %,d check-ins and %,d journal entries for %,d users (%,d new) "
+                + "in %.2fs - %,.0f records/s, %,d rejected",
+            moodLogs, journalEntries, usersUpdated, usersCreated, elapsedNanos / 1e9, getRecordsPerSecond(), rejected);
+    }
+}
+
+// Data Export
+// Streams every user's history into one compressed columnar file without
+// building MoodLog lists: for users in memory, check-ins are read a stored block
+// at a time straight from the columnar store and journal entries through a
+// read-only view; anyone else is streamed from disk without being loaded.
+//
+// Rows are not in time order. A user in memory gives their check-ins a stored
+// block at a time (cold segments, then the in-memory rows, which can hold late
+// arrivals older than segment rows); a user read from disk gives their records
+// in the order they were written. Check-in times are whole seconds, as the
+// mood store keeps them; join dates and journal times keep their nanoseconds.
+//
+// Layout: the header is MAGIC, a version byte, the schema (per table its kind,
+// name and column names with their encodings) and the MoodType names that mood
+// ordinals refer to. Frames follow, each [kind byte][int raw length][int
+// compressed length][deflated payload], and an END frame closes the file with
+// the record counts. A payload holds up to BLOCK_ROWS rows: varint row count,
+// the tag names first used in this block (the dictionary delta; tags are
+// numbered in order of first use across the file), then every column as
+// varint byte length + bytes, so a reader can skip columns it does not need.
+class DataExporter {
+    static final byte[] MAGIC = { 'M', 'M', 'E', 'X' };
+    static final int FORMAT_VERSION = 2;
+    static final int BLOCK_ROWS = 8192;
+    
+    static final int END = 0;
+    static final int USERS = 1;
+    static final int MOOD_LOGS = 2;
+    static final int JOURNAL_ENTRIES = 3;
+    
+    // Per table: kind, name, then column name / encoding pairs in payload order
+    static final String[][] SCHEMA = {
+        { "1", "users", "userId", "string", "name", "string", "joined", "zigzag-delta-varint epoch second",
+            "joinedNanos", "varint nano of second" },
+        { "2", "moodLogs", "user", "delta-varint user row", "time", "zigzag-delta-varint epoch second",
+            "mood", "byte mood name index", "intensity", "byte", "notes", "string",
+            "tags", "varint count, varint tag ids" },
+        { "3", "journalEntries", "user", "delta-varint user row", "time", "zigzag-delta-varint epoch second",
+            "timeNanos", "varint nano of second", "title", "string or null", "content", "string or null",
+            "tags", "varint count, varint tag ids" },
+    };
+    
+    private static final int BUFFER_BYTES = 1 << 20;
+    
+    private final DataManager dataManager;
+    
+    public DataExporter(DataManager dataManager) {
+        this.dataManager = dataManager;
+    }
+    
+    // Writes to a temporary file next to the target and moves it into place once
+    // complete, so a reader never sees a half-written export; on failure the
+    // temporary file is removed
+    public ExportReport export(Path file) throws IOException {
+        long started = System.nanoTime();
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        boolean complete = false;
+        try {
+            Writer writer = new Writer(temporary);
+            try {
+                List<User> users = dataManager.getUsers();
+                for (int userRow = 0; userRow < users.size(); userRow++) {
+                    User user = users.get(userRow);
+                    writer.addUser(user);
+                    if (!dataManager.replayStoredHistory(user.getUserId(), new StoredHistory(writer, userRow))) {
+                        final int row = userRow;
+                        dataManager.scanMoodBlocks(user.getUserId(), (rows, from, to) -> writer.addMoodLogs(row, rows, from, to));
+                        for (JournalEntry entry : dataManager.getJournalEntriesView(user.getUserId())) {
+                            writer.addJournalEntry(row, entry);
+                        }
+                    }
+                }
+                writer.finish();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                writer.close();
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            complete = true;
+            return new ExportReport(writer.userCount, writer.moodLogCount, writer.journalEntryCount, Files.size(file),
+                System.nanoTime() - started);
+        } finally {
+            if (!complete) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException e) {
+                    System.err.println("Could not remove " + temporary + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+    
+    // Writes one user's records as the persistence engine replays them
+    private static final class StoredHistory implements PersistenceEngine.ReplayHandler {
+        private final Writer writer;
+        private final int userRow;
+        
+        StoredHistory(Writer writer, int userRow) {
+            this.writer = writer;
+            this.userRow = userRow;
+        }
+        
+        @Override
+        public void onUser(User user) {
+        }
+        
+        @Override
+        public void onMoodLog(String userId, MoodLog moodLog) {
+            try {
+                writer.addMoodLog(userRow, moodLog);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        
+        @Override
+        public void onJournalEntry(String userId, JournalEntry entry) {
+            try {
+                writer.addJournalEntry(userRow, entry);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+    
+    private static final class Writer implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private final ColumnBuffer payload = new ColumnBuffer();
+        private final ColumnBuffer tagColumn = new ColumnBuffer();
+        private byte[] compressed = new byte[BUFFER_BYTES];
+        private int[] exportTagIds = new int[64]; // by TagDictionary.GLOBAL ID, 0 = not yet exported
+        private int exportedTags;
+        private final IntList newTags = new IntList();
+        
+        // Tags are kept as global IDs (count, then IDs, per row) until their block
+        // is written, and numbered then, so tag numbers follow the file order
+        private final ColumnBuffer[] userColumns = ColumnBuffer.array(4);
+        private final ColumnBuffer[] moodColumns = ColumnBuffer.array(5);
+        private final IntList moodTags = new IntList();
+        private final ColumnBuffer[] journalColumns = ColumnBuffer.array(5);
+        private final IntList journalTags = new IntList();
+        private int userRows;
+        private int moodRows;
+        private int journalRows;
+        private long previousJoined;
+        private int previousMoodUser;
+        private long previousMoodSecond;
+        private int previousJournalUser;
+        private long previousJournalSecond;
+        
+        int userCount;
+        long moodLogCount;
+        long journalEntryCount;
+        
+        Writer(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+            ColumnBuffer header = new ColumnBuffer();
+            header.write(MAGIC, 0, MAGIC.length);
+            header.writeByte(FORMAT_VERSION);
+            header.writeVarLong(SCHEMA.length);
+            for (String[] table : SCHEMA) {
+                header.writeByte(Integer.parseInt(table[0]));
+                header.writeString(table[1]);
+                header.writeVarLong((table.length - 2) / 2);
+                for (int i = 2; i < table.length; i++) {
+                    header.writeString(table[i]);
+                }
+            }
+            MoodType[] moods = MoodType.values();
+            header.writeVarLong(moods.length);
+            for (MoodType mood : moods) {
+                header.writeString(mood.name());
+            }
+            put(header.bytes, 0, header.size);
+        }
+        
+        void addUser(User user) throws IOException {
+            long joined = user.getJoinDate().toEpochSecond(ZoneOffset.UTC);
+            userColumns[0].writeString(user.getUserId());
+            userColumns[1].writeString(user.getName());
+            userColumns[2].writeVarLong(zigzag(joined - previousJoined));
+            userColumns[3].writeVarLong(user.getJoinDate().getNano());
+            previousJoined = joined;
+            userCount++;
+            if (++userRows == BLOCK_ROWS) {
+                flushUsers();
+            }
+        }
+        
+        void addMoodLogs(int user, ColumnarMoodStore.Columns rows, int from, int to) throws IOException {
+            for (int row = from; row < to; row++) {
+                moodColumns[0].writeVarLong(user - previousMoodUser);
+                previousMoodUser = user;
+                moodColumns[1].writeVarLong(zigzag(rows.epochSeconds[row] - previousMoodSecond));
+                previousMoodSecond = rows.epochSeconds[row];
+                moodColumns[2].writeByte(rows.moods[row]);
+                moodColumns[3].writeByte(rows.intensities[row]);
+                moodColumns[4].writeString(rows.notes[row] == null ? "" : rows.notes[row]);
+                int tagStart = rows.tagStart(row);
+                moodTags.add(rows.tagEnds[row] - tagStart);
+                for (int i = tagStart; i < rows.tagEnds[row]; i++) {
+                    moodTags.add(rows.tagPool[i]);
+                }
+                moodLogCount++;
+                if (++moodRows == BLOCK_ROWS) {
+                    flushMoodLogs();
+                }
+            }
+        }
+        
+        // One check-in replayed from disk, cut to whole seconds like the stored columns
+        void addMoodLog(int user, MoodLog moodLog) throws IOException {
+            long second = moodLog.getTimestamp().toEpochSecond(ZoneOffset.UTC);
+            moodColumns[0].writeVarLong(user - previousMoodUser);
+            previousMoodUser = user;
+            moodColumns[1].writeVarLong(zigzag(second - previousMoodSecond));
+            previousMoodSecond = second;
+            moodColumns[2].writeByte(moodLog.getMood().ordinal());
+            moodColumns[3].writeByte(moodLog.getIntensityLevel());
+            moodColumns[4].writeString(moodLog.getNotes() == null ? "" : moodLog.getNotes());
+            moodTags.add(moodLog.getEmotionTagCount());
+            for (int i = 0; i < moodLog.getEmotionTagCount(); i++) {
+                moodTags.add(moodLog.getEmotionTagId(i));
+            }
+            moodLogCount++;
+            if (++moodRows == BLOCK_ROWS) {
+                flushMoodLogs();
+            }
+        }
+        
+        void addJournalEntry(int user, JournalEntry entry) throws IOException {
+            long second = entry.getTimestamp().toEpochSecond(ZoneOffset.UTC);
+            journalColumns[0].writeVarLong(user - previousJournalUser);
+            previousJournalUser = user;
+            journalColumns[1].writeVarLong(zigzag(second - previousJournalSecond));
+            previousJournalSecond = second;
+            journalColumns[2].writeVarLong(entry.getTimestamp().getNano());
+            journalColumns[3].writeNullableString(entry.getTitle());
+            journalColumns[4].writeNullableString(entry.getContent());
+            journalTags.add(entry.getTagCount());
+            for (int i = 0; i < entry.getTagCount(); i++) {
+                journalTags.add(entry.getTagId(i));
+            }
+            journalEntryCount++;
+            if (++journalRows == BLOCK_ROWS) {
+                flushJournalEntries();
+            }
+        }
+        
+        void finish() throws IOException {
+            flushMoodLogs();
+            flushJournalEntries();
+            flushUsers();
+            ColumnBuffer end = new ColumnBuffer();
+            end.writeByte(END);
+            end.writeVarLong(userCount);
+            end.writeVarLong(moodLogCount);
+            end.writeVarLong(journalEntryCount);
+            put(end.bytes, 0, end.size);
+            drain();
+            channel.force(false);
+        }
+        
+        @Override
+        public void close() throws IOException {
+            deflater.end();
+            channel.close();
+        }
+        
+        // Rows reference users by their row in the file, so users go out first
+        private void flushMoodLogs() throws IOException {
+            flushUsers();
+            if (moodRows > 0) {
+                writeBlock(MOOD_LOGS, moodRows, moodColumns, moodTags);
+                moodRows = 0;
+                previousMoodUser = 0;
+                previousMoodSecond = 0;
+            }
+        }
+        
+        private void flushJournalEntries() throws IOException {
+            flushUsers();
+            if (journalRows > 0) {
+                writeBlock(JOURNAL_ENTRIES, journalRows, journalColumns, journalTags);
+                journalRows = 0;
+                previousJournalUser = 0;
+                previousJournalSecond = 0;
+            }
+        }
+        
+        private void flushUsers() throws IOException {
+            if (userRows > 0) {
+                writeBlock(USERS, userRows, userColumns, null);
+                userRows = 0;
+                previousJoined = 0;
+            }
+        }
+        
+        private void writeBlock(int kind, int rows, ColumnBuffer[] columns, IntList tags) throws IOException {
+            payload.reset();
+            payload.writeVarLong(rows);
+            if (tags != null) {
+                writeTagDelta(tags);
+            }
+            for (ColumnBuffer column : columns) {
+                writeColumn(column);
+            }
+            if (tags != null) {
+                for (int i = 0; i < tags.size(); ) {
+                    int count = tags.get(i++);
+                    tagColumn.writeVarLong(count);
+                    for (int end = i + count; i < end; i++) {
+                        tagColumn.writeVarLong(exportTagIds[tags.get(i)] - 1);
+                    }
+                }
+                writeColumn(tagColumn);
+                tags.clear();
+            }
+            
+            deflater.reset();
+            deflater.setInput(payload.bytes, 0, payload.size);
+            deflater.finish();
+            int compressedSize = 0;
+            while (!deflater.finished()) {
+                if (compressedSize == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                compressedSize += deflater.deflate(compressed, compressedSize, compressed.length - compressedSize);
+            }
+            
+            if (buffer.remaining() < 9) {
+                drain();
+            }
+            buffer.put((byte) kind).putInt(payload.size).putInt(compressedSize);
+            put(compressed, 0, compressedSize);
+        }
+        
+        // Numbers the block's tags that no earlier block used and lists their names
+        private void writeTagDelta(IntList tags) {
+            for (int i = 0; i < tags.size(); ) {
+                int count = tags.get(i++);
+                for (int end = i + count; i < end; i++) {
+                    int globalId = tags.get(i);
+                    if (globalId >= exportTagIds.length) {
+                        exportTagIds = Arrays.copyOf(exportTagIds, Math.max(exportTagIds.length * 2, globalId + 1));
+                    }
+                    if (exportTagIds[globalId] == 0) {
+                        exportTagIds[globalId] = ++exportedTags;
+                        newTags.add(globalId);
+                    }
+                }
+            }
+            payload.writeVarLong(newTags.size());
+            for (int i = 0; i < newTags.size(); i++) {
+                payload.writeString(TagDictionary.GLOBAL.nameOf(newTags.get(i)));
+            }
+            newTags.clear();
+        }
+        
+        private void writeColumn(ColumnBuffer column) {
+            payload.writeVarLong(column.size);
+            payload.write(column.bytes, 0, column.size);
+            column.reset();
+        }
+        
+        private void put(byte[] bytes, int offset, int length) throws IOException {
+            if (length > buffer.remaining()) {
+                drain();
+                if (length > buffer.capacity()) {
+                    ByteBuffer large = ByteBuffer.wrap(bytes, offset, length);
+                    while (large.hasRemaining()) {
+                        channel.write(large);
+                    }
+                    return;
+                }
+            }
+            buffer.put(bytes, offset, length);
+        }
+        
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+    
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+    
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+    
+    // Growable byte column with varint and string encoders
+    static final class ColumnBuffer {
+        byte[] bytes = new byte[256];
+        int size;
+        
+        static ColumnBuffer[] array(int count) {
+            ColumnBuffer[] columns = new ColumnBuffer[count];
+            for (int i = 0; i < count; i++) {
+                columns[i] = new ColumnBuffer();
+            }
+            return columns;
+        }
+        
+        void reset() {
+            size = 0;
+        }
+        
+        void writeByte(int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+        }
+        
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+        
+        void write(byte[] source, int offset, int length) {
+            ensure(length);
+            System.arraycopy(source, offset, bytes, size, length);
+            size += length;
+        }
+        
+        void writeString(String value) {
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(encoded.length);
+            write(encoded, 0, encoded.length);
+        }
+        
+        // Length + 1, leaving 0 to mean null
+        void writeNullableString(String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(encoded.length + 1L);
+            write(encoded, 0, encoded.length);
+        }
+        
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+}
+
+// Streaming reader for DataExporter files. Frames are read through a buffered
+// channel and inflated one at a time; records are handed over as they are
+// decoded, users before any of their records. A user's check-ins and journal
+// entries are not in time order (see DataExporter); sort them if that matters.
+class DataExportReader implements AutoCloseable {
+    private static final int BUFFER_BYTES = 1 << 20;
+    
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private final Inflater inflater = new Inflater();
+    private byte[] compressed = new byte[BUFFER_BYTES];
+    private byte[] payload = new byte[BUFFER_BYTES];
+    private final List<User> users = new ArrayList<>();
+    private int[] tagIds = new int[64]; // export tag ID -> TagDictionary.GLOBAL ID
+    private int tagCount;
+    private MoodType[] moods;
+    
+    public DataExportReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        buffer.flip();
+    }
+    
+    // Reads the whole file, checking the closing record counts; throws
+    // IOException for a file that is truncated, corrupt or of another layout
+    public ExportReport read(PersistenceEngine.ReplayHandler handler) throws IOException {
+        long started = System.nanoTime();
+        readHeader();
+        long moodLogs = 0;
+        long journalEntries = 0;
+        while (true) {
+            int kind = readByte();
+            if (kind == DataExporter.END) {
+                long expectedUsers = readVarLong();
+                long expectedMoodLogs = readVarLong();
+                long expectedJournalEntries = readVarLong();
+                if (expectedUsers != users.size() || expectedMoodLogs != moodLogs || expectedJournalEntries != journalEntries) {
+                    throw new IOException("Export is incomplete: record counts do not match");
+                }
+                return new ExportReport(users.size(), moodLogs, journalEntries, channel.size(), System.nanoTime() - started);
+            }
+            ColumnReader block = readFrame();
+            int rows = (int) block.readVarLong();
+            switch (kind) {
+                case DataExporter.USERS:
+                    readUsers(block, rows, handler);
+                    break;
+                case DataExporter.MOOD_LOGS:
+                    readMoodLogs(block, rows, handler);
+                    moodLogs += rows;
+                    break;
+                case DataExporter.JOURNAL_ENTRIES:
+                    readJournalEntries(block, rows, handler);
+                    journalEntries += rows;
+                    break;
+                default:
+                    throw new IOException("Unknown frame kind " + kind);
+            }
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        channel.close();
+    }
+    
+    private void readHeader() throws IOException {
+        for (byte expected : DataExporter.MAGIC) {
+            if (readByte() != expected) {
+                throw new IOException("Not a MindfulMoments export");
+            }
+        }
+        int version = readByte();
+        if (version != DataExporter.FORMAT_VERSION) {
+            throw new IOException("Unsupported export version " + version);
+        }
+        int tables = (int) readVarLong();
+        if (tables != DataExporter.SCHEMA.length) {
+            throw new IOException("Unsupported export layout");
+        }
+        for (String[] table : DataExporter.SCHEMA) {
+            boolean matches = readByte() == Integer.parseInt(table[0]) && readString().equals(table[1])
+                && readVarLong() == (table.length - 2) / 2;
+            for (int i = 2; matches && i < table.length; i++) {
+                matches = readString().equals(table[i]);
+            }
+            if (!matches) {
+                throw new IOException("Unsupported export layout for table " + table[1]);
+            }
+        }
+        moods = new MoodType[(int) readVarLong()];
+        for (int i = 0; i < moods.length; i++) {
+            String name = readString();
+            try {
+                moods[i] = MoodType.valueOf(name);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Unknown mood in export: " + name);
+            }
+        }
+    }
+    
+    private void readUsers(ColumnReader block, int rows, PersistenceEngine.ReplayHandler handler) throws IOException {
+        ColumnReader ids = block.column();
+        ColumnReader names = block.column();
+        ColumnReader joined = block.column();
+        ColumnReader joinedNanos = block.column();
+        long joinedSecond = 0;
+        for (int row = 0; row < rows; row++) {
+            joinedSecond += DataExporter.unzigzag(joined.readVarLong());
+            User user = new User(ids.readString(), names.readString(),
+                LocalDateTime.ofEpochSecond(joinedSecond, readNanos(joinedNanos), ZoneOffset.UTC));
+            users.add(user);
+            handler.onUser(user);
+        }
+    }
+    
+    private void readMoodLogs(ColumnReader block, int rows, PersistenceEngine.ReplayHandler handler) throws IOException {
+        readTagDelta(block);
+        ColumnReader userColumn = block.column();
+        ColumnReader times = block.column();
+        ColumnReader moodColumn = block.column();
+        ColumnReader intensities = block.column();
+        ColumnReader notes = block.column();
+        ColumnReader tags = block.column();
+        int user = 0;
+        long second = 0;
+        for (int row = 0; row < rows; row++) {
+            user += (int) userColumn.readVarLong();
+            second += DataExporter.unzigzag(times.readVarLong());
+            int mood = moodColumn.readByte();
+            if (mood < 0 || mood >= moods.length) {
+                throw new IOException("Corrupt mood column");
+            }
+            MoodLog moodLog = new MoodLog(LocalDateTime.ofEpochSecond(second, 0, ZoneOffset.UTC), moods[mood],
+                readTags(tags), notes.readString(), intensities.readByte());
+            handler.onMoodLog(userAt(user).getUserId(), moodLog);
+        }
+    }
+    
+    private void readJournalEntries(ColumnReader block, int rows, PersistenceEngine.ReplayHandler handler) throws IOException {
+        readTagDelta(block);
+        ColumnReader userColumn = block.column();
+        ColumnReader times = block.column();
+        ColumnReader timeNanos = block.column();
+        ColumnReader titles = block.column();
+        ColumnReader contents = block.column();
+        ColumnReader tags = block.column();
+        int user = 0;
+        long second = 0;
+        for (int row = 0; row < rows; row++) {
+            user += (int) userColumn.readVarLong();
+            second += DataExporter.unzigzag(times.readVarLong());
+            JournalEntry entry = new JournalEntry(LocalDateTime.ofEpochSecond(second, readNanos(timeNanos), ZoneOffset.UTC),
+                titles.readNullableString(), contents.readNullableString(), readTags(tags));
+            handler.onJournalEntry(userAt(user).getUserId(), entry);
+        }
+    }
+    
+    private static int readNanos(ColumnReader column) throws IOException {
+        long nanos = column.readVarLong();
+        if (nanos > 999_999_999) {
+            throw new IOException("Corrupt nanosecond column");
+        }
+        return (int) nanos;
+    }
+    
+    private void readTagDelta(ColumnReader block) throws IOException {
+        int added = (int) block.readVarLong();
+        if (tagCount + added > tagIds.length) {
+            tagIds = Arrays.copyOf(tagIds, Math.max(tagIds.length * 2, tagCount + added));
+        }
+        for (int i = 0; i < added; i++) {
+            tagIds[tagCount++] = TagDictionary.GLOBAL.idOf(block.readString());
+        }
+    }
+    
+    private int[] readTags(ColumnReader column) throws IOException {
+        int[] ids = new int[(int) column.readVarLong()];
+        for (int i = 0; i < ids.length; i++) {
+            long exportId = column.readVarLong();
+            if (exportId >= tagCount) {
+                throw new IOException("Tag " + exportId + " used before it was defined");
+            }
+            ids[i] = tagIds[(int) exportId];
+        }
+        return ids;
+    }
+    
+    private User userAt(int row) throws IOException {
+        if (row >= users.size()) {
+            throw new IOException("Record refers to unknown user row " + row);
+        }
+        return users.get(row);
+    }
+    
+    private ColumnReader readFrame() throws IOException {
+        int rawLength = readInt();
+        int compressedLength = readInt();
+        if (rawLength < 0 || compressedLength < 0) {
+            throw new IOException("Corrupt frame header");
+        }
+        if (compressedLength > compressed.length) {
+            compressed = new byte[compressedLength];
+        }
+        if (rawLength > payload.length) {
+            payload = new byte[rawLength];
+        }
+        readFully(compressed, compressedLength);
+        inflater.reset();
+        inflater.setInput(compressed, 0, compressedLength);
+        try {
+            if (inflater.inflate(payload, 0, rawLength) != rawLength || !inflater.finished()) {
+                throw new IOException("Corrupt frame: size does not match");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt frame: " + e.getMessage(), e);
+        }
+        return new ColumnReader(payload, 0, rawLength);
+    }
+    
+    private void fill(int needed) throws IOException {
+        if (buffer.remaining() >= needed) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.position() < needed) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Export ends unexpectedly");
+            }
+        }
+        buffer.flip();
+    }
+    
+    private int readByte() throws IOException {
+        fill(1);
+        return buffer.get();
+    }
+    
+    private int readInt() throws IOException {
+        fill(4);
+        return buffer.getInt();
+    }
+    
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt varint");
+    }
+    
+    private String readString() throws IOException {
+        byte[] bytes = new byte[(int) readVarLong()];
+        readFully(bytes, bytes.length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private void readFully(byte[] target, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            fill(1);
+            int chunk = Math.min(length - read, buffer.remaining());
+            buffer.get(target, read, chunk);
+            read += chunk;
+        }
+    }
+    
+    // Cursor over one column, or over a whole payload before it is split into columns
+    private static final class ColumnReader {
+        private final byte[] bytes;
+        private int position;
+        private final int end;
+        
+        ColumnReader(byte[] bytes, int position, int end) {
+            this.bytes = bytes;
+            this.position = position;
+            this.end = end;
+        }
+        
+        // Splits off the next length-prefixed column
+        ColumnReader column() throws IOException {
+            int length = (int) readVarLong();
+            if (length < 0 || position + length > end) {
+                throw new IOException("Corrupt column length");
+            }
+            ColumnReader column = new ColumnReader(bytes, position, position + length);
+            position += length;
+            return column;
+        }
+        
+        int readByte() throws IOException {
+            if (position >= end) {
+                throw new IOException("Column ends unexpectedly");
+            }
+            return bytes[position++];
+        }
+        
+        long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Corrupt varint");
+        }
+        
+        String readString() throws IOException {
+            return readBytes((int) readVarLong());
+        }
+        
+        String readNullableString() throws IOException {
+            long length = readVarLong();
+            return length == 0 ? null : readBytes((int) (length - 1));
+        }
+        
+        private String readBytes(int length) throws IOException {
+            if (length < 0 || position + length > end) {
+                throw new IOException("Corrupt string length");
+            }
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
+
+class ExportReport {
+    private final int users;
+    private final long moodLogs;
+    private final long journalEntries;
+    private final long bytes;
+    private final long elapsedNanos;
+    
+    public ExportReport(int users, long moodLogs, long journalEntries, long bytes, long elapsedNanos) {
+        this.users = users;
+        this.moodLogs = moodLogs;
+        this.journalEntries = journalEntries;
+        this.bytes = bytes;
+        this.elapsedNanos = elapsedNanos;
+    }
+    
+    public int getUsers() { return users; }
+    public long getMoodLogs() { return moodLogs; }
+    public long getJournalEntries() { return journalEntries; }
+    public long getBytes() { return bytes; }
+    public long getElapsedNanos() { return elapsedNanos; }
+    
+    public double getRecordsPerSecond() {
+        return elapsedNanos == 0 ? 0 : (moodLogs + journalEntries) * 1_000_000_000.0 / elapsedNanos;
+    }
+    
+    public double getMegabytesPerSecond() {
+        return elapsedNanos == 0 ? 0 : bytes / 1e6 * 1_000_000_000.0 / elapsedNanos;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%,d users, %,d check-ins and %,d journal entries, %,d bytes in %.2fs - %,.0f records/s, %.1f MB/s",
+            users, moodLogs, journalEntries, bytes, elapsedNanos / 1e9, getRecordsPerSecond(), getMegabytesPerSecond());
+    }
+}
+
+// Headless Service API
+// Scanner-free entry points to the services for non-interactive drivers such
+// as the load generator. The interactive menu records through it as well.
+class WellnessApi implements AutoCloseable {
+    private final DataManager dataManager;
+    private final OnboardingService onboardingService;
+    private final MoodCheckInService moodCheckInService;
+    private final JournalingService journalingService;
+    private final SuggestionEngine suggestionEngine;
+    private final DashboardService dashboardService;
+    private final WritePipeline writePipeline; // null when writes are applied on the caller's thread
+    
+    public WellnessApi(DataManager dataManager) {
+        this(dataManager, 0);
+    }
+    
+    // A positive queue capacity routes writes through a WritePipeline of that size
+    public WellnessApi(DataManager dataManager, int writeQueueCapacity) {
+        this.dataManager = dataManager;
+        this.onboardingService = new OnboardingService(dataManager.getDirectory());
+        this.moodCheckInService = new MoodCheckInService();
+        this.journalingService = new JournalingService();
+        this.suggestionEngine = new SuggestionEngine();
+        this.dashboardService = new DashboardService(dataManager);
+        this.writePipeline = writeQueueCapacity > 0
+            ? new WritePipeline(dataManager, suggestionEngine, writeQueueCapacity, WritePipeline.DEFAULT_BATCH_SIZE, 0)
+            : null;
+    }
+    
+    public DataManager getDataManager() { return dataManager; }
+    
+    public WritePipeline getWritePipeline() { return writePipeline; }
+    
+    public SuggestionEngine getSuggestionEngine() { return suggestionEngine; }
+    
+    public User onboard(String name) {
+        User user = onboardingService.createUser(name);
+        dataManager.createUser(user);
+        return user;
+    }
+    
+    // Records the check-in and returns the suggestions that follow it
+    public List<String> checkIn(User user, MoodType mood, int intensity, String emotionTags, String notes) {
+        return recordMoodLog(user, moodCheckInService.createMoodLog(mood, intensity, emotionTags, notes));
+    }
+    
+    public List<String> recordMoodLog(User user, MoodLog moodLog) {
+        if (writePipeline != null) {
+            return await(writePipeline.submitMoodLog(user, moodLog));
+        }
+        dataManager.addMoodLog(user.getUserId(), moodLog);
+        return suggestionEngine.generateSuggestions(user, dataManager);
+    }
+    
+    // Returns once the check-in is queued; the future completes with the suggestions that follow it
+    public CompletableFuture<List<String>> checkInAsync(User user, MoodType mood, int intensity, String emotionTags, String notes) {
+        return recordMoodLogAsync(user, moodCheckInService.createMoodLog(mood, intensity, emotionTags, notes));
+    }
+    
+    public CompletableFuture<List<String>> recordMoodLogAsync(User user, MoodLog moodLog) {
+        if (writePipeline != null) {
+            return writePipeline.submitMoodLog(user, moodLog);
+        }
+        return CompletableFuture.completedFuture(recordMoodLog(user, moodLog));
+    }
+    
+    public JournalEntry writeJournalEntry(User user, String title, String content, String tags) {
+        JournalEntry entry = journalingService.createJournalEntry(title, content, tags);
+        recordJournalEntry(user, entry);
+        return entry;
+    }
+    
+    public void recordJournalEntry(User user, JournalEntry entry) {
+        if (writePipeline != null) {
+            await(writePipeline.submitJournalEntry(user, entry));
+            return;
+        }
+        dataManager.addJournalEntry(user.getUserId(), entry);
+    }
+    
+    public CompletableFuture<Void> recordJournalEntryAsync(User user, JournalEntry entry) {
+        if (writePipeline != null) {
+            return writePipeline.submitJournalEntry(user, entry);
+        }
+        recordJournalEntry(user, entry);
+        return CompletableFuture.completedFuture(null);
+    }
+    
+    public List<JournalSearchResult> searchJournal(User user, String query) {
+        return dataManager.searchJournal(user.getUserId(), JournalQuery.parse(query));
+    }
+    
+    public void renderDashboard(User user, PrintStream out) {
+        dashboardService.displayDashboard(user, out);
+    }
+    
+    public void renderDashboard(User user, DashboardRenderer renderer, OutputStream out) throws IOException {
+        dashboardService.render(user, renderer, out);
+    }
+    
+    public void renderDashboard(User user, DashboardRenderer renderer, DashboardService.RenderedDashboard target) throws IOException {
+        dashboardService.render(user, renderer, target);
+    }
+    
+    public List<String> getSuggestions(User user) {
+        return suggestionEngine.generateSuggestions(user, dataManager);
+    }
+    
+    public MoodSeries getMoodChart(User user, ChartRange range) {
+        LocalDateTime now = LocalDateTime.now();
+        return dataManager.getMoodSeries(user.getUserId(), range.since(now), now, MoodRollups.DEFAULT_CHART_POINTS);
+    }
+    
+    // Waits for queued writes to be applied; the data manager stays open
+    @Override
+    public void close() {
+        if (writePipeline != null) {
+            writePipeline.close();
+        }
+    }
+    
+    // Surfaces the original exception so synchronous callers see the same errors as before
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
+
+// Write Pipeline
+// Moves check-ins and journal entries off the caller's thread. Producers only
+// enqueue into a bounded queue, blocking while it is full so a burst cannot
+// outrun the store. The apply stage drains the queue in batches and groups them
+// per user, so each user's lock, aggregates, search index and persistence append
+// are paid once per batch; it then hands the batch to a second stage that
+// precomputes suggestions (warming the engine's cache) and completes the
+// callers' futures. close() stops intake and drains both stages.
+class WritePipeline implements AutoCloseable {
+    static final int DEFAULT_BATCH_SIZE = 256;
+    
+    private static final WriteEvent SHUTDOWN = new WriteEvent(null, null, null);
+    private static final List<WriteEvent> FINISHED = Collections.emptyList();
+    
+    private final DataManager dataManager;
+    private final SuggestionEngine suggestionEngine;
+    private final BlockingQueue<WriteEvent> writes;
+    private final BlockingQueue<List<WriteEvent>> applied;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final ReentrantReadWriteLock intake = new ReentrantReadWriteLock();
+    private final Thread applyThread;
+    private final Thread precomputeThread;
+    private final AtomicLong eventCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private boolean closed; // guarded by intake
+    
+    // lingerMillis > 0 lets the apply stage wait that long for a batch to fill
+    public WritePipeline(DataManager dataManager, SuggestionEngine suggestionEngine,
+                         int queueCapacity, int maxBatchSize, long lingerMillis) {
+        if (queueCapacity < 1 || maxBatchSize < 1 || lingerMillis < 0) {
+            throw new IllegalArgumentException("Invalid write pipeline settings");
+        }
+        this.dataManager = dataManager;
+        this.suggestionEngine = suggestionEngine;
+        this.writes = new ArrayBlockingQueue<>(queueCapacity);
+        this.applied = new ArrayBlockingQueue<>(Math.max(2, queueCapacity / maxBatchSize));
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.applyThread = new Thread(this::runApplyStage, "write-pipeline-apply");
+        this.precomputeThread = new Thread(this::runPrecomputeStage, "write-pipeline-suggestions");
+        applyThread.setDaemon(true);
+        precomputeThread.setDaemon(true);
+        applyThread.start();
+        precomputeThread.start();
+    }
+    
+    // The future completes with the suggestions computed after this check-in was applied
+    public CompletableFuture<List<String>> submitMoodLog(User user, MoodLog moodLog) {
+        WriteEvent event = new WriteEvent(user, moodLog, null);
+        enqueue(event);
+        return event.suggestions;
+    }
+    
+    // The future completes once the entry is stored and indexed
+    public CompletableFuture<Void> submitJournalEntry(User user, JournalEntry entry) {
+        WriteEvent event = new WriteEvent(user, null, entry);
+        enqueue(event);
+        return event.stored;
+    }
+    
+    public int getQueueDepth() {
+        return writes.size();
+    }
+    
+    @Override
+    public void close() {
+        intake.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            intake.writeLock().unlock();
+        }
+        putUninterruptibly(writes, SHUTDOWN);
+        joinUninterruptibly(applyThread);
+        joinUninterruptibly(precomputeThread);
+    }
+    
+    // Blocks while the queue is full; the read lock keeps close() from slipping
+    // its shutdown marker in ahead of an event that already passed the check
+    private void enqueue(WriteEvent event) {
+        Metrics.begin(Metrics.Operation.WRITE_ENQUEUE);
+        intake.readLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Write pipeline is closed");
+            }
+            writes.put(event);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for space in the write queue", e);
+        } finally {
+            intake.readLock().unlock();
+            Metrics.end(Metrics.Operation.WRITE_ENQUEUE);
+        }
+    }
+    
+    private void runApplyStage() {
+        List<WriteEvent> batch = new ArrayList<>(maxBatchSize);
+        boolean running = true;
+        while (running) {
+            batch.clear();
+            takeBatch(batch);
+            // The shutdown marker is always the last event ever queued
+            if (batch.get(batch.size() - 1) == SHUTDOWN) {
+                batch.remove(batch.size() - 1);
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                apply(batch);
+                eventCount.addAndGet(batch.size());
+                batchCount.incrementAndGet();
+                putUninterruptibly(applied, new ArrayList<>(batch));
+            }
+        }
+        putUninterruptibly(applied, FINISHED);
+    }
+    
+    private void takeBatch(List<WriteEvent> batch) {
+        boolean interrupted = false;
+        while (batch.isEmpty()) {
+            try {
+                batch.add(writes.take());
+                if (lingerNanos > 0) {
+                    long deadline = System.nanoTime() + lingerNanos;
+                    long remaining;
+                    while (batch.size() < maxBatchSize && batch.get(batch.size() - 1) != SHUTDOWN
+                            && (remaining = deadline - System.nanoTime()) > 0) {
+                        WriteEvent next = writes.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next != null) {
+                            batch.add(next);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (batch.get(batch.size() - 1) != SHUTDOWN) {
+            writes.drainTo(batch, maxBatchSize - batch.size());
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void apply(List<WriteEvent> batch) {
+        Map<String, List<WriteEvent>> byUser = new LinkedHashMap<>();
+        for (WriteEvent event : batch) {
+            byUser.computeIfAbsent(event.user.getUserId(), id -> new ArrayList<>()).add(event);
+        }
+        
+        for (Map.Entry<String, List<WriteEvent>> group : byUser.entrySet()) {
+            String userId = group.getKey();
+            List<WriteEvent> moodEvents = new ArrayList<>();
+            List<WriteEvent> journalEvents = new ArrayList<>();
+            List<MoodLog> moodLogs = new ArrayList<>();
+            List<JournalEntry> entries = new ArrayList<>();
+            for (WriteEvent event : group.getValue()) {
+                if (event.moodLog != null) {
+                    moodEvents.add(event);
+                    moodLogs.add(event.moodLog);
+                } else {
+                    journalEvents.add(event);
+                    entries.add(event.entry);
+                }
+            }
+            // Producers race to enqueue, so restore timestamp order before the batch insert
+            moodLogs.sort(Comparator.comparing(MoodLog::getTimestamp));
+            entries.sort(Comparator.comparing(JournalEntry::getTimestamp));
+            // Check-ins and journal entries are stored separately, so a failure in
+            // one only fails its own events; the check-ins' futures are completed
+            // by the precompute stage
+            if (!moodLogs.isEmpty()) {
+                try {
+                    dataManager.addMoodLogs(userId, moodLogs);
+                } catch (RuntimeException e) {
+                    for (WriteEvent event : moodEvents) {
+                        event.fail(e);
+                    }
+                }
+            }
+            if (!entries.isEmpty()) {
+                try {
+                    dataManager.addJournalEntries(userId, entries);
+                    for (WriteEvent event : journalEvents) {
+                        event.stored.complete(null);
+                    }
+                } catch (RuntimeException e) {
+                    for (WriteEvent event : journalEvents) {
+                        event.fail(e);
+                    }
+                }
+            }
+        }
+    }
+    
+    private void runPrecomputeStage() {
+        while (true) {
+            List<WriteEvent> batch = takeUninterruptibly(applied);
+            if (batch == FINISHED) {
+                return;
+            }
+            // One suggestion pass per user covers every check-in they made in the batch
+            Map<String, List<String>> computed = new HashMap<>();
+            for (WriteEvent event : batch) {
+                if (event.suggestions == null || event.suggestions.isDone()) {
+                    continue;
+                }
+                try {
+                    List<String> suggestions = computed.get(event.user.getUserId());
+                    if (suggestions == null) {
+                        suggestions = suggestionEngine.generateSuggestions(event.user, dataManager);
+                        computed.put(event.user.getUserId(), suggestions);
+                    }
+                    event.suggestions.complete(suggestions);
+                } catch (RuntimeException e) {
+                    event.fail(e);
+                }
+            }
+        }
+    }
+    
+    private static <T> void putUninterruptibly(BlockingQueue<T> queue, T item) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(item);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private static <T> T takeUninterruptibly(BlockingQueue<T> queue) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return queue.take();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    private static void joinUninterruptibly(Thread thread) {
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    @Override
+    public String toString() {
+        long events = eventCount.get();
+        long batches = batchCount.get();
+        return String.format("Write pipeline: %d writes in %d batches (%.1f per batch)",
+            events, batches, batches == 0 ? 0.0 : (double) events / batches);
+    }
+    
+    // A queued write; exactly one of moodLog and entry is set
+    private static final class WriteEvent {
+        final User user;
+        final MoodLog moodLog;
+        final JournalEntry entry;
+        final CompletableFuture<List<String>> suggestions;
+        final CompletableFuture<Void> stored;
+        
+        WriteEvent(User user, MoodLog moodLog, JournalEntry entry) {
+            this.user = user;
+            this.moodLog = moodLog;
+            this.entry = entry;
+            this.suggestions = moodLog != null ? new CompletableFuture<>() : null;
+            this.stored = entry != null ? new CompletableFuture<>() : null;
+        }
+        
+        void fail(Throwable cause) {
+            if (suggestions != null) {
+                suggestions.completeExceptionally(cause);
+            }
+            if (stored != null) {
+                stored.completeExceptionally(cause);
+            }
+        }
+    }
+}
+
+// Thread Support
+// Uses virtual threads when the running JVM has them (JDK 21+) and falls back
+// to platform threads on older runtimes.
+class ThreadSupport {
+    private ThreadSupport() {
+    }
+    
+    public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicLong counter = new AtomicLong();
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, namePrefix + "-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+    
+    public static boolean virtualThreadsAvailable() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
+
+// Latency Histogram
+// Log-linear buckets (16 per power of two, about 6% precision) over
+// nanosecond values, safe for concurrent recording without locks.
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+    
+    private final AtomicLongArray counts;
+    private final AtomicLong totalNanos;
+    private final AtomicLong maxNanos;
+    
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.totalNanos = new AtomicLong();
+        this.maxNanos = new AtomicLong();
+    }
+    
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        totalNanos.addAndGet(value);
+        long max;
+        while (value > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, value)) {
+            // retry until the larger value sticks
+        }
+    }
+    
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+    
+    public long getMaxNanos() { return maxNanos.get(); }
+    
+    public double getMeanNanos() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) totalNanos.get() / count;
+    }
+    
+    // Value at the given percentile (0-100), reported as the middle of its bucket
+    public long getPercentileNanos(double percentile) {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(maxNanos.get(), (lowestValueOf(i) + lowestValueOf(i + 1) - 1) / 2);
+            }
+        }
+        return maxNanos.get();
+    }
+    
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+    
+    private static long lowestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+}
+
+// Metrics
+// Instrumentation for the hot paths: call counts, latency histograms and, where
+// the JVM reports per-thread allocation, bytes allocated per call, plus per-user
+// data-size gauges. Off unless started with -Dmindfulmoments.metrics=true; the
+// flag is a static final, so when it is off begin/end compile down to nothing.
+// When on, the metrics are published over JMX as mindfulmoments:type=Metrics
+// and, with -Dmindfulmoments.metrics.dumpSeconds=<n>, written every n seconds as
+// text or JSON (-Dmindfulmoments.metrics.format=json) to stderr or, with
+// -Dmindfulmoments.metrics.file=<path>, to that file.
+final class Metrics {
+    static final boolean ENABLED = Boolean.getBoolean("mindfulmoments.metrics");
+    
+    enum Operation { CHECK_IN, WRITE_ENQUEUE, MOOD_WRITE, JOURNAL_WRITE, SUGGESTIONS, DASHBOARD }
+    
+    private static final int LARGEST_USERS = 5;
+    private static final Operation[] OPERATIONS = Operation.values();
+    private static final OperationStats[] STATS = new OperationStats[OPERATIONS.length];
+    // Start time and allocated bytes of every operation in progress on this thread
+    private static final ThreadLocal<long[]> STARTS = ThreadLocal.withInitial(() -> new long[OPERATIONS.length * 2]);
+    private static final Set<DataManager> WATCHED = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    private static final AllocationCounter ALLOCATION = ENABLED ? AllocationCounter.create() : null;
+    
+    static {
+        for (int i = 0; i < STATS.length; i++) {
+            STATS[i] = new OperationStats();
+        }
+        if (ENABLED) {
+            registerMBean();
+            scheduleDumps();
+        }
+    }
+    
+    private Metrics() {
+    }
+    
+    static void begin(Operation operation) {
+        if (!ENABLED) {
+            return;
+        }
+        long[] starts = STARTS.get();
+        int slot = operation.ordinal() * 2;
+        starts[slot + 1] = ALLOCATION.currentThreadBytes();
+        starts[slot] = System.nanoTime();
+    }
+    
+    static void end(Operation operation) {
+        if (!ENABLED) {
+            return;
+        }
+        long now = System.nanoTime();
+        long[] starts = STARTS.get();
+        int slot = operation.ordinal() * 2;
+        long elapsed = now - starts[slot];
+        long allocatedBefore = starts[slot + 1];
+        OperationStats stats = STATS[operation.ordinal()];
+        stats.calls.increment();
+        stats.latency.record(elapsed);
+        if (allocatedBefore >= 0) {
+            long allocated = ALLOCATION.currentThreadBytes() - allocatedBefore;
+            if (allocated >= 0) {
+                stats.allocatedBytes.add(allocated);
+                stats.allocationSamples.increment();
+            }
+        }
+    }
+    
+    // Data managers are held weakly so benchmarks that create many do not leak them
+    static void watch(DataManager dataManager) {
+        if (ENABLED) {
+            WATCHED.add(dataManager);
+        }
+    }
+    
+    // Flat name -> value view shared by JMX and the JSON dump; latencies in microseconds.
+    // Gauges may be up to a second old so a console polling each attribute does
+    // not walk every resident user once per attribute.
+    static Map<String, Number> values() {
+        return values(Gauges.recent());
+    }
+    
+    static String toText() {
+        Gauges gauges = Gauges.collect();
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%-14s %10s %10s %10s %10s %10s %10s %12s%n", "operation", "calls",
+            "mean us", "p50 us", "p99 us", "p99.9 us", "max us", "alloc B/call"));
+        for (Operation operation : OPERATIONS) {
+            OperationStats stats = STATS[operation.ordinal()];
+            LatencyHistogram latency = stats.latency;
+            text.append(String.format("%-14s %10d %10.1f %10.1f %10.1f %10.1f %10.1f %12s%n", nameOf(operation),
+                stats.calls.sum(), latency.getMeanNanos() / 1e3, latency.getPercentileNanos(50) / 1e3,
+                latency.getPercentileNanos(99) / 1e3, latency.getPercentileNanos(99.9) / 1e3,
+                latency.getMaxNanos() / 1e3, stats.allocationSamples.sum() == 0 ? "n/a" : String.valueOf(stats.bytesPerCall())));
+        }
+        text.append(String.format("Users: %d (%d loaded), check-ins: %d in memory + %d on disk, journal entries: %d, column memory: %d KB%n",
+            gauges.users, gauges.residentUsers, gauges.hotMoodLogs, gauges.coldMoodLogs, gauges.journalEntries, gauges.hotColumnBytes / 1024));
+        text.append("Tiering: ").append(gauges.tiers).append(String.format("%n"));
+        if (!gauges.largest.isEmpty()) {
+            text.append("Largest users:");
+            for (UserDataSize size : gauges.largest) {
+                text.append(String.format(" %s (%d check-ins, %d journal entries)", size.getUserId(),
+                    size.getMoodLogs(), size.getJournalEntries()));
+            }
+            text.append(String.format("%n"));
+        }
+        return text.toString();
+    }
+    
+    static String toJson() {
+        Gauges gauges = Gauges.collect();
+        StringBuilder json = new StringBuilder("{");
+        for (Map.Entry<String, Number> value : values(gauges).entrySet()) {
+            appendJsonString(json, value.getKey());
+            json.append(':').append(value.getValue()).append(',');
+        }
+        json.append("\"largestUsers\":[");
+        for (int i = 0; i < gauges.largest.size(); i++) {
+            UserDataSize size = gauges.largest.get(i);
+            json.append(i == 0 ? "{" : ",{").append("\"userId\":");
+            appendJsonString(json, size.getUserId());
+            json.append(",\"moodLogsHot\":").append(size.getHotMoodLogs())
+                .append(",\"moodLogsCold\":").append(size.getColdMoodLogs())
+                .append(",\"journalEntries\":").append(size.getJournalEntries())
+                .append(",\"columnBytes\":").append(size.getHotColumnBytes()).append('}');
+        }
+        return json.append("]}").toString();
+    }
+    
+    private static Map<String, Number> values(Gauges gauges) {
+        Map<String, Number> values = new LinkedHashMap<>();
+        for (Operation operation : OPERATIONS) {
+            OperationStats stats = STATS[operation.ordinal()];
+            LatencyHistogram latency = stats.latency;
+            String name = nameOf(operation);
+            values.put(name + ".calls", stats.calls.sum());
+            values.put(name + ".meanMicros", micros(latency.getMeanNanos()));
+            values.put(name + ".p50Micros", micros(latency.getPercentileNanos(50)));
+            values.put(name + ".p99Micros", micros(latency.getPercentileNanos(99)));
+            values.put(name + ".p999Micros", micros(latency.getPercentileNanos(99.9)));
+            values.put(name + ".maxMicros", micros(latency.getMaxNanos()));
+            values.put(name + ".allocatedBytesPerCall", stats.allocationSamples.sum() == 0 ? -1 : stats.bytesPerCall());
+        }
+        values.put("users", gauges.users);
+        values.put("users.resident", gauges.residentUsers);
+        values.put("moodLogs.hot", gauges.hotMoodLogs);
+        values.put("moodLogs.cold", gauges.coldMoodLogs);
+        values.put("moodLogs.maxPerUser", gauges.largest.isEmpty() ? 0 : gauges.largest.get(0).getMoodLogs());
+        values.put("journalEntries", gauges.journalEntries);
+        values.put("columnBytes", gauges.hotColumnBytes);
+        values.put("tier.hotHitRate", gauges.tiers.getHotHitRate());
+        values.put("tier.cacheHitRate", gauges.tiers.getCacheHitRate());
+        return values;
+    }
+    
+    private static String nameOf(Operation operation) {
+        return operation.name().toLowerCase(Locale.ROOT);
+    }
+    
+    private static double micros(double nanos) {
+        return Math.round(nanos / 100.0) / 10.0;
+    }
+    
+    private static void appendJsonString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+    
+    private static void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(), new ObjectName("mindfulmoments:type=Metrics"));
+        } catch (JMException e) {
+            System.err.println("Metrics are not available over JMX: " + e.getMessage());
+        }
+    }
+    
+    private static void scheduleDumps() {
+        long seconds = Long.getLong("mindfulmoments.metrics.dumpSeconds", 0);
+        if (seconds <= 0) {
+            return;
+        }
+        boolean json = "json".equalsIgnoreCase(System.getProperty("mindfulmoments.metrics.format"));
+        String file = System.getProperty("mindfulmoments.metrics.file");
+        ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> {
+            String dump = json ? toJson() + System.lineSeparator() : toText();
+            if (file == null) {
+                System.err.print(dump);
+                return;
+            }
+            // Each dump replaces the last, so the file always holds the latest snapshot
+            try {
+                Files.write(Paths.get(file), dump.getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                System.err.println("Could not write metrics to " + file + ": " + e.getMessage());
+            }
+        }, seconds, seconds, TimeUnit.SECONDS);
+    }
+    
+    private static final class OperationStats {
+        final LongAdder calls = new LongAdder();
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder allocatedBytes = new LongAdder();
+        final LongAdder allocationSamples = new LongAdder();
+        
+        long bytesPerCall() {
+            long samples = allocationSamples.sum();
+            return samples == 0 ? 0 : allocatedBytes.sum() / samples;
+        }
+    }
+    
+    // Totals over every watched data manager, computed when metrics are read
+    private static final class Gauges {
+        private static final long REUSE_NANOS = TimeUnit.SECONDS.toNanos(1);
+        private static volatile Gauges latest;
+        
+        long collectedAt;
+        long users;
+        long residentUsers; // users whose history is in memory; sizes cover only these
+        long hotMoodLogs;
+        long coldMoodLogs;
+        long journalEntries;
+        long hotColumnBytes;
+        TierStats tiers;
+        List<UserDataSize> largest; // by check-ins, largest first
+        
+        // The last collection if it is under a second old, otherwise a new one
+        static Gauges recent() {
+            Gauges gauges = latest;
+            if (gauges != null && System.nanoTime() - gauges.collectedAt < REUSE_NANOS) {
+                return gauges;
+            }
+            synchronized (Gauges.class) {
+                gauges = latest;
+                if (gauges != null && System.nanoTime() - gauges.collectedAt < REUSE_NANOS) {
+                    return gauges;
+                }
+                return collect();
+            }
+        }
+        
+        static Gauges collect() {
+            List<DataManager> managers;
+            synchronized (WATCHED) {
+                managers = new ArrayList<>(WATCHED);
+            }
+            Gauges gauges = new Gauges();
+            PriorityQueue<UserDataSize> largest = new PriorityQueue<>(Comparator.comparingInt(UserDataSize::getMoodLogs));
+            long hotReads = 0, coldReads = 0, cacheHits = 0, cacheMisses = 0, segments = 0, segmentBytes = 0;
+            for (DataManager manager : managers) {
+                gauges.users += manager.getDirectory().size();
+                for (String userId : manager.getResidentUserIds()) {
+                    UserDataSize size = manager.getDataSize(userId);
+                    gauges.residentUsers++;
+                    gauges.hotMoodLogs += size.getHotMoodLogs();
+                    gauges.coldMoodLogs += size.getColdMoodLogs();
+                    gauges.journalEntries += size.getJournalEntries();
+                    gauges.hotColumnBytes += size.getHotColumnBytes();
+                    largest.add(size);
+                    if (largest.size() > LARGEST_USERS) {
+                        largest.poll();
+                    }
+                }
+                TierStats tiers = manager.getTierStats();
+                hotReads += tiers.getHotReads();
+                coldReads += tiers.getColdReads();
+                cacheHits += tiers.getCacheHits();
+                cacheMisses += tiers.getCacheMisses();
+                segments += tiers.getSegmentsWritten();
+                segmentBytes += tiers.getBytesWritten();
+            }
+            gauges.tiers = new TierStats(hotReads, coldReads, cacheHits, cacheMisses, segments, segmentBytes);
+            gauges.largest = new ArrayList<>(largest);
+            gauges.largest.sort(Comparator.comparingInt(UserDataSize::getMoodLogs).reversed());
+            gauges.collectedAt = System.nanoTime();
+            latest = gauges;
+            return gauges;
+        }
+    }
+    
+    // Reads com.sun.management.ThreadMXBean reflectively so the code still runs on
+    // JVMs without it; reports -1 where per-thread allocation is not available
+    private static final class AllocationCounter {
+        private final Object bean;
+        private final Method currentThread; // JDK 14+
+        private final Method byThreadId;
+        
+        private AllocationCounter(Object bean, Method currentThread, Method byThreadId) {
+            this.bean = bean;
+            this.currentThread = currentThread;
+            this.byThreadId = byThreadId;
+        }
+        
+        static AllocationCounter create() {
+            try {
+                Object bean = ManagementFactory.getThreadMXBean();
+                Class<?> type = Class.forName("com.sun.management.ThreadMXBean");
+                if (!type.isInstance(bean) || !(Boolean) type.getMethod("isThreadAllocatedMemorySupported").invoke(bean)) {
+                    return new AllocationCounter(null, null, null);
+                }
+                type.getMethod("setThreadAllocatedMemoryEnabled", boolean.class).invoke(bean, true);
+                Method currentThread = null;
+                try {
+                    currentThread = type.getMethod("getCurrentThreadAllocatedBytes");
+                } catch (NoSuchMethodException e) {
+                    // older JDK, look the thread up by ID instead
+                }
+                return new AllocationCounter(bean, currentThread, type.getMethod("getThreadAllocatedBytes", long.class));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return new AllocationCounter(null, null, null);
+            }
+        }
+        
+        long currentThreadBytes() {
+            if (bean == null) {
+                return -1;
+            }
+            try {
+                return currentThread != null
+                    ? (Long) currentThread.invoke(bean)
+                    : (Long) byThreadId.invoke(bean, Thread.currentThread().getId());
+            } catch (ReflectiveOperationException e) {
+                return -1;
+            }
+        }
+    }
+    
+    // Read-only JMX view; attribute names match the keys of values()
+    private static final class MetricsMBean implements DynamicMBean {
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Object value = attribute(attribute, values());
+            if (value == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return value;
+        }
+        
+        // A batch read shares one set of values
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            Map<String, Number> values = values();
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                Object value = attribute(attribute, values);
+                if (value != null) {
+                    list.add(new Attribute(attribute, value));
+                }
+            }
+            return list;
+        }
+        
+        private static Object attribute(String attribute, Map<String, Number> values) {
+            if (attribute.equals("Json")) {
+                return toJson();
+            }
+            if (attribute.equals("Text")) {
+                return toText();
+            }
+            return values.get(attribute);
+        }
+        
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+        }
+        
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+        
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException("No operations: " + actionName);
+        }
+        
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            for (Map.Entry<String, Number> value : values().entrySet()) {
+                attributes.add(new MBeanAttributeInfo(value.getKey(), value.getValue().getClass().getName(),
+                    value.getKey(), true, false, false));
+            }
+            attributes.add(new MBeanAttributeInfo("Json", String.class.getName(), "All metrics as JSON", true, false, false));
+            attributes.add(new MBeanAttributeInfo("Text", String.class.getName(), "All metrics as a text table", true, false, false));
+            return new MBeanInfo(Metrics.class.getName(), "MindfulMoments hot-path metrics",
+                attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+    }
+}
+
+// Load Generator
+// Simulates many concurrent synthetic users going through onboarding, check-ins,
+// journaling, dashboard views and suggestions via the headless API, one thread
+// (virtual where available) per user, and reports throughput, latency
+// percentiles per operation and heap growth.
+class LoadGenerator {
+    enum Operation { ONBOARDING, CHECK_IN, JOURNAL, DASHBOARD, SUGGESTIONS }
+    
+    private static final String[] TAGS = {
+        "grateful", "overwhelmed", "hopeful", "frustrated", "energetic", "tired", "calm", "lonely"
+    };
+    
+    private final WellnessApi api;
+    private final int users;
+    private final long durationMillis;
+    private final EnumMap<Operation, LatencyHistogram> latencies;
+    
+    public LoadGenerator(WellnessApi api, int users, long durationMillis) {
+        this.api = api;
+        this.users = users;
+        this.durationMillis = durationMillis;
+        this.latencies = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new LatencyHistogram());
+        }
+    }
+    
+    public void run(PrintStream out) throws InterruptedException {
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        
+        ExecutorService executor = ThreadSupport.newThreadPerTaskExecutor("load-user");
+        for (int i = 0; i < users; i++) {
+            final int userNumber = i;
+            executor.execute(() -> simulateUser(userNumber, deadline));
+        }
+        executor.shutdown();
+        executor.awaitTermination(durationMillis + 60_000, TimeUnit.MILLISECONDS);
+        long elapsedNanos = System.nanoTime() - start;
+        long heapAfter = usedHeap();
+        
+        out.printf("Load test: %d users for %.1fs on %s threads%n", users, elapsedNanos / 1e9,
+            ThreadSupport.virtualThreadsAvailable() ? "virtual" : "platform");
+        out.printf("%-12s %10s %12s %10s %10s %10s%n", "operation", "count", "ops/s", "p50 us", "p99 us", "max us");
+        long total = 0;
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = latencies.get(operation);
+            long count = histogram.getCount();
+            total += count;
+            out.printf("%-12s %10d %12.0f %10.1f %10.1f %10.1f%n", operation.name().toLowerCase(), count,
+                count * 1e9 / elapsedNanos, histogram.getPercentileNanos(50) / 1e3,
+                histogram.getPercentileNanos(99) / 1e3, histogram.getMaxNanos() / 1e3);
+        }
+        out.printf("Total throughput: %.0f ops/s%n", total * 1e9 / elapsedNanos);
+        out.printf("Heap: %.1f MB before, %.1f MB after (%+.1f MB)%n",
+            heapBefore / 1048576.0, heapAfter / 1048576.0, (heapAfter - heapBefore) / 1048576.0);
+    }
+    
+    private void simulateUser(int userNumber, long deadline) {
+        Random random = new Random(userNumber);
+        PrintStream discard = new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+            
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+        MoodType[] moods = MoodType.values();
+        
+        long started = System.nanoTime();
+        User user = api.onboard("Load User " + userNumber);
+        latencies.get(Operation.ONBOARDING).record(System.nanoTime() - started);
+        
+        while (System.nanoTime() < deadline) {
+            int roll = random.nextInt(100);
+            started = System.nanoTime();
+            Operation operation;
+            if (roll < 40) {
+                operation = Operation.CHECK_IN;
+                api.checkInAsync(user, moods[random.nextInt(moods.length)], 1 + random.nextInt(10),
+                    TAGS[random.nextInt(TAGS.length)] + "," + TAGS[random.nextInt(TAGS.length)], "Synthetic check-in");
+            } else if (roll < 55) {
+                operation = Operation.JOURNAL;
+                api.writeJournalEntry(user, "", "Synthetic journal entry about sleep and work", TAGS[random.nextInt(TAGS.length)]);
+            } else if (roll < 80) {
+                operation = Operation.DASHBOARD;
+                api.renderDashboard(user, discard);
+            } else {
+                operation = Operation.SUGGESTIONS;
+                api.getSuggestions(user);
+            }
+            latencies.get(operation).record(System.nanoTime() - started);
+        }
+    }
+    
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
+
+// HTTP Server
+// Serves the WellnessApi as JSON over the JDK's built-in HTTP server, one
+// virtual thread per request where the JVM has them. Connections are HTTP/1.1
+// keep-alive (pipelined requests are answered in order), every response carries
+// a Content-Length, and request bodies above MAX_BODY_BYTES are refused with 413.
+//   POST /users                     {"name"}                       -> the new user
+//   GET  /users?prefix=an                                          -> matching users
+//   POST /users/{id}/checkins       {"mood","intensity","tags","notes"} -> suggestions
+//   POST /users/{id}/journal        {"title","content","tags"}     -> 201
+//   GET  /users/{id}/dashboard                                     -> dashboard JSON
+//   GET  /users/{id}/suggestions                                   -> suggestions
+//   GET  /users/{id}/chart?range=week|month|year|all               -> mood series
+class WellnessHttpServer {
+    static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final int BACKLOG = 4096;
+    
+    private final WellnessApi api;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    
+    // Idle keep-alive limits and Nagle are JDK-wide settings read once, when the
+    // first server starts; see MentalHealthApp.configureHttpServer
+    public WellnessHttpServer(WellnessApi api, int port) throws IOException {
+        this.api = api;
+        this.server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        this.executor = ThreadSupport.newThreadPerTaskExecutor("http");
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+    
+    public void start() {
+        server.start();
+    }
+    
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+    
+    // Waits up to delaySeconds for requests in progress, then closes every connection
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            route(exchange);
+        } catch (HttpError e) {
+            sendJson(exchange, e.status, errorJson(e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            // Bad field values, including those rejected by the services
+            sendJson(exchange, 400, errorJson(e.getMessage()));
+        } catch (RuntimeException e) {
+            sendJson(exchange, 500, errorJson("Internal error"));
+            System.err.println("Request " + exchange.getRequestURI() + " failed: " + e);
+        } finally {
+            exchange.close();
+        }
+    }
+    
+    private void route(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().split("/");
+        if (path.length < 2 || !path[1].equals("users")) {
+            throw new HttpError(404, "Not found");
+        }
+        
+        if (path.length == 2) {
+            if (method.equals("POST")) {
+                Map<String, Object> body = readJsonBody(exchange);
+                User user = api.onboard(SimpleJson.requireString(body, "name"));
+                sendJson(exchange, 201, appendUser(new StringBuilder(), user).toString());
+            } else if (method.equals("GET")) {
+                String prefix = queryParameter(exchange, "prefix");
+                StringBuilder json = new StringBuilder("{\"users\":[");
+                List<User> matches = api.getDataManager().getDirectory().findByNamePrefix(prefix == null ? "" : prefix, 100);
+                for (int i = 0; i < matches.size(); i++) {
+                    appendUser(json.append(i == 0 ? "" : ","), matches.get(i));
+                }
+                sendJson(exchange, 200, json.append("]}").toString());
+            } else {
+                throw new HttpError(405, "Use GET or POST");
+            }
+            return;
+        }
+        
+        User user = api.getDataManager().getDirectory().get(path[2]);
+        if (user == null) {
+            throw new HttpError(404, "Unknown user: " + path[2]);
+        }
+        String action = path.length == 4 ? path[3] : "";
+        switch (method + " " + action) {
+            case "POST checkins": {
+                Map<String, Object> body = readJsonBody(exchange);
+                MoodType mood;
+                try {
+                    mood = MoodType.valueOf(SimpleJson.requireString(body, "mood"));
+                } catch (IllegalArgumentException e) {
+                    throw new HttpError(400, "mood must be one of " + Arrays.toString(MoodType.values()));
+                }
+                int intensity = SimpleJson.optionalInt(body, "intensity", 5);
+                if (intensity < 1 || intensity > 10) {
+                    throw new HttpError(400, "intensity must be between 1 and 10");
+                }
+                List<String> suggestions = api.checkIn(user, mood, intensity,
+                    SimpleJson.optionalString(body, "tags", ""), SimpleJson.optionalString(body, "notes", ""));
+                sendJson(exchange, 200, suggestionsJson(suggestions));
+                break;
+            }
+            case "POST journal": {
+                Map<String, Object> body = readJsonBody(exchange);
+                JournalEntry entry = api.writeJournalEntry(user, SimpleJson.optionalString(body, "title", ""),
+                    SimpleJson.requireString(body, "content"), SimpleJson.optionalString(body, "tags", ""));
+                StringBuilder json = new StringBuilder("{\"title\":");
+                SimpleJson.appendString(json, entry.getTitle());
+                json.append(",\"timestamp\":");
+                SimpleJson.appendString(json, entry.getTimestamp().toString());
+                sendJson(exchange, 201, json.append('}').toString());
+                break;
+            }
+            case "GET dashboard":
+                api.renderDashboard(user, DashboardRenderer.JSON, rendered -> send(exchange, 200, rendered));
+                break;
+            case "GET suggestions":
+                sendJson(exchange, 200, suggestionsJson(api.getSuggestions(user)));
+                break;
+            case "GET chart": {
+                String range = queryParameter(exchange, "range");
+                ChartRange chartRange;
+                try {
+                    chartRange = range == null || range.equals("all") ? ChartRange.ALL_TIME
+                        : ChartRange.valueOf(range.toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    throw new HttpError(400, "range must be week, month, year or all");
+                }
+                sendJson(exchange, 200, chartJson(api.getMoodChart(user, chartRange)));
+                break;
+            }
+            default:
+                throw new HttpError(404, "Not found");
+        }
+    }
+    
+    private static Map<String, Object> readJsonBody(HttpExchange exchange) throws IOException {
+        String declared = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (declared != null && Long.parseLong(declared.trim()) > MAX_BODY_BYTES) {
+            throw new HttpError(413, "Request body is larger than " + MAX_BODY_BYTES + " bytes");
+        }
+        // Chunked bodies carry no length up front, so the limit is also enforced while reading
+        ByteArrayOutputStream body = new ByteArrayOutputStream(declared == null ? 256 : Integer.parseInt(declared.trim()));
+        byte[] chunk = new byte[4096];
+        InputStream in = exchange.getRequestBody();
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            if (body.size() + read > MAX_BODY_BYTES) {
+                throw new HttpError(413, "Request body is larger than " + MAX_BODY_BYTES + " bytes");
+            }
+            body.write(chunk, 0, read);
+        }
+        return SimpleJson.parseObject(new String(body.toByteArray(), StandardCharsets.UTF_8));
+    }
+    
+    private static String queryParameter(HttpExchange exchange, String name) throws UnsupportedEncodingException {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0 && pair.substring(0, equals).equals(name)) {
+                return URLDecoder.decode(pair.substring(equals + 1), "UTF-8");
+            }
+        }
+        return null;
+    }
+    
+    private static StringBuilder appendUser(StringBuilder json, User user) {
+        json.append("{\"userId\":");
+        SimpleJson.appendString(json, user.getUserId());
+        json.append(",\"name\":");
+        SimpleJson.appendString(json, user.getName());
+        json.append(",\"joined\":");
+        SimpleJson.appendString(json, user.getJoinDate().toString());
+        return json.append('}');
+    }
+    
+    private static String suggestionsJson(List<String> suggestions) {
+        StringBuilder json = new StringBuilder("{\"suggestions\":[");
+        for (int i = 0; i < suggestions.size(); i++) {
+            SimpleJson.appendString(json.append(i == 0 ? "" : ","), suggestions.get(i));
+        }
+        return json.append("]}").toString();
+    }
+    
+    private static String chartJson(MoodSeries series) {
+        StringBuilder json = new StringBuilder("{\"resolution\":");
+        SimpleJson.appendString(json, series.getResolution().name());
+        json.append(",\"checkIns\":").append(series.getCheckInCount());
+        json.append(",\"averageMood\":").append(series.getAverageMood());
+        json.append(",\"slopePerDay\":").append(series.getSlopePerDay());
+        json.append(",\"points\":[");
+        List<MoodRollup> points = series.getPoints();
+        for (int i = 0; i < points.size(); i++) {
+            MoodRollup point = points.get(i);
+            json.append(i == 0 ? "{\"start\":" : ",{\"start\":");
+            SimpleJson.appendString(json, point.getStart().toString());
+            json.append(",\"count\":").append(point.getCount());
+            json.append(",\"averageMood\":").append(point.getAverageMood());
+            json.append(",\"minMood\":").append(point.getMinMood());
+            json.append(",\"maxMood\":").append(point.getMaxMood());
+            json.append(",\"averageIntensity\":").append(point.getAverageIntensity());
+            json.append(",\"minIntensity\":").append(point.getMinIntensity());
+            json.append(",\"maxIntensity\":").append(point.getMaxIntensity());
+            json.append(",\"moods\":{");
+            boolean first = true;
+            for (MoodType mood : MoodType.values()) {
+                if (point.getMoodCount(mood) > 0) {
+                    json.append(first ? "\"" : ",\"").append(mood.name()).append("\":").append(point.getMoodCount(mood));
+                    first = false;
+                }
+            }
+            json.append("}}");
+        }
+        return json.append("]}").toString();
+    }
+    
+    private static String errorJson(String message) {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        SimpleJson.appendString(json, message);
+        return json.append('}').toString();
+    }
+    
+    private static void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+        send(exchange, status, json.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    // A fixed Content-Length keeps the connection reusable for the next request
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+    
+    // Writes a rendered dashboard straight from its buffer
+    private static void send(HttpExchange exchange, int status, DashboardBuffer body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.size());
+        try (OutputStream out = exchange.getResponseBody()) {
+            body.writeTo(out);
+        }
+    }
+    
+    private static class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        final int status;
+        
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
+
+// Simple JSON
+// Just enough JSON for the server's request bodies: one flat object whose
+// values are strings, numbers, booleans or null.
+final class SimpleJson {
+    private SimpleJson() {
+    }
+    
+    // Throws IllegalArgumentException describing the first problem found
+    static Map<String, Object> parseObject(String text) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        int[] position = { skipWhitespace(text, 0) };
+        expect(text, position, '{');
+        if (peek(text, position) == '}') {
+            position[0]++;
+        } else {
+            while (true) {
+                String key = readString(text, position);
+                expect(text, position, ':');
+                fields.put(key, readValue(text, position));
+                char next = peek(text, position);
+                position[0]++;
+                if (next == '}') {
+                    break;
+                }
+                if (next != ',') {
+                    throw new IllegalArgumentException("Expected , or } at offset " + (position[0] - 1));
+                }
+            }
+        }
+        if (skipWhitespace(text, position[0]) != text.length()) {
+            throw new IllegalArgumentException("Unexpected content after the JSON object");
+        }
+        return fields;
+    }
+    
+    static String requireString(Map<String, Object> fields, String name) {
+        Object value = fields.get(name);
+        if (!(value instanceof String)) {
+            throw new IllegalArgumentException("\"" + name + "\" must be a string");
+        }
+        return (String) value;
+    }
+    
+    static String optionalString(Map<String, Object> fields, String name, String defaultValue) {
+        return fields.get(name) == null ? defaultValue : requireString(fields, name);
+    }
+    
+    static int optionalInt(Map<String, Object> fields, String name, int defaultValue) {
+        Object value = fields.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (!(value instanceof Number)) {
+            throw new IllegalArgumentException("\"" + name + "\" must be a number");
+        }
+        return ((Number) value).intValue();
+    }
+    
+    static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+    
+    private static Object readValue(String text, int[] position) {
+        char c = peek(text, position);
+        if (c == '"') {
+            return readString(text, position);
+        }
+        if (c == '{' || c == '[') {
+            throw new IllegalArgumentException("Nested objects and arrays are not supported");
+        }
+        int start = position[0];
+        while (position[0] < text.length() && ",} \t\r\n".indexOf(text.charAt(position[0])) < 0) {
+            position[0]++;
+        }
+        String literal = text.substring(start, position[0]);
+        switch (literal) {
+            case "true":
+                return Boolean.TRUE;
+            case "false":
+                return Boolean.FALSE;
+            case "null":
+                return null;
+            default:
+                try {
+                    return literal.contains(".") || literal.contains("e") || literal.contains("E")
+                        ? (Object) Double.valueOf(literal) : (Object) Long.valueOf(literal);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid value at offset " + start + ": " + literal);
+                }
+        }
+    }
+    
+    private static String readString(String text, int[] position) {
+        expect(text, position, '"');
+        StringBuilder value = new StringBuilder();
+        int i = position[0];
+        while (true) {
+            if (i >= text.length()) {
+                throw new IllegalArgumentException("Unterminated string");
+            }
+            char c = text.charAt(i++);
+            if (c == '"') {
+                break;
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (i >= text.length()) {
+                throw new IllegalArgumentException("Unterminated string");
+            }
+            char escaped = text.charAt(i++);
+            switch (escaped) {
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'u':
+                    if (i + 4 > text.length()) {
+                        throw new IllegalArgumentException("Truncated \\u escape");
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(text.substring(i, i + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid \\u escape at offset " + i);
+                    }
+                    i += 4;
+                    break;
+                default:
+                    value.append(escaped); // \" \\ \/
+            }
+        }
+        position[0] = i;
+        return value.toString();
+    }
+    
+    private static void expect(String text, int[] position, char expected) {
+        if (peek(text, position) != expected) {
+            throw new IllegalArgumentException("Expected " + expected + " at offset " + position[0]);
+        }
+        position[0]++;
+    }
+    
+    // Skips whitespace and returns the next character, or 0 at the end
+    private static char peek(String text, int[] position) {
+        position[0] = skipWhitespace(text, position[0]);
+        return position[0] < text.length() ? text.charAt(position[0]) : 0;
+    }
+    
+    private static int skipWhitespace(String text, int position) {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
 }
 
-class JournalEntry {
-    private LocalDateTime timestamp;
-    private String content;
-    private List<String> tags;
-    private String title;
+// HTTP Load Client
+// Drives a WellnessHttpServer over raw keep-alive sockets, one thread per
+// connection, writing pipelineDepth requests back to back before reading their
+// responses. Reports sustained requests per second and latency percentiles.
+class HttpLoadClient {
+    private static final String[] TAGS = { "grateful", "tired", "calm", "hopeful", "lonely" };
     
-    public JournalEntry(String title, String content, List<String> tags) {
-        this.timestamp = LocalDateTime.now();
-        this.title = title;
-        this.content = content;
-        this.tags = new ArrayList<>(tags);
+    private final String host;
+    private final int port;
+    private final int connections;
+    private final long durationMillis;
+    private final int pipelineDepth;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    
+    public HttpLoadClient(String host, int port, int connections, long durationMillis, int pipelineDepth) {
+        this.host = host;
+        this.port = port;
+        this.connections = connections;
+        this.durationMillis = durationMillis;
+        this.pipelineDepth = pipelineDepth;
     }
     
-    // Getters
-    public LocalDateTime getTimestamp() { return timestamp; }
-    public String getContent() { return content; }
-    public List<String> getTags() { return new ArrayList<>(tags); }
-    public String getTitle() { return title; }
-}
-
-// Data Storage and Management
-class DataManager {
-    private ArrayList<User> users;
-    private HashMap<String, ArrayList<MoodLog>> userMoodLogs;
-    private HashMap<String, ArrayList<JournalEntry>> userJournalEntries;
+    public void run(PrintStream out) throws IOException, InterruptedException {
+        List<String> userIds = onboardUsers(Math.min(connections, 1000));
+        
+        ExecutorService executor = ThreadSupport.newThreadPerTaskExecutor("http-client");
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        for (int i = 0; i < connections; i++) {
+            final int connection = i;
+            executor.execute(() -> runConnection(connection, userIds, deadline));
+        }
+        executor.shutdown();
+        executor.awaitTermination(durationMillis + 60_000, TimeUnit.MILLISECONDS);
+        long elapsedNanos = System.nanoTime() - start;
+        
+        long requests = latency.getCount();
+        out.printf("HTTP load: %d connections, pipeline depth %d, %.1fs on %s threads%n", connections, pipelineDepth,
+            elapsedNanos / 1e9, ThreadSupport.virtualThreadsAvailable() ? "virtual" : "platform");
+        out.printf("Requests: %d (%.0f req/s), errors: %d, reconnects: %d%n", requests, requests * 1e9 / elapsedNanos,
+            errors.sum(), reconnects.sum());
+        out.printf("Latency us: p50 %.1f, p99 %.1f, p99.9 %.1f, max %.1f%n", latency.getPercentileNanos(50) / 1e3,
+            latency.getPercentileNanos(99) / 1e3, latency.getPercentileNanos(99.9) / 1e3, latency.getMaxNanos() / 1e3);
+    }
     
-    public DataManager() {
-        this.users = new ArrayList<>();
-        this.userMoodLogs = new HashMap<>();
-        this.userJournalEntries = new HashMap<>();
+    private List<String> onboardUsers(int count) throws IOException {
+        List<String> userIds = new ArrayList<>(count);
+        try (Socket socket = new Socket(host, port)) {
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            for (int i = 0; i < count; i++) {
+                out.write(request("POST", "/users", "{\"name\":\"Load User " + i + "\"}"));
+                out.flush();
+                Response response = readResponse(in);
+                if (response == null || response.status != 201) {
+                    throw new IOException("Onboarding failed with status " + (response == null ? "EOF" : response.status));
+                }
+                userIds.add(SimpleJson.requireString(SimpleJson.parseObject(response.body), "userId"));
+            }
+        }
+        return userIds;
     }
     
-    public void createUser(User user) {
-        users.add(user);
-        userMoodLogs.put(user.getUserId(), new ArrayList<>());
-        userJournalEntries.put(user.getUserId(), new ArrayList<>());
+    private void runConnection(int connection, List<String> userIds, long deadline) {
+        Random random = new Random(connection);
+        MoodType[] moods = MoodType.values();
+        long[] sentAt = new long[pipelineDepth];
+        Socket socket = null;
+        try {
+            while (System.nanoTime() < deadline) {
+                if (socket == null) {
+                    socket = new Socket(host, port);
+                    socket.setTcpNoDelay(true);
+                }
+                OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+                InputStream in = new BufferedInputStream(socket.getInputStream());
+                try {
+                    while (System.nanoTime() < deadline) {
+                        for (int i = 0; i < pipelineDepth; i++) {
+                            String userId = userIds.get(random.nextInt(userIds.size()));
+                            int roll = random.nextInt(100);
+                            byte[] request;
+                            if (roll < 40) {
+                                request = request("POST", "/users/" + userId + "/checkins", "{\"mood\":\""
+                                    + moods[random.nextInt(moods.length)] + "\",\"intensity\":" + (1 + random.nextInt(10))
+                                    + ",\"tags\":\"" + TAGS[random.nextInt(TAGS.length)] + "\"}");
+                            } else if (roll < 70) {
+                                request = request("GET", "/users/" + userId + "/dashboard", null);
+                            } else {
+                                request = request("GET", "/users/" + userId + "/suggestions", null);
+                            }
+                            sentAt[i] = System.nanoTime();
+                            out.write(request);
+                        }
+                        out.flush();
+                        for (int i = 0; i < pipelineDepth; i++) {
+                            Response response = readResponse(in);
+                            if (response == null) {
+                                throw new EOFException("Server closed the connection");
+                            }
+                            latency.record(System.nanoTime() - sentAt[i]);
+                            if (response.status >= 300) {
+                                errors.increment();
+                            }
+                        }
+                    }
+                } catch (IOException e) {
+                    errors.increment();
+                    reconnects.increment();
+                    closeQuietly(socket);
+                    socket = null;
+                }
+            }
+        } catch (IOException e) {
+            errors.increment();
+        } finally {
+            closeQuietly(socket);
+        }
     }
     
-    public void addMoodLog(String userId, MoodLog moodLog) {
-        userMoodLogs.get(userId).add(moodLog);
+    private byte[] request(String method, String path, String body) {
+        byte[] content = body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+        StringBuilder head = new StringBuilder(128).append(method).append(' ').append(path).append(" HTTP/1.1\r\n")
+            .append("Host: ").append(host).append(':').append(port).append("\r\n");
+        if (body != null) {
+            head.append("Content-Type: application/json\r\nContent-Length: ").append(content.length).append("\r\n");
+        }
+        byte[] headBytes = head.append("\r\n").toString().getBytes(StandardCharsets.US_ASCII);
+        byte[] request = Arrays.copyOf(headBytes, headBytes.length + content.length);
+        System.arraycopy(content, 0, request, headBytes.length, content.length);
+        return request;
     }
     
-    public void addJournalEntry(String userId, JournalEntry entry) {
-        userJournalEntries.get(userId).add(entry);
+    // Null when the connection closed before a status line arrived
+    private static Response readResponse(InputStream in) throws IOException {
+        String statusLine = readLine(in);
+        if (statusLine == null) {
+            return null;
+        }
+        int status = Integer.parseInt(statusLine.split(" ")[1]);
+        int contentLength = 0;
+        String header;
+        while ((header = readLine(in)) != null && !header.isEmpty()) {
+            int colon = header.indexOf(':');
+            if (colon > 0 && header.substring(0, colon).equalsIgnoreCase("Content-Length")) {
+                contentLength = Integer.parseInt(header.substring(colon + 1).trim());
+            }
+        }
+        byte[] body = new byte[contentLength];
+        int read = 0;
+        while (read < contentLength) {
+            int n = in.read(body, read, contentLength - read);
+            if (n < 0) {
+                throw new EOFException("Truncated response body");
+            }
+            read += n;
+        }
+        return new Response(status, new String(body, StandardCharsets.UTF_8));
     }
     
-    public List<MoodLog> getMoodLogs(String userId) {
-        return new ArrayList<>(userMoodLogs.getOrDefault(userId, new ArrayList<>()));
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                int length = line.length();
+                return length > 0 && line.charAt(length - 1) == '\r' ? line.substring(0, length - 1) : line.toString();
+            }
+            line.append((char) c);
+        }
+        return line.length() == 0 ? null : line.toString();
     }
     
-    public List<JournalEntry> getJournalEntries(String userId) {
-        return new ArrayList<>(userJournalEntries.getOrDefault(userId, new ArrayList<>()));
+    private static void closeQuietly(Socket socket) {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // nothing left to clean up
+            }
+        }
     }
     
-    public List<MoodLog> getRecentMoodLogs(String userId, int days) {
-        List<MoodLog> allLogs = getMoodLogs(userId);
-        LocalDateTime cutoff = LocalDateTime.now().minusDays(days);
+    private static final class Response {
+        final int status;
+        final String body;
         
-        return allLogs.stream()
-            .filter(log -> log.getTimestamp().isAfter(cutoff))
-            .sorted((a, b) -> b.getTimestamp().compareTo(a.getTimestamp()))
-            .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
     }
 }
 
 // Onboarding Service
 class OnboardingService {
+    private final UserDirectory directory;
+    
+    public OnboardingService() {
+        this(new UserDirectory());
+    }
+    
+    // IDs are drawn from the directory the new users will be registered in
+    public OnboardingService(UserDirectory directory) {
+        this.directory = directory;
+    }
     
     public User conductOnboarding(Scanner scanner) {
         System.out.println("\n=== Welcome to MindfulMoments ===");
@@ -261,8 +7289,11 @@ class OnboardingService {
         System.out.println("Remember: This is a safe space for honest self-reflection.");
         System.out.println("The more genuine you are, the more helpful your insights will be.");
         
-        String userId = "user_" + System.currentTimeMillis();
-        return new User(userId, name);
+        return createUser(name);
+    }
+    
+    public User createUser(String name) {
+        return new User(directory.newUserId(), name);
     }
 }
 
@@ -296,26 +7327,31 @@ class MoodCheckInService {
         System.out.println("Examples: grateful, overwhelmed, hopeful, frustrated, energetic, tired");
         String emotionInput = scanner.nextLine().trim();
         
-        List<String> emotionTags = new ArrayList<>();
-        if (!emotionInput.isEmpty()) {
-            String[] tags = emotionInput.split(",");
-            for (String tag : tags) {
-                emotionTags.add(tag.trim().toLowerCase());
-            }
-        }
-        
         // Get optional notes
         System.out.println("Anything specific about today you'd like to note? (optional):");
         String notes = scanner.nextLine().trim();
         
         System.out.println("✓ Mood check-in complete! Thank you for taking time for yourself.");
         
-        return new MoodLog(selectedMood, emotionTags, notes, intensity);
+        return createMoodLog(selectedMood, intensity, emotionInput, notes);
+    }
+    
+    // emotionInput is the comma-separated tag list as typed by the user
+    public MoodLog createMoodLog(MoodType mood, int intensity, String emotionInput, String notes) {
+        Metrics.begin(Metrics.Operation.CHECK_IN);
+        try {
+            int[] emotionTags = TagDictionary.GLOBAL.parse(emotionInput, ",");
+            return new MoodLog(LocalDateTime.now(), mood, emotionTags, notes == null ? "" : notes.trim(),
+                Math.max(1, Math.min(10, intensity)));
+        } finally {
+            Metrics.end(Metrics.Operation.CHECK_IN);
+        }
     }
 }
 
 // Journaling Service
 class JournalingService {
+    private static final DateTimeFormatter TITLE_DATE_FORMAT = DateTimeFormatter.ofPattern("MMM dd, yyyy");
     private static final List<String> JOURNAL_PROMPTS = Arrays.asList(
         "What made you smile today?",
         "Describe a challenge you faced and how you handled it.",
@@ -347,9 +7383,6 @@ class JournalingService {
         
         System.out.print("Entry title (optional): ");
         String title = scanner.nextLine().trim();
-        if (title.isEmpty()) {
-            title = "Entry - " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("MMM dd, yyyy"));
-        }
         
         System.out.println("Write your thoughts (press Enter twice when finished):");
         StringBuilder content = new StringBuilder();
@@ -368,15 +7401,19 @@ class JournalingService {
         
         System.out.print("Add tags (comma-separated, optional): ");
         String tagInput = scanner.nextLine().trim();
-        List<String> tags = new ArrayList<>();
-        if (!tagInput.isEmpty()) {
-            String[] tagArray = tagInput.split(",");
-            for (String tag : tagArray) {
-                tags.add(tag.trim().toLowerCase());
-            }
+        
+        return createJournalEntry(title, content.toString(), tagInput);
+    }
+    
+    // tagInput is the comma-separated tag list as typed by the user
+    public JournalEntry createJournalEntry(String title, String content, String tagInput) {
+        String trimmedTitle = title == null ? "" : title.trim();
+        if (trimmedTitle.isEmpty()) {
+            trimmedTitle = "Entry - " + LocalDateTime.now().format(TITLE_DATE_FORMAT);
         }
         
-        return new JournalEntry(title, content.toString().trim(), tags);
+        int[] tags = TagDictionary.GLOBAL.parse(tagInput, ",");
+        return new JournalEntry(LocalDateTime.now(), trimmedTitle, content == null ? "" : content.trim(), tags);
     }
     
     private String getRandomPrompt() {
@@ -385,102 +7422,477 @@ class JournalingService {
     }
 }
 
-// Suggestion Engine
-class SuggestionEngine {
-    private static final Map<MoodType, List<String>> MOOD_BASED_SUGGESTIONS = new HashMap<>();
+// Suggestion Rules
+// Operator-editable rules, compiled once into a decision table. Each rule is
+// reduced to bitmasks over the latest check-in's mood and intensity, the trend
+// and whether journaling is behind; every combination of those resolves at
+// compile time to the rules that can apply, with the final list precomputed
+// when no tag condition is involved. Tag conditions add one bit per rule to a
+// cell-local index whose lists are built on first use, so evaluating is a few
+// array lookups and never allocates once warm.
+final class SuggestionRules {
+    static final String DEFAULT_SOURCE = String.join("\n",
+        "# One rule per line, most important first: conditions, then \"=>\" and the suggestion.",
+        "# All conditions must hold; a rule without conditions always applies.",
+        "#   mood=SAD,ANXIOUS   latest check-in of the last 7 days (NONE when there is none)",
+        "#   intensity=7-10     its intensity, a single value or a range",
+        "#   tag=tired,lonely   it carries any of these emotion tags",
+        "#   trend=DECLINING    INSUFFICIENT_DATA, IMPROVING, DECLINING or STABLE",
+        "#   journal=behind     fewer journal entries than check-ins in the last 7 days (or ok)",
+        "# The first <limit> matching rules are shown.",
+        "limit 4",
+        "",
+        "mood=ANXIOUS => 🧘 Try the 4-7-8 breathing technique: Inhale for 4, hold for 7, exhale for 8",
+        "mood=ANXIOUS => 📱 Consider a 5-minute guided meditation",
+        "mood=ANXIOUS => 🚶 Take a short walk outside if possible",
+        "mood=ANXIOUS => 📝 Write down what's making you feel anxious",
+        "mood=SAD => 🤗 Reach out to a friend or family member",
+        "mood=SAD => ☀️ Spend a few minutes in natural light",
+        "mood=SAD => 🎵 Listen to music that comforts you",
+        "mood=SAD => 💡 Do one small thing that usually brings you joy",
+        "mood=STRESSED => ⏰ Try the Pomodoro technique for your tasks",
+        "mood=STRESSED => 🛁 Take a warm shower or bath",
+        "mood=STRESSED => 🧘 Practice progressive muscle relaxation",
+        "mood=STRESSED => 📋 Make a priority list to organize your thoughts",
+        "mood=HAPPY => 📓 Write about what made you happy today",
+        "mood=HAPPY => 💌 Share your good mood with someone you care about",
+        "mood=HAPPY => 🎯 Use this energy to work on a personal goal",
+        "mood=HAPPY => 🙏 Take a moment to appreciate this feeling",
+        "mood=NEUTRAL => 🎨 Try a creative activity to spark some energy",
+        "mood=NEUTRAL => 📚 Read something interesting or inspiring",
+        "mood=NEUTRAL => 🏃 Do some light exercise to boost your mood",
+        "mood=NEUTRAL => 🧠 Practice mindfulness and present-moment awareness",
+        "mood=NONE,VERY_HAPPY,VERY_SAD,ANGRY,EXCITED,CALM => 🌅 Start your day with a few minutes of mindfulness",
+        "mood=NONE,VERY_HAPPY,VERY_SAD,ANGRY,EXCITED,CALM => 💧 Remember to stay hydrated throughout the day",
+        "mood=NONE,VERY_HAPPY,VERY_SAD,ANGRY,EXCITED,CALM => 📝 Consider keeping a gratitude journal",
+        "mood=NONE,VERY_HAPPY,VERY_SAD,ANGRY,EXCITED,CALM => 🚶 Take regular breaks to move your body",
+        "trend=DECLINING => 📈 I notice your mood has been lower recently. Consider scheduling time for self-care",
+        "trend=DECLINING => 💬 It might help to talk to someone you trust about how you're feeling",
+        "journal=behind => ✍️ Consider writing in your journal - it can help process your emotions");
     
-    static {
-        MOOD_BASED_SUGGESTIONS.put(MoodType.ANXIOUS, Arrays.asList(
-            "🧘 Try the 4-7-8 breathing technique: Inhale for 4, hold for 7, exhale for 8",
-            "📱 Consider a 5-minute guided meditation",
-            "🚶 Take a short walk outside if possible",
-            "📝 Write down what's making you feel anxious"
-        ));
-        
-        MOOD_BASED_SUGGESTIONS.put(MoodType.SAD, Arrays.asList(
-            "🤗 Reach out to a friend or family member",
-            "☀️ Spend a few minutes in natural light",
-            "🎵 Listen to music that comforts you",
-            "💡 Do one small thing that usually brings you joy"
-        ));
-        
-        MOOD_BASED_SUGGESTIONS.put(MoodType.STRESSED, Arrays.asList(
-            "⏰ Try the Pomodoro technique for your tasks",
-            "🛁 Take a warm shower or bath",
-            "🧘 Practice progressive muscle relaxation",
-            "📋 Make a priority list to organize your thoughts"
-        ));
-        
-        MOOD_BASED_SUGGESTIONS.put(MoodType.HAPPY, Arrays.asList(
-            "📓 Write about what made you happy today",
-            "💌 Share your good mood with someone you care about",
-            "🎯 Use this energy to work on a personal goal",
-            "🙏 Take a moment to appreciate this feeling"
-        ));
-        
-        MOOD_BASED_SUGGESTIONS.put(MoodType.NEUTRAL, Arrays.asList(
-            "🎨 Try a creative activity to spark some energy",
-            "📚 Read something interesting or inspiring",
-            "🏃 Do some light exercise to boost your mood",
-            "🧠 Practice mindfulness and present-moment awareness"
-        ));
+    private static final MoodType[] MOODS = MoodType.values();
+    private static final MoodTrend[] TRENDS = MoodTrend.values();
+    private static final int NO_MOOD = MOODS.length; // mood bit for "no check-in this week"
+    private static final int INTENSITIES = 11; // 1-10, and 0 when there is no check-in
+    private static final int MAX_TAGS = 64;
+    private static final int MAX_TAG_RULES_PER_CELL = 12;
+    private static final AtomicLong GENERATIONS = new AtomicLong();
+    static final SuggestionRules DEFAULT = parse(DEFAULT_SOURCE);
+    
+    private final long generation;
+    private final int ruleCount;
+    private final EnumMap<MoodType, Cell[]> byMood;
+    private final Cell[] withoutMood;
+    private final long[] tagBits; // bit of each tag referenced by a rule, by TagDictionary.GLOBAL ID
+    
+    private SuggestionRules(List<Rule> rules, int limit, long[] tagBits) {
+        this.generation = GENERATIONS.incrementAndGet();
+        this.ruleCount = rules.size();
+        this.tagBits = tagBits;
+        this.byMood = new EnumMap<>(MoodType.class);
+        Map<List<Rule>, Cell> interned = new HashMap<>();
+        for (MoodType mood : MOODS) {
+            byMood.put(mood, compileCells(rules, limit, mood.ordinal(), interned));
+        }
+        this.withoutMood = compileCells(rules, limit, NO_MOOD, interned);
     }
     
-    public List<String> generateSuggestions(User user, DataManager dataManager) {
-        List<String> suggestions = new ArrayList<>();
-        List<MoodLog> recentLogs = dataManager.getRecentMoodLogs(user.getUserId(), 7);
-        
-        if (recentLogs.isEmpty()) {
-            suggestions.addAll(getGeneralWellnessSuggestions());
-            return suggestions;
+    public static SuggestionRules load(Path file) throws IOException {
+        return parse(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    }
+    
+    // Throws IllegalArgumentException naming the offending line
+    public static SuggestionRules parse(String source) {
+        List<Rule> rules = new ArrayList<>();
+        Map<Integer, Integer> tagPositions = new HashMap<>(); // tag ID -> bit
+        int limit = 4;
+        String[] lines = source.split("\r?\n");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                if (line.startsWith("limit ")) {
+                    limit = Integer.parseInt(line.substring(6).trim());
+                    if (limit < 1) {
+                        throw new IllegalArgumentException("limit must be at least 1");
+                    }
+                    continue;
+                }
+                rules.add(parseRule(line, tagPositions));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Line " + (i + 1) + ": " + e.getMessage(), e);
+            }
         }
         
-        // Analyze recent mood patterns
-        MoodLog latestLog = recentLogs.get(0);
-        suggestions.addAll(MOOD_BASED_SUGGESTIONS.getOrDefault(
-            latestLog.getMood(), getGeneralWellnessSuggestions()));
-        
-        // Add trend-based suggestions
-        if (detectMoodDecline(recentLogs)) {
-            suggestions.add("📈 I notice your mood has been lower recently. Consider scheduling time for self-care");
-            suggestions.add("💬 It might help to talk to someone you trust about how you're feeling");
+        int maxTagId = -1;
+        for (int tagId : tagPositions.keySet()) {
+            maxTagId = Math.max(maxTagId, tagId);
+        }
+        long[] tagBits = new long[maxTagId + 1];
+        for (Map.Entry<Integer, Integer> tag : tagPositions.entrySet()) {
+            tagBits[tag.getKey()] = 1L << tag.getValue();
+        }
+        return new SuggestionRules(rules, limit, tagBits);
+    }
+    
+    public long getGeneration() { return generation; }
+    public int getRuleCount() { return ruleCount; }
+    
+    // latest is the newest check-in of the last 7 days, or null when there is none
+    public List<String> evaluate(MoodLog latest, MoodTrend trend, boolean journalBehind) {
+        Cell[] cells = latest == null ? withoutMood : byMood.get(latest.getMood());
+        int intensity = latest == null ? 0 : latest.getIntensityLevel();
+        Cell cell = cells[cellIndex(intensity, trend.ordinal(), journalBehind ? 1 : 0)];
+        if (cell.fixed != null) {
+            return cell.fixed;
         }
         
-        // Add consistency encouragement
-        long journalEntries = dataManager.getJournalEntries(user.getUserId()).size();
-        if (journalEntries < recentLogs.size()) {
-            suggestions.add("✍️ Consider writing in your journal - it can help process your emotions");
+        long tags = 0;
+        int tagCount = latest == null ? 0 : latest.getEmotionTagCount();
+        for (int i = 0; i < tagCount; i++) {
+            int tagId = latest.getEmotionTagId(i);
+            if (tagId < tagBits.length) {
+                tags |= tagBits[tagId];
+            }
+        }
+        int matched = 0;
+        for (int j = 0; j < cell.tagMasks.length; j++) {
+            if ((tags & cell.tagMasks[j]) != 0) {
+                matched |= 1 << j;
+            }
+        }
+        List<String> suggestions = cell.byTagMatch[matched];
+        if (suggestions == null) {
+            suggestions = cell.resolve(matched);
+            cell.byTagMatch[matched] = suggestions; // immutable, so a racing duplicate is harmless
+        }
+        return suggestions;
+    }
+    
+    private static int cellIndex(int intensity, int trend, int journal) {
+        return (intensity * TRENDS.length + trend) * 2 + journal;
+    }
+    
+    private static Cell[] compileCells(List<Rule> rules, int limit, int mood, Map<List<Rule>, Cell> interned) {
+        Cell[] cells = new Cell[INTENSITIES * TRENDS.length * 2];
+        for (int intensity = 0; intensity < INTENSITIES; intensity++) {
+            for (int trend = 0; trend < TRENDS.length; trend++) {
+                for (int journal = 0; journal < 2; journal++) {
+                    // Rules past the limit-th unconditional match can never be shown here
+                    List<Rule> candidates = new ArrayList<>();
+                    int unconditional = 0;
+                    for (Rule rule : rules) {
+                        if (unconditional == limit) {
+                            break;
+                        }
+                        if ((rule.moodMask & (1 << mood)) != 0 && (rule.intensityMask & (1 << intensity)) != 0
+                                && (rule.trendMask & (1 << trend)) != 0 && (rule.journalMask & (1 << journal)) != 0) {
+                            candidates.add(rule);
+                            if (rule.tagMask == 0) {
+                                unconditional++;
+                            }
+                        }
+                    }
+                    Cell cell = interned.get(candidates);
+                    if (cell == null) {
+                        cell = new Cell(candidates, limit);
+                        interned.put(candidates, cell);
+                    }
+                    cells[cellIndex(intensity, trend, journal)] = cell;
+                }
+            }
+        }
+        return cells;
+    }
+    
+    private static Rule parseRule(String line, Map<Integer, Integer> tagPositions) {
+        int arrow = line.indexOf("=>");
+        if (arrow < 0) {
+            throw new IllegalArgumentException("expected \"conditions => suggestion\"");
+        }
+        String text = line.substring(arrow + 2).trim();
+        if (text.isEmpty()) {
+            throw new IllegalArgumentException("missing suggestion text");
+        }
+        Rule rule = new Rule(text);
+        String conditions = line.substring(0, arrow).trim();
+        for (String condition : conditions.isEmpty() ? new String[0] : conditions.split("\\s+")) {
+            int equals = condition.indexOf('=');
+            if (equals < 0) {
+                throw new IllegalArgumentException("expected key=value but found " + condition);
+            }
+            String key = condition.substring(0, equals);
+            String[] values = condition.substring(equals + 1).split(",");
+            switch (key) {
+                case "mood":
+                    rule.moodMask = 0;
+                    for (String value : values) {
+                        rule.moodMask |= 1 << (value.equals("NONE") ? NO_MOOD : MoodType.valueOf(value).ordinal());
+                    }
+                    break;
+                case "intensity":
+                    rule.intensityMask = 0;
+                    for (String value : values) {
+                        int dash = value.indexOf('-');
+                        int from = Integer.parseInt(dash < 0 ? value : value.substring(0, dash));
+                        int to = Integer.parseInt(dash < 0 ? value : value.substring(dash + 1));
+                        if (from < 1 || to > 10 || from > to) {
+                            throw new IllegalArgumentException("intensity must be within 1-10: " + value);
+                        }
+                        for (int intensity = from; intensity <= to; intensity++) {
+                            rule.intensityMask |= 1 << intensity;
+                        }
+                    }
+                    break;
+                case "tag":
+                    for (String value : values) {
+                        int tagId = TagDictionary.GLOBAL.idOf(value.trim().toLowerCase());
+                        Integer position = tagPositions.get(tagId);
+                        if (position == null) {
+                            if (tagPositions.size() == MAX_TAGS) {
+                                throw new IllegalArgumentException("rules may refer to at most " + MAX_TAGS + " tags");
+                            }
+                            position = tagPositions.size();
+                            tagPositions.put(tagId, position);
+                        }
+                        rule.tagMask |= 1L << position;
+                    }
+                    break;
+                case "trend":
+                    rule.trendMask = 0;
+                    for (String value : values) {
+                        rule.trendMask |= 1 << MoodTrend.valueOf(value).ordinal();
+                    }
+                    break;
+                case "journal":
+                    rule.journalMask = 0;
+                    for (String value : values) {
+                        if (!value.equals("ok") && !value.equals("behind")) {
+                            throw new IllegalArgumentException("journal must be ok or behind: " + value);
+                        }
+                        rule.journalMask |= value.equals("ok") ? 1 : 2;
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown condition " + key);
+            }
         }
+        return rule;
+    }
+    
+    // Conditions as bitmasks; -1 (all bits) when the rule does not constrain that input
+    private static final class Rule {
+        final String text;
+        int moodMask = -1;
+        int intensityMask = -1;
+        int trendMask = -1;
+        int journalMask = -1;
+        long tagMask; // 0 when the rule has no tag condition
         
-        return suggestions.subList(0, Math.min(4, suggestions.size())); // Limit to 4 suggestions
+        Rule(String text) {
+            this.text = text;
+        }
     }
     
-    private boolean detectMoodDecline(List<MoodLog> recentLogs) {
-        if (recentLogs.size() < 3) return false;
+    // Rules that can apply to one mood/intensity/trend/journal combination
+    private static final class Cell {
+        final List<Rule> candidates;
+        final int limit;
+        final List<String> fixed; // the answer when no candidate has a tag condition
+        final long[] tagMasks; // tag condition of each candidate that has one, in order
+        final List<String>[] byTagMatch; // indexed by which of those conditions hold
         
-        double recent = recentLogs.subList(0, 2).stream()
-            .mapToInt(log -> log.getMood().getValue())
-            .average().orElse(0);
+        @SuppressWarnings("unchecked")
+        Cell(List<Rule> candidates, int limit) {
+            this.candidates = candidates;
+            this.limit = limit;
+            int tagRules = 0;
+            for (Rule rule : candidates) {
+                if (rule.tagMask != 0) {
+                    tagRules++;
+                }
+            }
+            if (tagRules > MAX_TAG_RULES_PER_CELL) {
+                throw new IllegalArgumentException("at most " + MAX_TAG_RULES_PER_CELL
+                    + " tag rules may apply to the same mood, intensity, trend and journal state");
+            }
+            this.tagMasks = new long[tagRules];
+            int j = 0;
+            for (Rule rule : candidates) {
+                if (rule.tagMask != 0) {
+                    tagMasks[j++] = rule.tagMask;
+                }
+            }
+            this.byTagMatch = tagRules == 0 ? null : (List<String>[]) new List<?>[1 << tagRules];
+            this.fixed = tagRules == 0 ? resolve(0) : null;
+        }
         
-        double older = recentLogs.subList(2, Math.min(5, recentLogs.size())).stream()
-            .mapToInt(log -> log.getMood().getValue())
-            .average().orElse(0);
+        List<String> resolve(int matched) {
+            List<String> suggestions = new ArrayList<>(limit);
+            int j = 0;
+            for (Rule rule : candidates) {
+                if (suggestions.size() == limit) {
+                    break;
+                }
+                if (rule.tagMask == 0 || (matched & (1 << j++)) != 0) {
+                    suggestions.add(rule.text);
+                }
+            }
+            return Collections.unmodifiableList(Arrays.asList(suggestions.toArray(new String[0])));
+        }
+    }
+}
+
+// Suggestion Engine
+class SuggestionEngine {
+    private static final int CACHE_SEGMENTS = 16;
+    private static final int DEFAULT_CACHE_CAPACITY = 1024;
+    private static final long DEFAULT_CACHE_TTL_MILLIS = 10 * 60 * 1000;
+    
+    // Results are cached per user and keyed on the user's data version and the
+    // rules generation, so a repeat request with no new check-ins, entries or
+    // rules is a map lookup. The TTL bounds staleness as old check-ins age out of
+    // the 7-day window.
+    private final SuggestionCache[] cacheSegments;
+    private final long cacheTtlNanos;
+    // Swapped whole on reload; a request reads it once and finishes on that table
+    private volatile SuggestionRules rules = SuggestionRules.DEFAULT;
+    
+    public SuggestionEngine() {
+        this(DEFAULT_CACHE_CAPACITY, DEFAULT_CACHE_TTL_MILLIS);
+    }
+    
+    public SuggestionEngine(int cacheCapacity, long cacheTtlMillis) {
+        this.cacheSegments = new SuggestionCache[CACHE_SEGMENTS];
+        for (int i = 0; i < CACHE_SEGMENTS; i++) {
+            cacheSegments[i] = new SuggestionCache(Math.max(1, cacheCapacity / CACHE_SEGMENTS));
+        }
+        this.cacheTtlNanos = TimeUnit.MILLISECONDS.toNanos(cacheTtlMillis);
+    }
+    
+    public List<String> generateSuggestions(User user, DataManager dataManager) {
+        Metrics.begin(Metrics.Operation.SUGGESTIONS);
+        try {
+            String userId = user.getUserId();
+            SuggestionRules current = rules;
+            long version = dataManager.getDataVersion(userId);
+            long now = System.nanoTime();
+            SuggestionCache segment = cacheSegments[(userId.hashCode() & 0x7FFFFFFF) % CACHE_SEGMENTS];
+            
+            synchronized (segment) {
+                CachedSuggestions cached = segment.get(userId);
+                if (cached != null && cached.version == version && cached.generation == current.getGeneration()
+                        && now - cached.createdAt < cacheTtlNanos) {
+                    return cached.suggestions;
+                }
+            }
+            
+            List<String> suggestions = computeSuggestions(user, dataManager, current);
+            synchronized (segment) {
+                segment.put(userId, new CachedSuggestions(version, current.getGeneration(), now, suggestions));
+            }
+            return suggestions;
+        } finally {
+            Metrics.end(Metrics.Operation.SUGGESTIONS);
+        }
+    }
+    
+    public SuggestionRules getRules() {
+        return rules;
+    }
+    
+    public void setRules(SuggestionRules rules) {
+        this.rules = rules;
+    }
+    
+    // Returns false, keeping the current rules, when the file cannot be read or parsed
+    public boolean reloadRules(Path file) {
+        try {
+            rules = SuggestionRules.load(file);
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Keeping the current suggestion rules; could not load " + file + ": " + e.getMessage());
+            return false;
+        }
+    }
+    
+    // Loads the rules now and again whenever the file's modification time changes.
+    // A version that fails to load is retried on every poll, since a file caught
+    // half-written can keep its modification time once complete; a missing file
+    // keeps the current rules.
+    public void watchRules(Path file, long pollMillis) {
+        long initial = modifiedTime(file);
+        long[] loadedVersion = { reloadRules(file) ? initial : Long.MIN_VALUE };
+        ScheduledExecutorService watcher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "suggestion-rules-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watcher.scheduleWithFixedDelay(() -> {
+            long modified = modifiedTime(file);
+            if (modified >= 0 && modified != loadedVersion[0] && reloadRules(file)) {
+                loadedVersion[0] = modified;
+            }
+        }, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    private static long modifiedTime(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+    
+    private List<String> computeSuggestions(User user, DataManager dataManager, SuggestionRules rules) {
+        List<MoodLog> recentLogs = dataManager.getRecentMoodLogs(user.getUserId(), 7);
+        MoodLog latestLog = recentLogs.isEmpty() ? null : recentLogs.get(0);
+        MoodTrend trend = dataManager.getTrend(user.getUserId()).getTrend();
+        boolean journalBehind = dataManager.getRecentJournalEntryCount(user.getUserId(), 7) < recentLogs.size();
+        return rules.evaluate(latestLog, trend, journalBehind);
+    }
+    
+    private static class CachedSuggestions {
+        final long version;
+        final long generation;
+        final long createdAt;
+        final List<String> suggestions;
         
-        return recent < older - 0.5; // Decline of more than 0.5 points
+        CachedSuggestions(long version, long generation, long createdAt, List<String> suggestions) {
+            this.version = version;
+            this.generation = generation;
+            this.createdAt = createdAt;
+            this.suggestions = suggestions;
+        }
     }
     
-    private List<String> getGeneralWellnessSuggestions() {
-        return Arrays.asList(
-            "🌅 Start your day with a few minutes of mindfulness",
-            "💧 Remember to stay hydrated throughout the day",
-            "📝 Consider keeping a gratitude journal",
-            "🚶 Take regular breaks to move your body"
-        );
+    // Access-ordered map that drops its least recently used user when full
+    private static class SuggestionCache extends LinkedHashMap<String, CachedSuggestions> {
+        private static final long serialVersionUID = 1L;
+        private final int capacity;
+        
+        SuggestionCache(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+        
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedSuggestions> eldest) {
+            return size() > capacity;
+        }
     }
 }
 
 // Dashboard Service
 class DashboardService {
+    // Buffers shared by every rendering thread, so thread-per-request callers
+    // reuse them too; a render finding the pool empty allocates its own and
+    // a buffer returned to a full pool is dropped
+    private static final int POOLED_BUFFERS = 64;
+    private static final BlockingQueue<DashboardBuffer> BUFFERS = new ArrayBlockingQueue<>(POOLED_BUFFERS);
+    
     private DataManager dataManager;
     
     public DashboardService(DataManager dataManager) {
@@ -488,100 +7900,167 @@ class DashboardService {
     }
     
     public void displayDashboard(User user) {
-        System.out.println("\n=== Your Wellness Dashboard ===");
-        System.out.println("Welcome back, " + user.getName() + "!");
-        
-        List<MoodLog> allMoodLogs = dataManager.getMoodLogs(user.getUserId());
-        List<JournalEntry> allJournalEntries = dataManager.getJournalEntries(user.getUserId());
+        displayDashboard(user, System.out);
+    }
+    
+    public void displayDashboard(User user, PrintStream out) {
+        try {
+            render(user, DashboardRenderer.TEXT, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // PrintStream reports errors through checkError instead
+        }
+    }
+    
+    // Receives a rendered dashboard; the buffer goes back to the pool on return
+    interface RenderedDashboard {
+        void send(DashboardBuffer rendered) throws IOException;
+    }
+    
+    // Renders the whole dashboard into a pooled buffer and hands it to out in one write
+    public void render(User user, DashboardRenderer renderer, OutputStream out) throws IOException {
+        render(user, renderer, rendered -> {
+            rendered.writeTo(out);
+            out.flush();
+        });
+    }
+    
+    // Renders into a pooled buffer and lets target write it, e.g. once its size is known
+    public void render(User user, DashboardRenderer renderer, RenderedDashboard target) throws IOException {
+        Metrics.begin(Metrics.Operation.DASHBOARD);
+        DashboardBuffer buffer = BUFFERS.poll();
+        if (buffer == null) {
+            buffer = new DashboardBuffer();
+        }
+        try {
+            buffer.reset();
+            renderer.render(buildView(user), buffer);
+            target.send(buffer);
+        } finally {
+            BUFFERS.offer(buffer);
+            Metrics.end(Metrics.Operation.DASHBOARD);
+        }
+    }
+    
+    DashboardView buildView(User user) {
+        // Aggregates are maintained on write, so none of this walks the history
+        MoodSummary summary = dataManager.getMoodSummary(user.getUserId());
+        int journalEntryCount = dataManager.getJournalEntryCount(user.getUserId());
+        StreakSummary streaks = dataManager.getStreaks(user.getUserId(), LocalDate.now());
+        MoodTrend trend = dataManager.getTrend(user.getUserId()).getTrend();
+        return new DashboardView(user.getName(), summary, streaks, journalEntryCount, trend);
+    }
+}
+
+// Everything a renderer needs, gathered once per dashboard
+class DashboardView {
+    private final String userName;
+    private final MoodSummary summary;
+    private final StreakSummary streaks;
+    private final int journalEntryCount;
+    private final MoodTrend trend;
+    
+    public DashboardView(String userName, MoodSummary summary, StreakSummary streaks, int journalEntryCount, MoodTrend trend) {
+        this.userName = userName;
+        this.summary = summary;
+        this.streaks = streaks;
+        this.journalEntryCount = journalEntryCount;
+        this.trend = trend;
+    }
+    
+    public String getUserName() { return userName; }
+    public MoodSummary getSummary() { return summary; }
+    public StreakSummary getStreaks() { return streaks; }
+    public int getJournalEntryCount() { return journalEntryCount; }
+    public MoodTrend getTrend() { return trend; }
+}
+
+// Dashboard Rendering
+interface DashboardRenderer {
+    DashboardRenderer TEXT = new TextDashboardRenderer();
+    DashboardRenderer JSON = new JsonDashboardRenderer();
+    DashboardRenderer BINARY = new BinaryDashboardRenderer();
+    
+    void render(DashboardView view, DashboardBuffer buffer);
+}
+
+// The console dashboard
+class TextDashboardRenderer implements DashboardRenderer {
+    @Override
+    public void render(DashboardView view, DashboardBuffer buffer) {
+        buffer.line().line("=== Your Wellness Dashboard ===");
+        buffer.append("Welcome back, ").append(view.getUserName()).line("!");
         
-        displayMoodSummary(allMoodLogs);
-        displayStreaks(allMoodLogs, allJournalEntries);
-        displayRecentTrends(dataManager.getRecentMoodLogs(user.getUserId(), 7));
-        displayEmotionInsights(allMoodLogs);
+        renderMoodSummary(view.getSummary(), buffer);
+        renderStreaks(view, buffer);
+        renderRecentTrends(view.getTrend(), buffer);
+        renderEmotionInsights(view.getSummary(), buffer);
     }
     
-    private void displayMoodSummary(List<MoodLog> moodLogs) {
-        System.out.println("\n📊 Mood Summary:");
-        if (moodLogs.isEmpty()) {
-            System.out.println("   No mood data yet. Start by logging your first mood!");
+    private void renderMoodSummary(MoodSummary summary, DashboardBuffer buffer) {
+        buffer.line().line("📊 Mood Summary:");
+        if (summary.getCheckInCount() == 0) {
+            buffer.line("   No mood data yet. Start by logging your first mood!");
             return;
         }
         
-        System.out.println("   Total check-ins: " + moodLogs.size());
+        buffer.append("   Total check-ins: ").append(summary.getCheckInCount()).line();
         
-        double averageMood = moodLogs.stream()
-            .mapToInt(log -> log.getMood().getValue())
-            .average().orElse(0);
-        
-        System.out.printf("   Average mood: %.1f/5 %s%n", 
-            averageMood, getMoodIndicator(averageMood));
+        double averageMood = summary.getAverageMood();
+        buffer.append("   Average mood: ").appendOneDecimal(averageMood).append("/5 ")
+            .line(getMoodIndicator(averageMood));
         
         // Most common mood
-        Map<MoodType, Long> moodFrequency = new HashMap<>();
-        for (MoodLog log : moodLogs) {
-            moodFrequency.merge(log.getMood(), 1L, Long::sum);
-        }
-        
-        MoodType mostCommon = moodFrequency.entrySet().stream()
-            .max(Map.Entry.comparingByValue())
-            .map(Map.Entry::getKey)
-            .orElse(null);
+        MoodType mostCommon = summary.getMostCommonMood();
         
         if (mostCommon != null) {
-            System.out.println("   Most common mood: " + mostCommon.getEmoji() + " " + mostCommon.getDisplayName());
+            buffer.append("   Most common mood: ").append(mostCommon.getEmoji()).append(" ")
+                .line(mostCommon.getDisplayName());
         }
     }
     
-    private void displayStreaks(List<MoodLog> moodLogs, List<JournalEntry> journalEntries) {
-        System.out.println("\n🔥 Your Streaks:");
-        System.out.println("   Mood check-ins: " + calculateStreak(moodLogs) + " days");
-        System.out.println("   Journal entries: " + journalEntries.size() + " total");
+    private void renderStreaks(DashboardView view, DashboardBuffer buffer) {
+        StreakSummary streaks = view.getStreaks();
+        buffer.line().line("🔥 Your Streaks:");
+        renderStreak("   Mood check-ins: ", streaks.getCurrentMoodStreak(), streaks.getLongestMoodStreak(), buffer);
+        renderStreak("   Journaling: ", streaks.getCurrentJournalStreak(), streaks.getLongestJournalStreak(), buffer);
+        buffer.append("   Journal entries: ").append(view.getJournalEntryCount()).line(" total");
     }
     
-    private void displayRecentTrends(List<MoodLog> recentLogs) {
-        System.out.println("\n📈 Recent Trends (Last 7 days):");
-        if (recentLogs.size() < 2) {
-            System.out.println("   Not enough data for trend analysis");
-            return;
-        }
-        
-        double recentAvg = recentLogs.subList(0, Math.min(3, recentLogs.size())).stream()
-            .mapToInt(log -> log.getMood().getValue())
-            .average().orElse(0);
-        
-        double olderAvg = recentLogs.subList(Math.min(3, recentLogs.size()), recentLogs.size()).stream()
-            .mapToInt(log -> log.getMood().getValue())
-            .average().orElse(0);
-        
-        if (recentAvg > olderAvg + 0.3) {
-            System.out.println("   📈 Your mood has been improving recently!");
-        } else if (recentAvg < olderAvg - 0.3) {
-            System.out.println("   📉 Your mood has been declining. Consider self-care activities.");
-        } else {
-            System.out.println("   😊 Your mood has been relatively stable.");
-        }
+    private void renderStreak(String label, int current, int longest, DashboardBuffer buffer) {
+        buffer.append(label).append(current).append(current == 1 ? " day" : " days")
+            .append(" (best: ").append(longest).line(")");
     }
     
-    private void displayEmotionInsights(List<MoodLog> moodLogs) {
-        System.out.println("\n🏷️  Emotion Insights:");
-        
-        Map<String, Integer> emotionFrequency = new HashMap<>();
-        for (MoodLog log : moodLogs) {
-            for (String emotion : log.getEmotionTags()) {
-                emotionFrequency.merge(emotion, 1, Integer::sum);
-            }
+    private void renderRecentTrends(MoodTrend trend, DashboardBuffer buffer) {
+        buffer.line().line("📈 Recent Trends (Last 7 days):");
+        switch (trend) {
+            case INSUFFICIENT_DATA:
+                buffer.line("   Not enough data for trend analysis");
+                break;
+            case IMPROVING:
+                buffer.line("   📈 Your mood has been improving recently!");
+                break;
+            case DECLINING:
+                buffer.line("   📉 Your mood has been declining. Consider self-care activities.");
+                break;
+            default:
+                buffer.line("   😊 Your mood has been relatively stable.");
         }
+    }
+    
+    private void renderEmotionInsights(MoodSummary summary, DashboardBuffer buffer) {
+        buffer.line().line("🏷️  Emotion Insights:");
         
-        if (emotionFrequency.isEmpty()) {
-            System.out.println("   Start adding emotion tags to see insights here!");
+        if (summary.getTopTagCount() == 0) {
+            buffer.line("   Start adding emotion tags to see insights here!");
             return;
         }
         
-        System.out.println("   Most tagged emotions:");
-        emotionFrequency.entrySet().stream()
-            .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
-            .limit(3)
-            .forEach(entry -> System.out.println("   • " + entry.getKey() + " (" + entry.getValue() + " times)"));
+        buffer.line("   Most tagged emotions:");
+        for (int rank = 0; rank < summary.getTopTagCount(); rank++) {
+            buffer.append("   • ").append(summary.getTopTag(rank)).append(" (")
+                .append(summary.getTopTagFrequency(rank)).line(" times)");
+        }
     }
     
     private String getMoodIndicator(double averageMood) {
@@ -590,11 +8069,219 @@ class DashboardService {
         if (averageMood >= 2.5) return "😐";
         return "💙";
     }
+}
+
+// One JSON object per dashboard, for API clients
+class JsonDashboardRenderer implements DashboardRenderer {
+    @Override
+    public void render(DashboardView view, DashboardBuffer buffer) {
+        MoodSummary summary = view.getSummary();
+        buffer.append("{\"user\":").appendJsonString(view.getUserName());
+        buffer.append(",\"checkIns\":").append(summary.getCheckInCount());
+        buffer.append(",\"averageMood\":").appendOneDecimal(summary.getAverageMood());
+        MoodType mostCommon = summary.getMostCommonMood();
+        buffer.append(",\"mostCommonMood\":");
+        if (mostCommon == null) {
+            buffer.append("null");
+        } else {
+            buffer.appendJsonString(mostCommon.name());
+        }
+        StreakSummary streaks = view.getStreaks();
+        buffer.append(",\"moodStreak\":").append(streaks.getCurrentMoodStreak());
+        buffer.append(",\"longestMoodStreak\":").append(streaks.getLongestMoodStreak());
+        buffer.append(",\"journalStreak\":").append(streaks.getCurrentJournalStreak());
+        buffer.append(",\"longestJournalStreak\":").append(streaks.getLongestJournalStreak());
+        buffer.append(",\"journalEntries\":").append(view.getJournalEntryCount());
+        buffer.append(",\"trend\":").appendJsonString(view.getTrend().name());
+        buffer.append(",\"topTags\":[");
+        for (int rank = 0; rank < summary.getTopTagCount(); rank++) {
+            if (rank > 0) {
+                buffer.append(",");
+            }
+            buffer.append("{\"tag\":").appendJsonString(summary.getTopTag(rank))
+                .append(",\"count\":").append(summary.getTopTagFrequency(rank)).append("}");
+        }
+        buffer.append("]}").line();
+    }
+}
+
+// Compact frame for clients that know the layout:
+// [version][name][int checkIns][short averageMood x100][byte mood ordinal or -1]
+// [int moodStreak][int longestMoodStreak][int journalStreak][int longestJournalStreak]
+// [int journalEntries][byte trend][byte tagCount]([tag][int count])*
+// Strings are written as [unsigned short length][UTF-8 bytes].
+class BinaryDashboardRenderer implements DashboardRenderer {
+    static final int FORMAT_VERSION = 2;
     
-    private int calculateStreak(List<MoodLog> moodLogs) {
-        if (moodLogs.isEmpty()) return 0;
-        
-        // Simplified streak calculation - in reality you'd check consecutive days
-        return Math.min(moodLogs.size(), 30); // Cap at 30 for display purposes
+    @Override
+    public void render(DashboardView view, DashboardBuffer buffer) {
+        MoodSummary summary = view.getSummary();
+        MoodType mostCommon = summary.getMostCommonMood();
+        buffer.writeByte(FORMAT_VERSION);
+        buffer.writeString(view.getUserName());
+        buffer.writeInt(summary.getCheckInCount());
+        buffer.writeShort((int) Math.round(summary.getAverageMood() * 100));
+        buffer.writeByte(mostCommon == null ? -1 : mostCommon.ordinal());
+        StreakSummary streaks = view.getStreaks();
+        buffer.writeInt(streaks.getCurrentMoodStreak());
+        buffer.writeInt(streaks.getLongestMoodStreak());
+        buffer.writeInt(streaks.getCurrentJournalStreak());
+        buffer.writeInt(streaks.getLongestJournalStreak());
+        buffer.writeInt(view.getJournalEntryCount());
+        buffer.writeByte(view.getTrend().ordinal());
+        buffer.writeByte(summary.getTopTagCount());
+        for (int rank = 0; rank < summary.getTopTagCount(); rank++) {
+            buffer.writeString(summary.getTopTag(rank));
+            buffer.writeInt(summary.getTopTagFrequency(rank));
+        }
+    }
+}
+
+// Growable byte buffer that encodes text straight to UTF-8, so rendering
+// allocates no intermediate strings or formatters
+class DashboardBuffer {
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+    
+    private byte[] bytes = new byte[1024];
+    private int size;
+    
+    public void reset() {
+        size = 0;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes, 0, size);
+    }
+    
+    public DashboardBuffer append(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                writeByte(c);
+            } else if (c < 0x800) {
+                ensureCapacity(2);
+                bytes[size++] = (byte) (0xC0 | (c >> 6));
+                bytes[size++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                ensureCapacity(4);
+                bytes[size++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[size++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                writeByte('?'); // unpaired surrogate, as String.getBytes would do
+            } else {
+                ensureCapacity(3);
+                bytes[size++] = (byte) (0xE0 | (c >> 12));
+                bytes[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[size++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return this;
+    }
+    
+    public DashboardBuffer append(long value) {
+        if (value < 0) {
+            writeByte('-');
+            if (value == Long.MIN_VALUE) {
+                return append("9223372036854775808");
+            }
+            value = -value;
+        }
+        long divisor = 1;
+        while (divisor <= value / 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            writeByte((int) ('0' + value / divisor % 10));
+        }
+        return this;
+    }
+    
+    // Same digits as %.1f for the ranges the dashboard shows
+    public DashboardBuffer appendOneDecimal(double value) {
+        long tenths = Math.round(Math.abs(value) * 10);
+        if (value < 0 && tenths != 0) {
+            writeByte('-');
+        }
+        append(tenths / 10);
+        writeByte('.');
+        writeByte((int) ('0' + tenths % 10));
+        return this;
+    }
+    
+    public DashboardBuffer appendJsonString(String text) {
+        writeByte('"');
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\' || c < 0x20) {
+                append(text.substring(start, i));
+                if (c == '"' || c == '\\') {
+                    writeByte('\\');
+                    writeByte(c);
+                } else {
+                    append("\\u00");
+                    writeByte(Character.forDigit(c >> 4, 16));
+                    writeByte(Character.forDigit(c & 0xF, 16));
+                }
+                start = i + 1;
+            }
+        }
+        append(start == 0 ? text : text.substring(start));
+        writeByte('"');
+        return this;
+    }
+    
+    public DashboardBuffer line(String text) {
+        return append(text).line();
+    }
+    
+    public DashboardBuffer line() {
+        ensureCapacity(LINE_SEPARATOR.length);
+        System.arraycopy(LINE_SEPARATOR, 0, bytes, size, LINE_SEPARATOR.length);
+        size += LINE_SEPARATOR.length;
+        return this;
+    }
+    
+    public void writeByte(int value) {
+        ensureCapacity(1);
+        bytes[size++] = (byte) value;
+    }
+    
+    public void writeShort(int value) {
+        ensureCapacity(2);
+        bytes[size++] = (byte) (value >> 8);
+        bytes[size++] = (byte) value;
+    }
+    
+    public void writeInt(int value) {
+        ensureCapacity(4);
+        bytes[size++] = (byte) (value >> 24);
+        bytes[size++] = (byte) (value >> 16);
+        bytes[size++] = (byte) (value >> 8);
+        bytes[size++] = (byte) value;
+    }
+    
+    public void writeString(String text) {
+        int lengthAt = size;
+        writeShort(0);
+        append(text);
+        int length = Math.min(size - lengthAt - 2, 0xFFFF);
+        size = lengthAt + 2 + length;
+        bytes[lengthAt] = (byte) (length >> 8);
+        bytes[lengthAt + 1] = (byte) length;
+    }
+    
+    private void ensureCapacity(int extra) {
+        if (size + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,98 @@
+// DashboardBuffer Tests
+// The buffer encodes text and numbers itself; its bytes must match what
+// String.getBytes, Long.toString and String.format would have produced.
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import org.junit.Test;
+
+public class DashboardBufferTest {
+    @Test
+    public void encodesTextAsUtf8() throws IOException {
+        for (String text : new String[] {
+                "", "plain ascii", "Zoë — ½ ∑", "日本語のテキスト", "emoji 😊📈🌱 and ☀️", "\u0000\u007f\u0080߿ࠀ￿",
+                "unpaired \ud83d high", "unpaired \ude0a low", "ends with high \ud83d" }) {
+            assertArrayEquals(text, text.getBytes(StandardCharsets.UTF_8), bytes(new DashboardBuffer().append(text)));
+        }
+    }
+    
+    @Test
+    public void growsPastItsInitialCapacity() throws IOException {
+        StringBuilder expected = new StringBuilder();
+        DashboardBuffer buffer = new DashboardBuffer();
+        for (int i = 0; i < 5000; i++) {
+            buffer.append("😊 line ").append(i).line();
+            expected.append("😊 line ").append(i).append(System.lineSeparator());
+        }
+        assertEquals(expected.toString(), new String(bytes(buffer), StandardCharsets.UTF_8));
+        assertEquals(bytes(buffer).length, buffer.size());
+        
+        buffer.reset();
+        assertEquals(0, buffer.size());
+        assertEquals("again", new String(bytes(buffer.append("again")), StandardCharsets.UTF_8));
+    }
+    
+    @Test
+    public void formatsWholeNumbersLikeLongToString() throws IOException {
+        long[] values = { 0, 1, -1, 9, 10, 99, 100, 12345, -12345, 1_000_000_007L, Integer.MAX_VALUE,
+            Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE / 10, 999_999_999_999_999_999L };
+        for (long value : values) {
+            assertEquals(Long.toString(value), text(new DashboardBuffer().append(value)));
+        }
+    }
+    
+    @Test
+    public void formatsOneDecimalLikeStringFormat() throws IOException {
+        // Every average mood the dashboard can show for up to 60 check-ins
+        for (int count = 1; count <= 60; count++) {
+            for (int sum = count; sum <= 10 * count; sum++) {
+                double average = (double) sum / count;
+                assertEquals(sum + "/" + count, String.format(Locale.ROOT, "%.1f", average),
+                    text(new DashboardBuffer().appendOneDecimal(average)));
+            }
+        }
+        for (double value : new double[] { 0, 0.05, 0.25, 0.35, 2.675, 9.95, 99.99, -1.25, -0.06 }) {
+            assertEquals(String.format(Locale.ROOT, "%.1f", value), text(new DashboardBuffer().appendOneDecimal(value)));
+        }
+        // No negative zero for values that round to it
+        assertEquals("0.0", text(new DashboardBuffer().appendOneDecimal(-0.04)));
+    }
+    
+    @Test
+    public void escapesJsonStrings() throws IOException {
+        String value = "say \"hi\" \\ path\nnext\ttab \u0001 é 🌱";
+        String json = "{\"value\":" + text(new DashboardBuffer().appendJsonString(value)) + "}";
+        assertEquals(value, SimpleJson.parseObject(json).get("value"));
+        assertEquals("\"\\u000a\\u001f\"", text(new DashboardBuffer().appendJsonString("\n\u001f")));
+    }
+    
+    @Test
+    public void writesLengthPrefixedStrings() throws IOException {
+        DashboardBuffer buffer = new DashboardBuffer();
+        buffer.writeString("Zoë");
+        buffer.writeInt(-2);
+        buffer.writeString("");
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes(buffer)));
+        assertEquals("Zoë", in.readUTF());
+        assertEquals(-2, in.readInt());
+        assertEquals("", in.readUTF());
+        assertEquals(-1, in.read());
+    }
+    
+    private static byte[] bytes(DashboardBuffer buffer) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        buffer.writeTo(out);
+        return out.toByteArray();
+    }
+    
+    private static String text(DashboardBuffer buffer) throws IOException {
+        return new String(bytes(buffer), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,215 @@
+// Data Export Tests
+// Exports a store and reads the file back, record for record, both from memory
+// and from disk for users whose history is not loaded, and checks that damaged
+// files are rejected rather than read as partial data.
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DataExportTest {
+    private static final LocalDateTime START = LocalDateTime.of(2025, 6, 1, 0, 0);
+    private static final MoodType[] MOODS = MoodType.values();
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void exportReadsBackEveryRecord() throws IOException {
+        DataManager dataManager = new DataManager();
+        fill(dataManager);
+        assertExportMatches(dataManager);
+    }
+    
+    @Test
+    public void usersOnDiskAreExportedWithoutLoadingThem() throws IOException {
+        Path directory = folder.newFolder("data").toPath();
+        DataManager writing = new DataManager(new PersistenceEngine(directory, 5, 64 * 1024));
+        fill(writing);
+        writing.close();
+        
+        DataManager dataManager = new DataManager(new PersistenceEngine(directory, 5, 64 * 1024), null, 1);
+        try {
+            dataManager.getMoodLogCount("user1");
+            Path file = folder.getRoot().toPath().resolve("disk.mmex");
+            new DataExporter(dataManager).export(file);
+            assertEquals(Collections.singletonList("user1"), dataManager.getResidentUserIds());
+            assertReadsBack(dataManager, file);
+        } finally {
+            dataManager.close();
+        }
+    }
+    
+    @Test
+    public void failedExportLeavesNoTemporaryFile() throws IOException {
+        DataManager dataManager = new DataManager();
+        fill(dataManager);
+        // A non-empty directory in the way makes the final move fail
+        Path file = folder.newFolder("taken.mmex").toPath();
+        Files.write(file.resolve("keep"), new byte[1]);
+        try {
+            new DataExporter(dataManager).export(file);
+            fail("Exported over a directory");
+        } catch (IOException expected) {
+        }
+        assertFalse(Files.exists(file.resolveSibling("taken.mmex.tmp")));
+    }
+    
+    @Test
+    public void truncatedExportIsRejected() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("export.mmex");
+        DataManager dataManager = new DataManager();
+        fill(dataManager);
+        new DataExporter(dataManager).export(file);
+        byte[] bytes = Files.readAllBytes(file);
+        
+        Path truncated = folder.getRoot().toPath().resolve("truncated.mmex");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 20));
+        assertRejected(truncated);
+        
+        Path corrupt = folder.getRoot().toPath().resolve("corrupt.mmex");
+        bytes[bytes.length / 2] ^= 0x55;
+        Files.write(corrupt, bytes);
+        assertRejected(corrupt);
+    }
+    
+    @Test
+    public void emptyStoreRoundTrips() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("empty.mmex");
+        new DataExporter(new DataManager()).export(file);
+        try (DataExportReader reader = new DataExportReader(file)) {
+            ExportReport read = reader.read(new Recorder());
+            assertEquals(0, read.getUsers());
+            assertEquals(0, read.getMoodLogs());
+            assertEquals(0, read.getJournalEntries());
+        }
+    }
+    
+    private void assertExportMatches(DataManager dataManager) throws IOException {
+        Path file = folder.getRoot().toPath().resolve("export.mmex");
+        ExportReport written = new DataExporter(dataManager).export(file);
+        ExportReport read = assertReadsBack(dataManager, file);
+        assertEquals(written.getUsers(), read.getUsers());
+        assertEquals(written.getMoodLogs(), read.getMoodLogs());
+        assertEquals(written.getJournalEntries(), read.getJournalEntries());
+        assertEquals(Files.size(file), written.getBytes());
+    }
+    
+    // Rows within a user are not in time order, so they are compared sorted.
+    // Check-in times are whole seconds; everything else round-trips exactly.
+    private static ExportReport assertReadsBack(DataManager dataManager, Path file) throws IOException {
+        Recorder recorder = new Recorder();
+        ExportReport read;
+        try (DataExportReader reader = new DataExportReader(file)) {
+            read = reader.read(recorder);
+        }
+        
+        List<String> users = new ArrayList<>();
+        for (User user : dataManager.getUsers()) {
+            users.add(user.getUserId() + "|" + user.getName() + "|" + user.getJoinDate());
+            
+            List<String> moodLogs = new ArrayList<>();
+            for (MoodLog moodLog : dataManager.getMoodLogs(user.getUserId())) {
+                moodLogs.add(describe(moodLog));
+            }
+            assertEquals(sorted(moodLogs), sorted(recorder.moodLogs.getOrDefault(user.getUserId(), new ArrayList<>())));
+            
+            List<String> entries = new ArrayList<>();
+            for (JournalEntry entry : dataManager.getJournalEntries(user.getUserId())) {
+                entries.add(describe(entry));
+            }
+            assertEquals(sorted(entries), sorted(recorder.journalEntries.getOrDefault(user.getUserId(), new ArrayList<>())));
+        }
+        assertEquals(sorted(users), sorted(recorder.users));
+        return read;
+    }
+    
+    // Enough check-ins for one user to span several blocks, a user with none,
+    // empty and multi-line notes, non-ASCII text, sub-second times and a late arrival
+    private static void fill(DataManager dataManager) {
+        Random random = new Random(7);
+        int[] sizes = { DataExporter.BLOCK_ROWS * 2 + 100, 0, 300 };
+        for (int u = 0; u < sizes.length; u++) {
+            String userId = "user" + u;
+            dataManager.createUser(new User(userId, "Üser " + u));
+            for (int i = 0; i < sizes[u]; i++) {
+                LocalDateTime timestamp = START.plusMinutes(i * 30L).plusNanos(i * 1_001L);
+                List<String> tags = new ArrayList<>();
+                for (int t = random.nextInt(4); t > 0; t--) {
+                    tags.add("tag" + random.nextInt(50) + (u == 2 ? "ü" : ""));
+                }
+                String notes = i % 3 == 0 ? "" : "note, \"quoted\"\n" + i;
+                dataManager.addMoodLog(userId, new MoodLog(timestamp, MOODS[random.nextInt(MOODS.length)], tags,
+                    notes, 1 + random.nextInt(10)));
+                if (i % 5 == 0) {
+                    dataManager.addJournalEntry(userId,
+                        new JournalEntry(timestamp, i % 10 == 0 ? "" : "Title " + i, "Content 日本 " + i, tags));
+                }
+            }
+            if (sizes[u] > 0) {
+                dataManager.addMoodLog(userId, new MoodLog(START.minusDays(100), MoodType.CALM,
+                    Collections.singletonList("late"), "late", 2));
+            }
+        }
+    }
+    
+    private static void assertRejected(Path file) {
+        try (DataExportReader reader = new DataExportReader(file)) {
+            reader.read(new Recorder());
+            fail("Read a damaged export: " + file.getFileName());
+        } catch (IOException expected) {
+        }
+    }
+    
+    private static List<String> sorted(List<String> values) {
+        List<String> copy = new ArrayList<>(values);
+        Collections.sort(copy);
+        return copy;
+    }
+    
+    private static String describe(MoodLog moodLog) {
+        return moodLog.getTimestamp().withNano(0) + "|" + moodLog.getMood() + "|" + moodLog.getIntensityLevel() + "|"
+            + moodLog.getEmotionTags() + "|" + moodLog.getNotes();
+    }
+    
+    private static String describe(JournalEntry entry) {
+        return entry.getTimestamp() + "|" + entry.getTitle() + "|" + entry.getContent() + "|"
+            + entry.getTags();
+    }
+    
+    private static class Recorder implements PersistenceEngine.ReplayHandler {
+        final List<String> users = new ArrayList<>();
+        final Map<String, List<String>> moodLogs = new HashMap<>();
+        final Map<String, List<String>> journalEntries = new HashMap<>();
+        
+        @Override
+        public void onUser(User user) {
+            users.add(user.getUserId() + "|" + user.getName() + "|" + user.getJoinDate());
+        }
+        
+        @Override
+        public void onMoodLog(String userId, MoodLog moodLog) {
+            moodLogs.computeIfAbsent(userId, id -> new ArrayList<>()).add(describe(moodLog));
+        }
+        
+        @Override
+        public void onJournalEntry(String userId, JournalEntry entry) {
+            journalEntries.computeIfAbsent(userId, id -> new ArrayList<>()).add(describe(entry));
+        }
+    }
+}
@@ -0,0 +1,163 @@
+// DataManager Concurrency Tests
+// Several threads write to users of their own, singly and in batches, while
+// other threads read; every user must end up with exactly their own records,
+// including when a small resident set forces histories to be evicted and
+// reloaded from the persistence log in the middle of the writes.
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DataManagerConcurrencyTest {
+    private static final int WRITERS = 8;
+    private static final int CHECK_INS_PER_WRITER = 2000;
+    private static final int BATCH_SIZE = 10;
+    private static final MoodType[] MOODS = MoodType.values();
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void concurrentWritesToDistinctUsersStaySeparate() throws Exception {
+        DataManager dataManager = new DataManager();
+        List<String> userIds = createUsers(dataManager);
+        
+        long[] moodSums = writeConcurrently(dataManager, userIds, true);
+        
+        for (int writer = 0; writer < WRITERS; writer++) {
+            assertUserHolds(dataManager, userIds.get(writer), writer, moodSums[writer]);
+        }
+    }
+    
+    @Test
+    public void concurrentWritesSurviveEvictionAndReopen() throws Exception {
+        Path directory = folder.newFolder("data").toPath();
+        DataManager dataManager = new DataManager(PersistenceEngine.open(directory), null, 2);
+        List<String> userIds = createUsers(dataManager);
+        
+        long[] moodSums = writeConcurrently(dataManager, userIds, false);
+        
+        assertTrue(dataManager.getResidentUserIds().size() <= 2 + WRITERS);
+        for (int writer = 0; writer < WRITERS; writer++) {
+            assertUserHolds(dataManager, userIds.get(writer), writer, moodSums[writer]);
+        }
+        dataManager.close();
+        
+        DataManager reopened = new DataManager(PersistenceEngine.open(directory), null, 2);
+        try {
+            for (int writer = 0; writer < WRITERS; writer++) {
+                assertUserHolds(reopened, userIds.get(writer), writer, moodSums[writer]);
+            }
+        } finally {
+            reopened.close();
+        }
+    }
+    
+    private static List<String> createUsers(DataManager dataManager) {
+        List<String> userIds = new ArrayList<>();
+        for (int writer = 0; writer < WRITERS; writer++) {
+            User user = new User("writer_" + writer, "Writer " + writer);
+            dataManager.createUser(user);
+            userIds.add(user.getUserId());
+        }
+        return userIds;
+    }
+    
+    // Each writer adds check-ins and journal entries to its own user, half of
+    // them in batches; a reader thread polls every user until the writers finish
+    private static long[] writeConcurrently(DataManager dataManager, List<String> userIds, boolean withReader)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        long[] moodSums = new long[WRITERS];
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int w = 0; w < WRITERS; w++) {
+                int writer = w;
+                writers.add(executor.submit(() -> {
+                    start.await();
+                    String userId = userIds.get(writer);
+                    LocalDateTime base = LocalDateTime.now().minusDays(30);
+                    List<String> tags = Collections.singletonList("writer" + writer);
+                    List<MoodLog> batch = new ArrayList<>();
+                    for (int i = 0; i < CHECK_INS_PER_WRITER; i++) {
+                        MoodType mood = MOODS[(i + writer) % MOODS.length];
+                        moodSums[writer] += mood.getValue();
+                        MoodLog moodLog = new MoodLog(base.plusMinutes(i), mood, tags, "", 1 + i % 10);
+                        if (i % 2 == 0) {
+                            dataManager.addMoodLog(userId, moodLog);
+                        } else {
+                            batch.add(moodLog);
+                            if (batch.size() == BATCH_SIZE) {
+                                dataManager.addMoodLogs(userId, batch);
+                                batch = new ArrayList<>();
+                            }
+                        }
+                        if (i % 100 == 0) {
+                            dataManager.addJournalEntry(userId,
+                                new JournalEntry(base.plusMinutes(i), "Entry " + i, "Written by " + writer, tags));
+                        }
+                    }
+                    dataManager.addMoodLogs(userId, batch);
+                    return null;
+                }));
+            }
+            Future<?> reader = executor.submit(() -> {
+                start.await();
+                while (withReader && writing.get()) {
+                    for (String userId : userIds) {
+                        int before = dataManager.getMoodLogCount(userId);
+                        dataManager.getRecentMoodLogs(userId, 7);
+                        dataManager.getMoodSummary(userId);
+                        assertTrue(dataManager.getMoodLogCount(userId) >= before);
+                    }
+                }
+                return null;
+            });
+            
+            start.countDown();
+            for (Future<?> writer : writers) {
+                writer.get(60, TimeUnit.SECONDS);
+            }
+            writing.set(false);
+            reader.get(60, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        return moodSums;
+    }
+    
+    private static void assertUserHolds(DataManager dataManager, String userId, int writer, long moodSum) {
+        List<MoodLog> moodLogs = dataManager.getMoodLogs(userId);
+        assertEquals(CHECK_INS_PER_WRITER, moodLogs.size());
+        assertEquals(CHECK_INS_PER_WRITER, dataManager.getMoodLogCount(userId));
+        for (MoodLog moodLog : moodLogs) {
+            assertEquals(Collections.singletonList("writer" + writer), moodLog.getEmotionTags());
+        }
+        
+        MoodSummary summary = dataManager.getMoodSummary(userId);
+        assertEquals(CHECK_INS_PER_WRITER, summary.getCheckInCount());
+        assertEquals((double) moodSum / CHECK_INS_PER_WRITER, summary.getAverageMood(), 1e-9);
+        
+        List<JournalEntry> entries = dataManager.getJournalEntries(userId);
+        assertEquals(CHECK_INS_PER_WRITER / 100, entries.size());
+        for (JournalEntry entry : entries) {
+            assertEquals("Written by " + writer, entry.getContent());
+        }
+    }
+}
@@ -0,0 +1,205 @@
+// PersistenceEngine Tests
+// Writes users and their history, reopens the directory and replays it,
+// both from the log alone and after the log has been appended to a snapshot.
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PersistenceEngineTest {
+    private static final LocalDateTime START = LocalDateTime.of(2026, 3, 1, 8, 30, 15, 123456789);
+    private static final MoodType[] MOODS = MoodType.values();
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void logReplaysEveryRecordInOrder() throws IOException {
+        Path directory = folder.newFolder("log").toPath();
+        List<String> written = new ArrayList<>();
+        PersistenceEngine engine = new PersistenceEngine(directory, 5, Long.MAX_VALUE);
+        User user = new User("user/1 é", "Ana Ñ", START);
+        engine.appendUser(user);
+        engine.appendUser(new User("user2", "Ben", START.plusDays(1)));
+        writeHistory(engine, user.getUserId(), 0, 200, written);
+        engine.close();
+        
+        assertFalse(hasFile(directory, ".snap"));
+        PersistenceEngine reopened = new PersistenceEngine(directory, 5, Long.MAX_VALUE);
+        try {
+            List<String> users = new ArrayList<>();
+            reopened.replayUsers(stored -> users.add(describe(stored)));
+            Collections.sort(users);
+            assertEquals(Arrays.asList(describe(new User("user/1 é", "Ana Ñ", START)),
+                describe(new User("user2", "Ben", START.plusDays(1)))), users);
+            assertEquals(written, replay(reopened, user.getUserId()));
+            assertEquals(Collections.emptyList(), replay(reopened, "user2"));
+        } finally {
+            reopened.close();
+        }
+    }
+    
+    @Test
+    public void snapshotAndLaterLogReplayTogether() throws IOException {
+        Path directory = folder.newFolder("snapshot").toPath();
+        List<String> written = new ArrayList<>();
+        PersistenceEngine engine = new PersistenceEngine(directory, 5, 2048);
+        engine.appendUser(new User("u1", "Cleo", START));
+        for (int round = 0; round < 10; round++) {
+            writeHistory(engine, "u1", round * 50, 50, written);
+            engine.sync();
+        }
+        engine.close();
+        assertTrue(hasFile(directory, ".snap"));
+        
+        // Records appended after the snapshot land in the new log generation
+        engine = new PersistenceEngine(directory, 5, 1L << 30);
+        assertEquals(written, replay(engine, "u1"));
+        writeHistory(engine, "u1", 500, 20, written);
+        engine.close();
+        
+        PersistenceEngine reopened = new PersistenceEngine(directory, 5, 1L << 30);
+        try {
+            assertEquals(written, replay(reopened, "u1"));
+        } finally {
+            reopened.close();
+        }
+    }
+    
+    @Test
+    public void unfinishedCompactionIsIgnored() throws IOException {
+        Path directory = folder.newFolder("torn").toPath();
+        List<String> written = new ArrayList<>();
+        PersistenceEngine engine = new PersistenceEngine(directory, 5, 2048);
+        engine.appendUser(new User("u1", "Eve", START));
+        for (int round = 0; round < 5; round++) {
+            writeHistory(engine, "u1", round * 50, 50, written);
+            engine.sync();
+        }
+        engine.close();
+        
+        // Records copied into the snapshot before a crash, ahead of its header update
+        Path snapshot = directory.resolve("u1.snap");
+        byte[] torn = new byte[700];
+        new Random(3).nextBytes(torn);
+        Files.write(snapshot, torn, StandardOpenOption.APPEND);
+        
+        engine = new PersistenceEngine(directory, 5, 2048);
+        assertEquals(written, replay(engine, "u1"));
+        for (int round = 5; round < 10; round++) {
+            writeHistory(engine, "u1", round * 50, 50, written);
+            engine.sync();
+        }
+        engine.close();
+        
+        PersistenceEngine reopened = new PersistenceEngine(directory, 5, 2048);
+        try {
+            assertEquals(written, replay(reopened, "u1"));
+        } finally {
+            reopened.close();
+        }
+    }
+    
+    @Test
+    public void replayWithoutCloseSeesPendingWrites() throws IOException {
+        Path directory = folder.newFolder("pending").toPath();
+        List<String> written = new ArrayList<>();
+        PersistenceEngine engine = new PersistenceEngine(directory, 60_000, Long.MAX_VALUE);
+        try {
+            engine.appendUser(new User("u1", "Dev", START));
+            writeHistory(engine, "u1", 0, 30, written);
+            assertEquals(written, replay(engine, "u1"));
+        } finally {
+            engine.close();
+        }
+    }
+    
+    // Appends count check-ins, some singly and some in batches, with a journal
+    // entry after every third, and records what a replay should produce
+    private static void writeHistory(PersistenceEngine engine, String userId, int from, int count, List<String> written) {
+        List<MoodLog> batch = new ArrayList<>();
+        for (int i = from; i < from + count; i++) {
+            MoodLog moodLog = new MoodLog(START.plusMinutes(i * 7L), MOODS[i % MOODS.length],
+                i % 4 == 0 ? Collections.<String>emptyList() : Arrays.asList("tag" + i % 5, "ü" + i % 3),
+                i % 2 == 0 ? "" : "note \"" + i + "\"\n日本", 1 + i % 10);
+            written.add(describe(moodLog));
+            if (i % 10 < 5) {
+                batch.add(moodLog);
+            } else {
+                flush(engine, userId, batch);
+                engine.appendMoodLog(userId, moodLog);
+            }
+            if (i % 3 == 0) {
+                flush(engine, userId, batch);
+                JournalEntry entry = new JournalEntry(START.plusMinutes(i * 7L + 1), "Title " + i, "Content " + i,
+                    Arrays.asList("journal", "t" + i % 4));
+                engine.appendJournalEntry(userId, entry);
+                written.add(describe(entry));
+            }
+        }
+        flush(engine, userId, batch);
+    }
+    
+    private static void flush(PersistenceEngine engine, String userId, List<MoodLog> batch) {
+        if (!batch.isEmpty()) {
+            engine.appendMoodLogs(userId, new ArrayList<>(batch));
+            batch.clear();
+        }
+    }
+    
+    private static List<String> replay(PersistenceEngine engine, String userId) throws IOException {
+        List<String> replayed = new ArrayList<>();
+        engine.replayUser(userId, new PersistenceEngine.ReplayHandler() {
+            @Override
+            public void onUser(User user) {
+            }
+            
+            @Override
+            public void onMoodLog(String id, MoodLog moodLog) {
+                assertEquals(userId, id);
+                replayed.add(describe(moodLog));
+            }
+            
+            @Override
+            public void onJournalEntry(String id, JournalEntry entry) {
+                assertEquals(userId, id);
+                replayed.add(describe(entry));
+            }
+        });
+        return replayed;
+    }
+    
+    private static boolean hasFile(Path directory, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.anyMatch(file -> file.getFileName().toString().endsWith(suffix));
+        }
+    }
+    
+    private static String describe(User user) {
+        return user.getUserId() + "|" + user.getName() + "|" + user.getJoinDate();
+    }
+    
+    private static String describe(MoodLog moodLog) {
+        return moodLog.getTimestamp() + "|" + moodLog.getMood() + "|" + moodLog.getIntensityLevel() + "|"
+            + moodLog.getEmotionTags() + "|" + moodLog.getNotes();
+    }
+    
+    private static String describe(JournalEntry entry) {
+        return entry.getTimestamp() + "|" + entry.getTitle() + "|" + entry.getContent() + "|" + entry.getTags();
+    }
+}
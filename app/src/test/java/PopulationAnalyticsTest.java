@@ -0,0 +1,87 @@
+// PopulationAnalytics Tests
+// The same check-ins analyzed from memory and from a persistent store where
+// most users are on disk and the rest have spilled history to cold segments.
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PopulationAnalyticsTest {
+    private static final int USERS = 6;
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void usersOnDiskAreAnalyzedWithoutLoadingThem() throws IOException {
+        DataManager inMemory = new DataManager();
+        fill(inMemory);
+        PopulationReport expected = new PopulationAnalytics(inMemory).analyze();
+        assertTrue(expected.getDecliningUserShare() > 0);
+        
+        Path directory = folder.newFolder("data").toPath();
+        DataManager writing = new DataManager(PersistenceEngine.open(directory.resolve("log")),
+            MoodSegmentStore.open(directory.resolve("segments"), 30, 8));
+        fill(writing);
+        writing.close();
+        
+        DataManager dataManager = new DataManager(PersistenceEngine.open(directory.resolve("log")),
+            MoodSegmentStore.open(directory.resolve("segments"), 30, 8), 2);
+        try {
+            dataManager.getMoodLogCount("user0");
+            PopulationReport report = new PopulationAnalytics(dataManager).analyze();
+            assertEquals(Collections.singletonList("user0"), dataManager.getResidentUserIds());
+            
+            assertEquals(expected.getUserCount(), report.getUserCount());
+            assertEquals(expected.getActiveUserCount(), report.getActiveUserCount());
+            assertEquals(expected.getCheckInCount(), report.getCheckInCount());
+            assertEquals(expected.getDecliningUserShare(), report.getDecliningUserShare(), 0);
+            for (MoodType mood : MoodType.values()) {
+                assertEquals(expected.getMoodCount(mood), report.getMoodCount(mood));
+            }
+            for (int hour = 0; hour < 24; hour++) {
+                assertEquals(expected.getCheckInsAtHour(hour), report.getCheckInsAtHour(hour));
+            }
+            for (int tag = 0; tag < 10; tag++) {
+                assertEquals(expected.getTagCount("tag" + tag), report.getTagCount("tag" + tag));
+            }
+        } finally {
+            dataManager.close();
+        }
+    }
+    
+    // A year of history per user, so older check-ins spill to segments, plus a
+    // last week that improves for odd users and declines for even ones
+    private static void fill(DataManager dataManager) {
+        Random random = new Random(11);
+        MoodType[] moods = MoodType.values().clone();
+        Arrays.sort(moods, Comparator.comparingInt(MoodType::getValue));
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        for (int u = 0; u < USERS; u++) {
+            String userId = "user" + u;
+            dataManager.createUser(new User(userId, "User " + u, now.minusDays(400)));
+            for (int i = 0; i < 2000; i++) {
+                List<String> tags = Arrays.asList("tag" + random.nextInt(10), "tag" + random.nextInt(10));
+                dataManager.addMoodLog(userId, new MoodLog(now.minusDays(365).plusHours(i * 4L),
+                    moods[random.nextInt(moods.length)], tags, "", 1 + random.nextInt(10)));
+            }
+            for (int day = 7; day > 0; day--) {
+                int step = u % 2 == 0 ? day : 8 - day;
+                MoodType mood = moods[Math.min(moods.length - 1, step * moods.length / 8)];
+                dataManager.addMoodLog(userId, new MoodLog(now.minusDays(day), mood,
+                    Collections.singletonList("tag" + day), "", 5));
+            }
+        }
+    }
+}
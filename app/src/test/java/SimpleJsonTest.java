@@ -0,0 +1,84 @@
+// SimpleJson Tests
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class SimpleJsonTest {
+    @Test
+    public void parsesEveryValueType() {
+        Map<String, Object> fields = SimpleJson.parseObject(
+            " {\"name\" : \"Ana\", \"count\":42,\"negative\":-7, \"ratio\":2.5,\"exponent\":1e3,"
+            + "\"yes\":true,\"no\":false,\"missing\":null}\n");
+        
+        assertEquals(Arrays.asList("name", "count", "negative", "ratio", "exponent", "yes", "no", "missing"),
+            new ArrayList<>(fields.keySet()));
+        assertEquals("Ana", fields.get("name"));
+        assertEquals(42L, fields.get("count"));
+        assertEquals(-7L, fields.get("negative"));
+        assertEquals(2.5, fields.get("ratio"));
+        assertEquals(1000.0, fields.get("exponent"));
+        assertEquals(Boolean.TRUE, fields.get("yes"));
+        assertEquals(Boolean.FALSE, fields.get("no"));
+        assertTrue(fields.containsKey("missing"));
+        assertNull(fields.get("missing"));
+    }
+    
+    @Test
+    public void emptyObject() {
+        assertTrue(SimpleJson.parseObject("{}").isEmpty());
+        assertTrue(SimpleJson.parseObject("  { }  ").isEmpty());
+    }
+    
+    @Test
+    public void decodesEscapes() {
+        Map<String, Object> fields = SimpleJson.parseObject(
+            "{\"text\":\"a\\\"b\\\\c\\/d\\n\\r\\t\\b\\f\\u00e9\\ud83c\\udf31\"}");
+        assertEquals("a\"b\\c/d\n\r\t\b\fé🌱", fields.get("text"));
+    }
+    
+    @Test
+    public void appendStringRoundTrips() {
+        String value = "quote \" backslash \\ newline \n tab \t control \u0001 unicode é 🌱";
+        StringBuilder json = new StringBuilder("{\"value\":");
+        SimpleJson.appendString(json, value);
+        json.append('}');
+        assertEquals(value, SimpleJson.parseObject(json.toString()).get("value"));
+    }
+    
+    @Test
+    public void typedAccessors() {
+        Map<String, Object> fields = SimpleJson.parseObject("{\"mood\":\"HAPPY\",\"intensity\":7,\"notes\":null}");
+        assertEquals("HAPPY", SimpleJson.requireString(fields, "mood"));
+        assertEquals(7, SimpleJson.optionalInt(fields, "intensity", 5));
+        assertEquals(5, SimpleJson.optionalInt(fields, "absent", 5));
+        assertEquals("", SimpleJson.optionalString(fields, "notes", ""));
+        assertRejected(() -> SimpleJson.requireString(fields, "intensity"));
+        assertRejected(() -> SimpleJson.requireString(fields, "absent"));
+        assertRejected(() -> SimpleJson.optionalInt(fields, "mood", 0));
+    }
+    
+    @Test
+    public void rejectsMalformedInput() {
+        for (String text : new String[] {
+                "", "[]", "{", "{\"a\":1", "{\"a\" 1}", "{\"a\":1,}", "{\"a\":1 \"b\":2}", "{a:1}",
+                "{\"a\":\"unterminated}", "{\"a\":\"\\u12\"}", "{\"a\":\"\\uzzzz\"}", "{\"a\":nope}",
+                "{\"a\":{\"b\":1}}", "{\"a\":[1]}", "{\"a\":1} trailing" }) {
+            assertRejected(() -> SimpleJson.parseObject(text));
+        }
+    }
+    
+    private static void assertRejected(Runnable parse) {
+        try {
+            parse.run();
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,36 @@
+// SuggestionEngine Tests
+import static org.junit.Assert.assertEquals;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class SuggestionEngineTest {
+    @Test
+    public void journalBehindCountsOnlyTheLastWeek() {
+        DataManager dataManager = new DataManager();
+        User user = new User("u1", "Ana");
+        dataManager.createUser(user);
+        SuggestionEngine engine = new SuggestionEngine();
+        engine.setRules(SuggestionRules.parse("journal=behind => write\n=> always"));
+        
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < 5; i++) {
+            dataManager.addJournalEntry(user.getUserId(),
+                new JournalEntry(now.minusDays(30).plusHours(i), "Old " + i, "Old entry", Collections.<String>emptyList()));
+        }
+        for (int i = 0; i < 3; i++) {
+            dataManager.addMoodLog(user.getUserId(),
+                new MoodLog(now.minusHours(i + 1), MoodType.CALM, Collections.<String>emptyList(), "", 5));
+        }
+        assertEquals(Arrays.asList("write", "always"), engine.generateSuggestions(user, dataManager));
+        
+        for (int i = 0; i < 3; i++) {
+            dataManager.addJournalEntry(user.getUserId(),
+                new JournalEntry(now.minusHours(i + 1), "New " + i, "New entry", Collections.<String>emptyList()));
+        }
+        assertEquals(Collections.singletonList("always"), engine.generateSuggestions(user, dataManager));
+    }
+}
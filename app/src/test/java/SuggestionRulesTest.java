@@ -0,0 +1,92 @@
+// SuggestionRules Tests
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SuggestionRulesTest {
+    private static final String RULES = String.join("\n",
+        "# comment lines and blank lines are ignored",
+        "limit 3",
+        "",
+        "mood=SAD intensity=8-10 => A",
+        "tag=tired,lonely => B",
+        "mood=SAD tag=calm => C",
+        " => D",
+        "intensity=1 => E",
+        "trend=DECLINING journal=behind => G",
+        "mood=NONE => H",
+        " => F");
+    
+    private static final SuggestionRules rules = SuggestionRules.parse(RULES);
+    
+    @Test
+    public void parsesRulesAndLimit() {
+        assertEquals(8, rules.getRuleCount());
+        assertTrue(SuggestionRules.parse("=> only").getGeneration() > rules.getGeneration());
+    }
+    
+    @Test
+    public void firstMatchingRulesUpToTheLimit() {
+        assertEquals(Arrays.asList("A", "B", "D"), rules.evaluate(checkIn(MoodType.SAD, 9, "tired"), MoodTrend.STABLE, false));
+        assertEquals(Arrays.asList("C", "D", "F"), rules.evaluate(checkIn(MoodType.SAD, 2, "calm"), MoodTrend.STABLE, false));
+        assertEquals(Arrays.asList("B", "D", "E"),
+            rules.evaluate(checkIn(MoodType.HAPPY, 1, "calm", "lonely"), MoodTrend.STABLE, false));
+        assertEquals(Arrays.asList("D", "F"), rules.evaluate(checkIn(MoodType.HAPPY, 5), MoodTrend.STABLE, false));
+    }
+    
+    @Test
+    public void trendJournalAndMissingCheckIn() {
+        assertEquals(Arrays.asList("D", "G", "F"), rules.evaluate(checkIn(MoodType.CALM, 5), MoodTrend.DECLINING, true));
+        assertEquals(Arrays.asList("D", "F"), rules.evaluate(checkIn(MoodType.CALM, 5), MoodTrend.DECLINING, false));
+        assertEquals(Arrays.asList("D", "G", "H"), rules.evaluate(null, MoodTrend.DECLINING, true));
+        assertEquals(Arrays.asList("D", "H", "F"), rules.evaluate(null, MoodTrend.INSUFFICIENT_DATA, false));
+    }
+    
+    @Test
+    public void repeatedEvaluationGivesTheSameAnswer() {
+        MoodLog latest = checkIn(MoodType.SAD, 9, "lonely");
+        List<String> first = rules.evaluate(latest, MoodTrend.STABLE, false);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(first, rules.evaluate(latest, MoodTrend.STABLE, false));
+        }
+    }
+    
+    @Test
+    public void defaultRulesCoverEveryMood() {
+        for (MoodType mood : MoodType.values()) {
+            List<String> suggestions = SuggestionRules.DEFAULT.evaluate(checkIn(mood, 5), MoodTrend.STABLE, false);
+            assertTrue(mood.name(), !suggestions.isEmpty() && suggestions.size() <= 4);
+        }
+    }
+    
+    @Test
+    public void invalidRulesNameTheLine() {
+        assertRejected("mood=FOO => x", "Line 1:");
+        assertRejected("=> ok\ntrend=UP => x", "Line 2:");
+        assertRejected("intensity=0-11 => x", "Line 1:");
+        assertRejected("mood=SAD", "Line 1:");
+        assertRejected("limit 0", "Line 1:");
+        assertRejected("colour=blue => x", "Line 1:");
+    }
+    
+    private static MoodLog checkIn(MoodType mood, int intensity, String... tags) {
+        return new MoodLog(LocalDateTime.of(2026, 1, 1, 9, 0), mood,
+            tags.length == 0 ? Collections.<String>emptyList() : Arrays.asList(tags), "", intensity);
+    }
+    
+    private static void assertRejected(String source, String messagePrefix) {
+        try {
+            SuggestionRules.parse(source);
+            fail("Parsed invalid rules: " + source);
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().startsWith(messagePrefix));
+        }
+    }
+}
@@ -0,0 +1,177 @@
+// Benchmark Fixture
+// Builds a synthetic user with a configurable history size and tag cardinality
+// and exposes the measured operations by name. Scaling benchmarks can also give
+// each of their threads a user of its own with the same history, and write
+// benchmarks append to a copy of the user that is rebuilt on request so the
+// history does not keep growing across iterations. The application classes live in
+// the default package, which JMH benchmark classes cannot import from, so the
+// benchmarks load this class by name and call it through java.util.function types.
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+public class BenchmarkFixture implements Function<String, Supplier<Object>>, AutoCloseable {
+    private static final int CHECK_INS_PER_DAY = 3;
+    
+    private final DataManager dataManager;
+    private final SuggestionEngine suggestionEngine;
+    // A zero TTL makes every request miss the cache and evaluate the rules
+    private final SuggestionEngine uncachedSuggestionEngine;
+    private final DashboardService dashboardService;
+    private final User user;
+    private final String[] tags;
+    private final Random random;
+    private final PrintStream originalOut;
+    private final int historySize;
+    // Per-thread users for the scaling benchmarks, each with its own random source
+    private final ThreadLocal<ThreadUser> threadUsers = new ThreadLocal<>();
+    private final AtomicInteger threadUserCount = new AtomicInteger();
+    private volatile DataManager writeStore;
+    private volatile Random writeRandom;
+    
+    public BenchmarkFixture(int historySize, int tagCardinality) {
+        this.dataManager = new DataManager();
+        this.suggestionEngine = new SuggestionEngine();
+        this.uncachedSuggestionEngine = new SuggestionEngine(1, 0);
+        this.dashboardService = new DashboardService(dataManager);
+        this.user = new User("bench_user", "Benchmark");
+        this.tags = new String[tagCardinality];
+        this.random = new Random(42);
+        this.historySize = historySize;
+        for (int i = 0; i < tagCardinality; i++) {
+            tags[i] = "tag" + i;
+        }
+        
+        dataManager.createUser(user);
+        seed(dataManager, user, random);
+        resetWriteStore();
+        
+        // The dashboard prints to System.out; keep that from flooding the benchmark output
+        this.originalOut = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+            
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+    }
+    
+    @Override
+    public Supplier<Object> apply(String operation) {
+        switch (operation) {
+            case "getRecentMoodLogs":
+                return () -> dataManager.getRecentMoodLogs(user.getUserId(), 7);
+            case "addMoodLog":
+                return () -> {
+                    writeStore.addMoodLog(user.getUserId(), randomMoodLog(writeRandom, LocalDateTime.now()));
+                    return user;
+                };
+            case "resetWriteStore":
+                return () -> {
+                    resetWriteStore();
+                    return user;
+                };
+            case "generateSuggestions":
+                return () -> suggestionEngine.generateSuggestions(user, dataManager);
+            case "generateSuggestionsUncached":
+                return () -> uncachedSuggestionEngine.generateSuggestions(user, dataManager);
+            case "displayDashboard":
+                return () -> {
+                    dashboardService.displayDashboard(user);
+                    return user;
+                };
+            case "renderDashboardJson":
+                return () -> renderDashboard(DashboardRenderer.JSON);
+            case "renderDashboardBinary":
+                return () -> renderDashboard(DashboardRenderer.BINARY);
+            case "createThreadUser":
+                return () -> {
+                    ThreadUser own = new ThreadUser(threadUserCount.incrementAndGet());
+                    dataManager.createUser(own.user);
+                    seed(dataManager, own.user, own.random);
+                    threadUsers.set(own);
+                    return own.user;
+                };
+            case "getRecentMoodLogsThreadUser":
+                return () -> dataManager.getRecentMoodLogs(threadUsers.get().user.getUserId(), 7);
+            case "addMoodLogThreadUser":
+                return () -> {
+                    ThreadUser own = threadUsers.get();
+                    dataManager.addMoodLog(own.user.getUserId(), randomMoodLog(own.random, LocalDateTime.now()));
+                    return own.user;
+                };
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + operation);
+        }
+    }
+    
+    @Override
+    public void close() {
+        System.setOut(originalOut);
+    }
+    
+    private Object renderDashboard(DashboardRenderer renderer) {
+        try {
+            dashboardService.render(user, renderer, System.out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return user;
+    }
+    
+    // A fresh store holding the benchmark user with its seeded history
+    private void resetWriteStore() {
+        DataManager store = new DataManager();
+        Random storeRandom = new Random(42);
+        store.createUser(user);
+        seed(store, user, storeRandom);
+        writeRandom = storeRandom;
+        writeStore = store;
+    }
+    
+    private void seed(DataManager store, User target, Random random) {
+        LocalDateTime start = LocalDateTime.now().minusDays(historySize / CHECK_INS_PER_DAY + 1);
+        for (int i = 0; i < historySize; i++) {
+            LocalDateTime timestamp = start.plusMinutes(i * (24L * 60 / CHECK_INS_PER_DAY));
+            store.addMoodLog(target.getUserId(), randomMoodLog(random, timestamp));
+            if (i % CHECK_INS_PER_DAY == 0) {
+                store.addJournalEntry(target.getUserId(),
+                    new JournalEntry(timestamp, "Entry " + i, "Synthetic journal entry " + i, randomTags(random)));
+            }
+        }
+    }
+    
+    private MoodLog randomMoodLog(Random random, LocalDateTime timestamp) {
+        MoodType[] moods = MoodType.values();
+        return new MoodLog(timestamp, moods[random.nextInt(moods.length)], randomTags(random),
+            random.nextInt(4) == 0 ? "Synthetic note" : "", 1 + random.nextInt(10));
+    }
+    
+    private List<String> randomTags(Random random) {
+        int count = random.nextInt(4);
+        List<String> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(tags[random.nextInt(tags.length)]);
+        }
+        return result;
+    }
+    
+    private static class ThreadUser {
+        final User user;
+        final Random random;
+        
+        ThreadUser(int index) {
+            this.user = new User("bench_thread_user_" + index, "Benchmark thread " + index);
+            this.random = new Random(42 + index);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+// Export Benchmark
+// Compares DataExporter against a naive CSV dump of the same users built from
+// getMoodLogs/getJournalEntries, and times reading the export back. Rates are
+// given in MB/s of the CSV rendering of the data, so both sides are measured
+// against the same amount of content, alongside the bytes each actually wrote.
+//
+//   java -cp target/benchmarks.jar ExportBenchmark [users] [checkInsPerUser]
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.*;
+
+public class ExportBenchmark {
+    private static final String[] TAGS = {
+        "grateful", "overwhelmed", "hopeful", "frustrated", "energetic", "tired",
+        "lonely", "calm", "motivated", "restless", "content", "worried"
+    };
+    private static final int RUNS = 5;
+    
+    public static void main(String[] args) throws IOException {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int checkIns = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        DataManager dataManager = populate(users, checkIns);
+        Path directory = Files.createTempDirectory("export-benchmark");
+        Path exportFile = directory.resolve("export.mmex");
+        Path csvFile = directory.resolve("export.csv");
+        
+        long csvBytes = 0;
+        long csvNanos = Long.MAX_VALUE;
+        long exportNanos = Long.MAX_VALUE;
+        long readNanos = Long.MAX_VALUE;
+        ExportReport report = null;
+        for (int run = 0; run <= RUNS; run++) { // run 0 warms up
+            long started = System.nanoTime();
+            dumpCsv(dataManager, csvFile);
+            long csvRun = System.nanoTime() - started;
+            
+            report = new DataExporter(dataManager).export(exportFile);
+            
+            started = System.nanoTime();
+            try (DataExportReader reader = new DataExportReader(exportFile)) {
+                reader.read(new CountingHandler());
+            }
+            long readRun = System.nanoTime() - started;
+            
+            if (run > 0) {
+                csvNanos = Math.min(csvNanos, csvRun);
+                exportNanos = Math.min(exportNanos, report.getElapsedNanos());
+                readNanos = Math.min(readNanos, readRun);
+            }
+            csvBytes = Files.size(csvFile);
+        }
+        
+        System.out.printf("Users: %,d, check-ins: %,d, journal entries: %,d (best of %d runs)%n",
+            report.getUsers(), report.getMoodLogs(), report.getJournalEntries(), RUNS);
+        print("CSV dump", csvBytes, csvNanos, csvBytes);
+        print("Columnar export", report.getBytes(), exportNanos, csvBytes);
+        print("Columnar read", report.getBytes(), readNanos, csvBytes);
+        
+        Files.delete(exportFile);
+        Files.delete(csvFile);
+        Files.delete(directory);
+    }
+    
+    private static void print(String label, long bytes, long nanos, long csvBytes) {
+        System.out.printf("%-16s %,13d bytes %8.1f ms %8.1f MB/s%n", label, bytes, nanos / 1e6, csvBytes / 1e6 / (nanos / 1e9));
+    }
+    
+    // Check-ins every eight hours with notes on about one in four, and a journal entry every third check-in
+    private static DataManager populate(int users, int checkIns) {
+        DataManager dataManager = new DataManager();
+        Random random = new Random(42);
+        MoodType[] moods = MoodType.values();
+        LocalDateTime start = LocalDateTime.now().minusDays(checkIns / 3 + 1);
+        for (int u = 0; u < users; u++) {
+            String userId = "user_" + u;
+            dataManager.createUser(new User(userId, "User " + u));
+            List<MoodLog> moodLogs = new ArrayList<>(checkIns);
+            List<JournalEntry> entries = new ArrayList<>();
+            for (int i = 0; i < checkIns; i++) {
+                LocalDateTime timestamp = start.plusMinutes(i * 480L + random.nextInt(60));
+                List<String> tags = new ArrayList<>();
+                for (int t = random.nextInt(4); t > 0; t--) {
+                    tags.add(TAGS[random.nextInt(TAGS.length)]);
+                }
+                String notes = random.nextInt(4) == 0 ? "Slept badly, long day at work #" + i : "";
+                moodLogs.add(new MoodLog(timestamp, moods[random.nextInt(moods.length)], tags, notes, 1 + random.nextInt(10)));
+                if (i % 3 == 0) {
+                    entries.add(new JournalEntry(timestamp, "Entry " + i, "Today I wrote about how the day went, " + i, tags));
+                }
+            }
+            dataManager.addMoodLogs(userId, moodLogs);
+            dataManager.addJournalEntries(userId, entries);
+        }
+        return dataManager;
+    }
+    
+    // The import format from the README, written the obvious way
+    private static void dumpCsv(DataManager dataManager, Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (User user : dataManager.getUsers()) {
+                out.write("user," + quote(user.getUserId()) + "," + quote(user.getName()) + "\n");
+                for (MoodLog moodLog : dataManager.getMoodLogs(user.getUserId())) {
+                    out.write("mood," + quote(user.getUserId()) + "," + moodLog.getTimestamp().withNano(0) + ","
+                        + moodLog.getMood() + "," + moodLog.getIntensityLevel() + ","
+                        + quote(String.join(";", moodLog.getEmotionTags())) + "," + quote(moodLog.getNotes()) + "\n");
+                }
+                for (JournalEntry entry : dataManager.getJournalEntries(user.getUserId())) {
+                    out.write("journal," + quote(user.getUserId()) + "," + entry.getTimestamp().withNano(0) + ","
+                        + quote(entry.getTitle()) + "," + quote(String.join(";", entry.getTags())) + ","
+                        + quote(entry.getContent()) + "\n");
+                }
+            }
+        }
+    }
+    
+    private static String quote(String field) {
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0) {
+            return field;
+        }
+        return "\"" + field.replace("\"", "\"\"") + "\"";
+    }
+    
+    private static final class CountingHandler implements PersistenceEngine.ReplayHandler {
+        long records;
+        
+        @Override
+        public void onUser(User user) {
+            records++;
+        }
+        
+        @Override
+        public void onMoodLog(String userId, MoodLog moodLog) {
+            records++;
+        }
+        
+        @Override
+        public void onJournalEntry(String userId, JournalEntry entry) {
+            records++;
+        }
+    }
+}
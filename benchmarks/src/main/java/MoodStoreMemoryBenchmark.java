@@ -0,0 +1,75 @@
+// Mood Store Memory Benchmark
+// Compares heap bytes per check-in for MoodLog objects in a TimeIndexedLog
+// (the previous representation) against the ColumnarMoodStore.
+//
+//   java -cp target/benchmarks.jar MoodStoreMemoryBenchmark [checkIns]
+import java.util.*;
+import java.time.LocalDateTime;
+
+public class MoodStoreMemoryBenchmark {
+    private static final String[] TAGS = {
+        "grateful", "overwhelmed", "hopeful", "frustrated", "energetic", "tired",
+        "lonely", "calm", "motivated", "restless", "content", "worried"
+    };
+    
+    private static volatile Object sink;
+    
+    public static void main(String[] args) {
+        int checkIns = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        
+        long objectBytes = measure(() -> {
+            TimeIndexedLog<MoodLog> store = new TimeIndexedLog<>(MoodLog::getTimestamp);
+            fill(checkIns, store::append);
+            return store;
+        });
+        long columnarBytes = measure(() -> {
+            ColumnarMoodStore store = new ColumnarMoodStore();
+            fill(checkIns, store::append);
+            return store;
+        });
+        
+        System.out.printf("Check-ins:          %,d%n", checkIns);
+        System.out.printf("MoodLog objects:    %,d bytes (%.1f bytes/check-in)%n", objectBytes, (double) objectBytes / checkIns);
+        System.out.printf("Columnar store:     %,d bytes (%.1f bytes/check-in)%n", columnarBytes, (double) columnarBytes / checkIns);
+    }
+    
+    // Builds check-ins the way MoodCheckInService does: fresh tag strings per record,
+    // notes on roughly one check-in in four
+    private static void fill(int checkIns, java.util.function.Consumer<MoodLog> store) {
+        Random random = new Random(42);
+        MoodType[] moods = MoodType.values();
+        LocalDateTime start = LocalDateTime.now().minusDays(checkIns / 3 + 1);
+        for (int i = 0; i < checkIns; i++) {
+            List<String> tags = new ArrayList<>();
+            int tagCount = random.nextInt(4);
+            for (int t = 0; t < tagCount; t++) {
+                tags.add(new String(TAGS[random.nextInt(TAGS.length)].toCharArray()));
+            }
+            String notes = random.nextInt(4) == 0 ? "Slept badly, long day at work #" + i : "";
+            store.accept(new MoodLog(start.plusMinutes(i * 480L), moods[random.nextInt(moods.length)],
+                tags, notes, 1 + random.nextInt(10)));
+        }
+    }
+    
+    private static long measure(java.util.function.Supplier<Object> builder) {
+        long before = usedHeap();
+        Object retained = builder.get();
+        long after = usedHeap();
+        sink = retained; // keeps the store reachable until it has been measured
+        sink = null;
+        return after - before;
+    }
+    
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
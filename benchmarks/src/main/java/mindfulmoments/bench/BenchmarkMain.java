@@ -0,0 +1,129 @@
+package mindfulmoments.bench;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Runs JMH with allocation profiling and a JSON result file unless the caller
+// already chose a profiler or result format, so every run leaves a file that
+// can be compared against earlier versions. With --thread-sweep it runs
+// ConcurrentUsersBenchmark at 1, 2, 4, ... threads up to the number of cores and
+// prints throughput per thread count.
+public class BenchmarkMain {
+    private static final String THREAD_SWEEP = "--thread-sweep";
+    
+    public static void main(String[] args) throws Exception {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        boolean threadSweep = arguments.remove(THREAD_SWEEP);
+        if (!arguments.contains("-prof")) {
+            arguments.add("-prof");
+            arguments.add("gc");
+        }
+        if (!arguments.contains("-rf")) {
+            File resultDirectory = new File("results");
+            resultDirectory.mkdirs();
+            String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+            arguments.add("-rf");
+            arguments.add("json");
+            arguments.add("-rff");
+            arguments.add(new File(resultDirectory, "jmh-" + stamp + ".json").getPath());
+        }
+        if (threadSweep) {
+            sweepThreads(new CommandLineOptions(arguments.toArray(new String[0])));
+        } else {
+            org.openjdk.jmh.Main.main(arguments.toArray(new String[0]));
+        }
+    }
+    
+    // One JMH run per thread count, each with its own result file
+    private static void sweepThreads(CommandLineOptions options) throws Exception {
+        Map<Integer, Collection<RunResult>> runs = new LinkedHashMap<>();
+        for (int threads : threadCounts(Runtime.getRuntime().availableProcessors())) {
+            ChainedOptionsBuilder run = new OptionsBuilder()
+                .parent(options)
+                .include(ConcurrentUsersBenchmark.class.getName())
+                .threads(threads);
+            if (options.getBenchModes().isEmpty()) {
+                run.mode(Mode.Throughput);
+            }
+            if (options.getResult().hasValue()) {
+                run.result(withThreadCount(options.getResult().get(), threads));
+            }
+            runs.put(threads, new Runner(run.build()).run());
+        }
+        printThroughput(runs);
+    }
+    
+    private static List<Integer> threadCounts(int cores) {
+        List<Integer> counts = new ArrayList<>();
+        for (int threads = 1; threads < cores; threads *= 2) {
+            counts.add(threads);
+        }
+        counts.add(cores);
+        return counts;
+    }
+    
+    private static String withThreadCount(String file, int threads) {
+        int dot = file.lastIndexOf('.');
+        return dot > file.lastIndexOf(File.separatorChar)
+            ? file.substring(0, dot) + "-t" + threads + file.substring(dot)
+            : file + "-t" + threads;
+    }
+    
+    // One row per benchmark and parameter set, one column per thread count,
+    // with the speedup over the single-threaded run
+    private static void printThroughput(Map<Integer, Collection<RunResult>> runs) {
+        Map<String, Map<Integer, RunResult>> rows = new TreeMap<>();
+        for (Map.Entry<Integer, Collection<RunResult>> run : runs.entrySet()) {
+            for (RunResult result : run.getValue()) {
+                BenchmarkParams params = result.getParams();
+                if (params.getMode() != Mode.Throughput) {
+                    continue;
+                }
+                StringBuilder row = new StringBuilder(params.getBenchmark().substring(params.getBenchmark().lastIndexOf('.') + 1));
+                for (String key : params.getParamsKeys()) {
+                    row.append(' ').append(key).append('=').append(params.getParam(key));
+                }
+                rows.computeIfAbsent(row.toString(), name -> new TreeMap<>()).put(run.getKey(), result);
+            }
+        }
+        
+        System.out.println();
+        System.out.println("Throughput by thread count:");
+        StringBuilder header = new StringBuilder(String.format("%-64s", "benchmark"));
+        for (int threads : runs.keySet()) {
+            header.append(String.format(" %22s", threads + (threads == 1 ? " thread" : " threads")));
+        }
+        System.out.println(header);
+        for (Map.Entry<String, Map<Integer, RunResult>> row : rows.entrySet()) {
+            StringBuilder line = new StringBuilder(String.format("%-64s", row.getKey()));
+            RunResult single = row.getValue().get(1);
+            for (int threads : runs.keySet()) {
+                RunResult result = row.getValue().get(threads);
+                if (result == null) {
+                    line.append(String.format(" %22s", "-"));
+                    continue;
+                }
+                double score = result.getPrimaryResult().getScore();
+                String speedup = single == null ? "" : String.format(" (x%.2f)", score / single.getPrimaryResult().getScore());
+                line.append(String.format(" %22s", String.format("%.3f %s%s", score, result.getPrimaryResult().getScoreUnit(), speedup)));
+            }
+            System.out.println(line);
+        }
+    }
+}
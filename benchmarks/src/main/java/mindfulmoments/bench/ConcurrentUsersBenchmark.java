@@ -0,0 +1,57 @@
+package mindfulmoments.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// DataManager reads and writes from several threads at once, each on a user of
+// its own, so per-user locking should let throughput grow with the thread count.
+// It runs on every core by default; BenchmarkMain --thread-sweep runs it at 1, 2,
+// 4, ... threads and tabulates throughput per thread count.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+public class ConcurrentUsersBenchmark {
+    private Supplier<Object> getRecentMoodLogs;
+    private Supplier<Object> addMoodLog;
+    
+    @State(Scope.Thread)
+    public static class ThreadUser {
+        @Setup(Level.Trial)
+        public void setUp(Workload workload) {
+            workload.operation("createThreadUser").get();
+        }
+    }
+    
+    @Setup(Level.Trial)
+    public void setUp(Workload workload) {
+        getRecentMoodLogs = workload.operation("getRecentMoodLogsThreadUser");
+        addMoodLog = workload.operation("addMoodLogThreadUser");
+    }
+    
+    @Benchmark
+    public Object getRecentMoodLogs(ThreadUser user) {
+        return getRecentMoodLogs.get();
+    }
+    
+    @Benchmark
+    public Object addMoodLog(ThreadUser user) {
+        return addMoodLog.get();
+    }
+}
@@ -0,0 +1,50 @@
+package mindfulmoments.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DashboardServiceBenchmark {
+    private Supplier<Object> displayDashboard;
+    private Supplier<Object> renderDashboardJson;
+    private Supplier<Object> renderDashboardBinary;
+    
+    @Setup(Level.Trial)
+    public void setUp(Workload workload) {
+        displayDashboard = workload.operation("displayDashboard");
+        renderDashboardJson = workload.operation("renderDashboardJson");
+        renderDashboardBinary = workload.operation("renderDashboardBinary");
+    }
+    
+    @Benchmark
+    public Object displayDashboard() {
+        return displayDashboard.get();
+    }
+    
+    @Benchmark
+    public Object renderDashboardJson() {
+        return renderDashboardJson.get();
+    }
+    
+    @Benchmark
+    public Object renderDashboardBinary() {
+        return renderDashboardBinary.get();
+    }
+}
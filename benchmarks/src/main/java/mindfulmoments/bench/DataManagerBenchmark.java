@@ -0,0 +1,53 @@
+package mindfulmoments.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DataManagerBenchmark {
+    private Supplier<Object> getRecentMoodLogs;
+    private Supplier<Object> addMoodLog;
+    
+    // Check-ins go to a copy of the user rebuilt before every iteration, so each
+    // iteration appends to a history of the configured size
+    @State(Scope.Benchmark)
+    public static class WriteStore {
+        @Setup(Level.Iteration)
+        public void reset(Workload workload) {
+            workload.operation("resetWriteStore").get();
+        }
+    }
+    
+    @Setup(Level.Trial)
+    public void setUp(Workload workload) {
+        getRecentMoodLogs = workload.operation("getRecentMoodLogs");
+        addMoodLog = workload.operation("addMoodLog");
+    }
+    
+    @Benchmark
+    public Object getRecentMoodLogs() {
+        return getRecentMoodLogs.get();
+    }
+    
+    @Benchmark
+    public Object addMoodLog(WriteStore store) {
+        return addMoodLog.get();
+    }
+}
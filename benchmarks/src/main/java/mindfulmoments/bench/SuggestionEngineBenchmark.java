@@ -0,0 +1,45 @@
+package mindfulmoments.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SuggestionEngineBenchmark {
+    private Supplier<Object> generateSuggestions;
+    private Supplier<Object> generateSuggestionsUncached;
+    
+    @Setup(Level.Trial)
+    public void setUp(Workload workload) {
+        generateSuggestions = workload.operation("generateSuggestions");
+        generateSuggestionsUncached = workload.operation("generateSuggestionsUncached");
+    }
+    
+    // The user's data does not change between calls, so after the first this is a cache hit
+    @Benchmark
+    public Object generateSuggestions() {
+        return generateSuggestions.get();
+    }
+    
+    // Evaluates the rules over the user's recent history on every call
+    @Benchmark
+    public Object generateSuggestionsUncached() {
+        return generateSuggestionsUncached.get();
+    }
+}
@@ -0,0 +1,40 @@
+package mindfulmoments.bench;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+// Synthetic user shared by every benchmark, sized by the history and tag parameters
+@State(Scope.Benchmark)
+public class Workload {
+    @Param({"1000", "10000", "100000"})
+    public int historySize;
+    
+    @Param({"16", "512"})
+    public int tagCardinality;
+    
+    private Function<String, Supplier<Object>> fixture;
+    
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() throws ReflectiveOperationException {
+        fixture = (Function<String, Supplier<Object>>) Class.forName("BenchmarkFixture")
+            .getConstructor(int.class, int.class)
+            .newInstance(historySize, tagCardinality);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        ((AutoCloseable) fixture).close();
+    }
+    
+    Supplier<Object> operation(String name) {
+        return fixture.apply(name);
+    }
+}